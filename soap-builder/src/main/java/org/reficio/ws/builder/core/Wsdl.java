@@ -27,7 +27,6 @@ import org.reficio.ws.builder.SoapBuilderFinder;
 import org.reficio.ws.legacy.SoapLegacyFacade;
 
 import javax.wsdl.Binding;
-import javax.wsdl.WSDLException;
 import javax.xml.namespace.QName;
 import java.io.File;
 import java.net.MalformedURLException;
@@ -36,6 +35,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
+ * Parsed WSDL document. The parsed definitions and the schema types compiled from their XSDs are cached,
+ * see the WsdlCache - the Wsdl instances parsed from the same document share them.
+ *
  * @author Tom Bujok
  * @since 1.0.0
  */
@@ -44,24 +46,25 @@ public final class Wsdl {
     private final URL wsdlUrl;
     private final SoapLegacyFacade soapFacade;
 
-    private Wsdl(URL wsdlUrl) {
-        try {
-            this.wsdlUrl = wsdlUrl;
-            this.soapFacade = new SoapLegacyFacade(wsdlUrl);
-        } catch (WSDLException e) {
-            throw new SoapBuilderException(e);
-        }
+    private Wsdl(URL wsdlUrl, SoapLegacyFacade soapFacade) {
+        this.wsdlUrl = wsdlUrl;
+        this.soapFacade = soapFacade;
     }
 
     public static Wsdl parse(URL wsdlUrl) {
+        return parse(wsdlUrl, WsdlCache.getShared());
+    }
+
+    public static Wsdl parse(URL wsdlUrl, WsdlCache cache) {
         Preconditions.checkNotNull(wsdlUrl, "URL of the WSDL cannot be null");
-        return new Wsdl(wsdlUrl);
+        Preconditions.checkNotNull(cache, "WsdlCache cannot be null");
+        return new Wsdl(wsdlUrl, cache.getFacade(wsdlUrl));
     }
 
     public static Wsdl parse(String wsdlUrl) {
         Preconditions.checkNotNull(wsdlUrl, "URL of the WSDL cannot be null");
         try {
-            return new Wsdl(new URL(wsdlUrl));
+            return parse(new URL(wsdlUrl));
         } catch (MalformedURLException e) {
             throw new SoapBuilderException(e);
         }
@@ -76,7 +79,8 @@ public final class Wsdl {
     }
 
     public URL saveWsdl(File rootWsdl) {
-        return soapFacade.saveWsdl(rootWsdl.getName(), rootWsdl.getParentFile());
+        // saving rewrites the locations of the imports, so the shared definition is not used
+        return saveWsdl(wsdlUrl, rootWsdl);
     }
 
     public static URL saveWsdl(URL wsdlUrl, File rootWsdl) {
@@ -0,0 +1,315 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.builder.core;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.reficio.ws.SoapBuilderException;
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.legacy.ResourceResolver;
+import org.reficio.ws.legacy.SchemaTypeSystemCache;
+import org.reficio.ws.legacy.SoapLegacyFacade;
+
+import javax.wsdl.WSDLException;
+import java.io.File;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cache of the parsed WSDL definitions together with the schema type systems compiled from their XSDs.
+ * Reading a large WSDL and compiling its schemas may take seconds, so the Wsdl instances parsed from the same
+ * document share a single parsed definition, which is never modified once it has been parsed.
+ * <p/>
+ * The definitions are keyed by the URL and by the hash of the content of the WSDL document and of all the
+ * documents it imports or includes, so a WSDL any of which has changed is parsed anew. All the documents are
+ * thus read, in parallel, by every parse - served from the cache or not.
+ * Concurrent parses of a document that has not been cached yet wait for a single parse. The least recently used
+ * definitions are evicted when the cache is full.
+ * <p/>
+ * Optionally, the compiled schema type systems are also stored in a directory, so that they survive the restarts
+ * of the JVM - see Builder.schemaCacheDirectory. The compilation may also be deferred until the types are needed
+ * or run in the background - see Builder.lazySchemaCompilation and Builder.backgroundSchemaCompilation.
+ * The documents may be read from local files instead of their remote locations - see Builder.catalog and
+ * Builder.mirrorDirectory.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class WsdlCache {
+
+    private final static int DEFAULT_MAX_DEFINITIONS = 64;
+
+    private final static WsdlCache shared = builder().build();
+
+    private Cache<Key, SoapLegacyFacade> definitions;
+    private SchemaTypeSystemCache typesCache;
+    private boolean lazySchemaCompilation;
+    private Executor schemaCompilationExecutor;
+    private ResourceResolver resolver;
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+
+    /**
+     * @return cache used by Wsdl.parse unless another one is specified
+     */
+    public static WsdlCache getShared() {
+        return shared;
+    }
+
+    /**
+     * @return number of the cached definitions
+     */
+    public long getSize() {
+        return definitions.size();
+    }
+
+    /**
+     * @return number of the parses served from the cache
+     */
+    public long getHitCount() {
+        return definitions.stats().hitCount();
+    }
+
+    /**
+     * @return number of the WSDL documents parsed and compiled by the cache
+     */
+    public long getLoadCount() {
+        return definitions.stats().loadCount();
+    }
+
+    /**
+     * @return number of the schema type systems loaded from the schema cache directory, 0 if there is none
+     */
+    public long getSchemaCacheHitCount() {
+        return typesCache != null ? typesCache.getHitCount() : 0L;
+    }
+
+    /**
+     * @return number of the schema type systems compiled, as they were not in the schema cache directory
+     */
+    public long getSchemaCacheMissCount() {
+        return typesCache != null ? typesCache.getMissCount() : 0L;
+    }
+
+    /**
+     * Discards the definitions parsed from the given URL, whatever their content
+     *
+     * @param wsdlUrl URL of the WSDL
+     */
+    public void invalidate(URL wsdlUrl) {
+        String url = checkNotNull(wsdlUrl).toString();
+        Iterator<Key> keys = definitions.asMap().keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().url.equals(url)) {
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * Discards all the cached definitions
+     */
+    public void invalidateAll() {
+        definitions.invalidateAll();
+    }
+
+    // ----------------------------------------------------------------
+    // INTERNALS
+    // ----------------------------------------------------------------
+    SoapLegacyFacade getFacade(final URL wsdlUrl) {
+        try {
+            String contentHash = SoapLegacyFacade.hashDocuments(wsdlUrl, resolver);
+            return definitions.get(new Key(wsdlUrl.toString(), contentHash), new Callable<SoapLegacyFacade>() {
+                @Override
+                public SoapLegacyFacade call() throws WSDLException {
+                    SoapLegacyFacade facade = new SoapLegacyFacade(wsdlUrl, typesCache, lazySchemaCompilation, resolver);
+                    if (schemaCompilationExecutor != null) {
+                        facade.compileSchemaTypesInBackground(schemaCompilationExecutor);
+                    }
+                    return facade;
+                }
+            });
+        } catch (ExecutionException ex) {
+            throw new SoapBuilderException(ex.getCause());
+        } catch (UncheckedExecutionException ex) {
+            throw (RuntimeException) ex.getCause();
+        } catch (ExecutionError ex) {
+            throw (Error) ex.getCause();
+        }
+    }
+
+    private static final class Key {
+        private final String url;
+        private final String contentHash;
+
+        private Key(String url, String contentHash) {
+            this.url = url;
+            this.contentHash = contentHash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return url.equals(key.url) && contentHash.equals(key.contentHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * url.hashCode() + contentHash.hashCode();
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+    private WsdlCache() {
+    }
+
+    /**
+     * Builder to construct a properly populated WsdlCache
+     */
+    public static class Builder {
+
+        private int maxDefinitions = DEFAULT_MAX_DEFINITIONS;
+        private File schemaCacheDirectory;
+        private boolean lazySchemaCompilation;
+        private Executor schemaCompilationExecutor;
+        private final ResourceResolver.Builder resolver = ResourceResolver.builder();
+        private boolean resolving;
+
+        /**
+         * @param value Specifies the maximum number of the cached WSDL definitions. Has to be positive.
+         * @return builder
+         */
+        public Builder maxDefinitions(int value) {
+            checkArgument(value > 0);
+            maxDefinitions = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the directory in which the schema type systems compiled from the XSDs are stored
+         *              and from which they are loaded on later runs instead of being compiled again. Disabled by default.
+         * @return builder
+         */
+        public Builder schemaCacheDirectory(File value) {
+            schemaCacheDirectory = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * @param value Specifies whether the schema types are compiled when they are needed for the first time, e.g.
+         *              to build or validate a message, instead of when the WSDL is parsed. Disabled by default.
+         * @return builder
+         */
+        public Builder lazySchemaCompilation(boolean value) {
+            lazySchemaCompilation = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the executor that compiles the schema types right after the WSDL has been parsed,
+         *              so that the parse does not wait for it. Implies lazy schema compilation - a message built before
+         *              the compilation has finished waits for it.
+         * @return builder
+         */
+        public Builder backgroundSchemaCompilation(Executor value) {
+            schemaCompilationExecutor = checkNotNull(value);
+            lazySchemaCompilation = true;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the URL of an OASIS XML catalog mapping the locations of the WSDL and XSD documents
+         *              to local files, classpath resources or other locations. May be specified multiple times.
+         * @return builder
+         */
+        public Builder catalog(URL value) {
+            resolver.catalog(value);
+            resolving = true;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the directory mirroring the remote WSDL and XSD documents. The documents found in
+         *              it are not read from the network.
+         * @return builder
+         */
+        public Builder mirrorDirectory(File value) {
+            resolver.mirrorDirectory(value);
+            resolving = true;
+            return this;
+        }
+
+        /**
+         * @param value Specifies whether the remote documents missing in the mirror directory are downloaded into it,
+         *              so that later parses do not access the network at all. Disabled by default.
+         * @return builder
+         */
+        public Builder populateMirror(boolean value) {
+            resolver.populateMirror(value);
+            resolving = true;
+            return this;
+        }
+
+        /**
+         * Constructs properly populated WSDL cache
+         *
+         * @return properly populated WSDL cache
+         */
+        public WsdlCache build() {
+            WsdlCache cache = new WsdlCache();
+            cache.definitions = CacheBuilder.newBuilder().maximumSize(maxDefinitions).build();
+            if (resolving) {
+                cache.resolver = resolver.build();
+            }
+            cache.lazySchemaCompilation = lazySchemaCompilation;
+            cache.schemaCompilationExecutor = schemaCompilationExecutor;
+            if (schemaCacheDirectory != null) {
+                cache.typesCache = new SchemaTypeSystemCache(schemaCacheDirectory);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * @return a new instance of a WsdlCache Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.builder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.builder.core.WsdlCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests the parallel fetching of the schemas imported by a WSDL served with an artificial latency
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class ParallelSchemaFetchTest {
+
+    private final static int TYPES = 12;
+    private final static int LATENCY_IN_MILLIS = 100;
+    private final static int FETCH_THREADS = 8;
+    private final static String BINDING = "{urn:service}ServiceSoap";
+
+    private HttpServer server;
+    private LatencyHandler handler;
+
+    @Before
+    public void initializeServer() throws IOException {
+        handler = new LatencyHandler();
+        handler.documents.put("/service.wsdl", createWsdl());
+        for (int i = 0; i < TYPES; i++) {
+            handler.documents.put("/types/types" + i + ".xsd", createTypesSchema(i));
+        }
+        handler.documents.put("/common.xsd", createCommonSchema());
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", handler);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @After
+    public void destroyServer() {
+        server.stop(0);
+    }
+
+    @Test(timeout = 30000)
+    public void parse_importedSchemasFetchedInParallel() throws IOException {
+        URL wsdlUrl = new URL("http://localhost:" + server.getAddress().getPort() + "/service.wsdl");
+        SoapBuilder builder = Wsdl.parse(wsdlUrl, WsdlCache.builder().build()).binding().name(BINDING).find();
+        String message = builder.buildInputMessage(builder.getOperations().get(0));
+
+        // every imported type, together with the common one it extends, has been compiled
+        assertEquals(TYPES, StringUtils.countMatches(message, "<common>"));
+        assertTrue(handler.maxConcurrentRequests.get() > 1);
+        assertTrue(handler.maxConcurrentRequests.get() <= FETCH_THREADS);
+    }
+
+    private static String createWsdl() {
+        StringBuilder imports = new StringBuilder();
+        StringBuilder elements = new StringBuilder();
+        for (int i = 0; i < TYPES; i++) {
+            imports.append("<xsd:import namespace=\"urn:types").append(i)
+                    .append("\" schemaLocation=\"types/types").append(i).append(".xsd\"/>");
+            elements.append("<xsd:element xmlns:t=\"urn:types").append(i).append("\" ref=\"t:item").append(i).append("\"/>");
+        }
+        return "<wsdl:definitions targetNamespace=\"urn:service\" xmlns:wsdl=\"http://schemas.xmlsoap.org/wsdl/\""
+                + " xmlns:soap=\"http://schemas.xmlsoap.org/wsdl/soap/\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\""
+                + " xmlns:s=\"urn:service\">"
+                + "<wsdl:types><xsd:schema targetNamespace=\"urn:service\">" + imports
+                + "<xsd:element name=\"request\"><xsd:complexType><xsd:sequence>" + elements
+                + "</xsd:sequence></xsd:complexType></xsd:element></xsd:schema></wsdl:types>"
+                + "<wsdl:message name=\"request\"><wsdl:part name=\"body\" element=\"s:request\"/></wsdl:message>"
+                + "<wsdl:portType name=\"Service\"><wsdl:operation name=\"call\"><wsdl:input message=\"s:request\"/>"
+                + "</wsdl:operation></wsdl:portType>"
+                + "<wsdl:binding name=\"ServiceSoap\" type=\"s:Service\">"
+                + "<soap:binding style=\"document\" transport=\"http://schemas.xmlsoap.org/soap/http\"/>"
+                + "<wsdl:operation name=\"call\"><soap:operation soapAction=\"urn:call\"/>"
+                + "<wsdl:input><soap:body use=\"literal\"/></wsdl:input></wsdl:operation></wsdl:binding>"
+                + "</wsdl:definitions>";
+    }
+
+    private static String createTypesSchema(int index) {
+        // the common schema is imported by every types schema
+        return "<xsd:schema targetNamespace=\"urn:types" + index + "\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\""
+                + " xmlns:c=\"urn:common\">"
+                + "<xsd:import namespace=\"urn:common\" schemaLocation=\"../common.xsd\"/>"
+                + "<xsd:element name=\"item" + index + "\" type=\"c:commonType\"/>"
+                + "</xsd:schema>";
+    }
+
+    private static String createCommonSchema() {
+        return "<xsd:schema targetNamespace=\"urn:common\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">"
+                + "<xsd:complexType name=\"commonType\"><xsd:sequence>"
+                + "<xsd:element name=\"common\" type=\"xsd:string\"/>"
+                + "</xsd:sequence></xsd:complexType></xsd:schema>";
+    }
+
+    private static class LatencyHandler implements HttpHandler {
+        private final Map<String, String> documents = new ConcurrentHashMap<String, String>();
+        private final AtomicInteger concurrentRequests = new AtomicInteger();
+        private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int concurrent = concurrentRequests.incrementAndGet();
+            try {
+                int max = maxConcurrentRequests.get();
+                while (concurrent > max && !maxConcurrentRequests.compareAndSet(max, concurrent)) {
+                    max = maxConcurrentRequests.get();
+                }
+                Thread.sleep(LATENCY_IN_MILLIS);
+                String document = documents.get(exchange.getRequestURI().getPath());
+                if (document == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                byte[] body = document.getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrentRequests.decrementAndGet();
+                exchange.close();
+            }
+        }
+    }
+
+}
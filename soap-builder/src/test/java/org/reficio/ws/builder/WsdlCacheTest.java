@@ -0,0 +1,272 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.builder;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.SoapBuilderException;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.builder.core.WsdlCache;
+import org.reficio.ws.common.ResourceUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.fail;
+
+/**
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class WsdlCacheTest {
+
+    private final static String BINDING = "{http://namespaces.snowboard-info.com}EndorsementSearchSoapBinding";
+
+    private WsdlCache cache;
+    private File folder;
+    private URL wsdlUrl;
+
+    @Before
+    public void copyWsdl() throws IOException {
+        // the WSDL is copied, so that it can be modified
+        folder = DefinitionSaveTest.createTempFolder("wsdl-cache");
+        URL original = ResourceUtils.getResourceWithAbsolutePackagePath("builder", "snowboard.wsdl");
+        FileUtils.copyDirectory(new File(original.getFile()).getParentFile(), folder);
+        wsdlUrl = new File(folder, "snowboard.wsdl").toURI().toURL();
+        cache = WsdlCache.builder().build();
+    }
+
+    @After
+    public void deleteWsdl() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void sameWsdl_parsedOnce() {
+        Wsdl first = Wsdl.parse(wsdlUrl, cache);
+        Wsdl second = Wsdl.parse(wsdlUrl, cache);
+        assertNotNull(first.binding().name(BINDING).find());
+        assertNotNull(second.binding().name(BINDING).find());
+        assertEquals(1, cache.getLoadCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void changedWsdl_parsedAgain() throws IOException {
+        Wsdl.parse(wsdlUrl, cache);
+        File wsdl = new File(folder, "snowboard.wsdl");
+        FileUtils.writeStringToFile(wsdl, FileUtils.readFileToString(wsdl) + "\n<!-- changed -->\n");
+        assertNotNull(Wsdl.parse(wsdlUrl, cache).binding().name(BINDING).find());
+        assertEquals(2, cache.getLoadCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void changedImportedSchema_parsedAgain() throws IOException {
+        File wsdl = new File(folder, "importing.wsdl");
+        File schema = new File(folder, "imported.xsd");
+        FileUtils.writeStringToFile(wsdl, "<wsdl:definitions targetNamespace=\"urn:importing\""
+                + " xmlns:wsdl=\"http://schemas.xmlsoap.org/wsdl/\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">"
+                + "<wsdl:types><xsd:schema targetNamespace=\"urn:importing\">"
+                + "<xsd:import namespace=\"urn:imported\" schemaLocation=\"imported.xsd\"/>"
+                + "</xsd:schema></wsdl:types></wsdl:definitions>");
+        FileUtils.writeStringToFile(schema, "<xsd:schema targetNamespace=\"urn:imported\""
+                + " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">"
+                + "<xsd:element name=\"item\" type=\"xsd:string\"/></xsd:schema>");
+        URL importingUrl = wsdl.toURI().toURL();
+        Wsdl.parse(importingUrl, cache);
+        Wsdl.parse(importingUrl, cache);
+        assertEquals(1, cache.getLoadCount());
+
+        // only the imported schema changes
+        FileUtils.writeStringToFile(schema, FileUtils.readFileToString(schema).replace("xsd:string", "xsd:int"));
+        Wsdl.parse(importingUrl, cache);
+        assertEquals(2, cache.getLoadCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void invalidatedWsdl_parsedAgain() {
+        Wsdl.parse(wsdlUrl, cache);
+        cache.invalidate(wsdlUrl);
+        assertEquals(0, cache.getSize());
+        Wsdl.parse(wsdlUrl, cache);
+        assertEquals(2, cache.getLoadCount());
+    }
+
+    @Test
+    public void concurrentParses_parsedOnce() throws Exception {
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Wsdl>> parsers = new ArrayList<Future<Wsdl>>();
+            for (int i = 0; i < threads; i++) {
+                parsers.add(executor.submit(new Callable<Wsdl>() {
+                    @Override
+                    public Wsdl call() throws Exception {
+                        start.await();
+                        return Wsdl.parse(wsdlUrl, cache);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Wsdl> parser : parsers) {
+                assertNotNull(parser.get().binding().name(BINDING).find());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, cache.getLoadCount());
+    }
+
+    @Test
+    public void fullCache_leastRecentlyUsedEvicted() throws IOException {
+        WsdlCache small = WsdlCache.builder().maxDefinitions(1).build();
+        Wsdl.parse(wsdlUrl, small);
+        File copy = new File(folder, "snowboardCopy.wsdl");
+        FileUtils.copyFile(new File(folder, "snowboard.wsdl"), copy);
+        Wsdl.parse(copy.toURI().toURL(), small);
+        assertEquals(1, small.getSize());
+    }
+
+    @Test
+    public void schemaCacheDirectory_typesStoredAndLoaded() {
+        File types = new File(folder, "types");
+        WsdlCache compiling = WsdlCache.builder().schemaCacheDirectory(types).build();
+        String compiled = buildInputMessage(Wsdl.parse(wsdlUrl, compiling));
+        assertEquals(0, compiling.getSchemaCacheHitCount());
+        assertEquals(1, compiling.getSchemaCacheMissCount());
+        assertEquals(1, types.listFiles().length);
+        WsdlCache loading = WsdlCache.builder().schemaCacheDirectory(types).build();
+        String loaded = buildInputMessage(Wsdl.parse(wsdlUrl, loading));
+        assertEquals(1, loading.getSchemaCacheHitCount());
+        assertEquals(0, loading.getSchemaCacheMissCount());
+        assertEquals(compiled, loaded);
+        assertEquals(1, types.listFiles().length);
+    }
+
+    @Test
+    public void corruptSchemaCacheEntry_typesCompiledAgain() throws IOException {
+        File types = new File(folder, "types");
+        String compiled = buildInputMessage(Wsdl.parse(wsdlUrl, WsdlCache.builder().schemaCacheDirectory(types).build()));
+        Collection<File> entryFiles = FileUtils.listFiles(types, new String[]{"xsb"}, true);
+        assertFalse(entryFiles.isEmpty());
+        for (File file : entryFiles) {
+            FileUtils.writeStringToFile(file, "corrupt");
+        }
+        WsdlCache recompiling = WsdlCache.builder().schemaCacheDirectory(types).build();
+        String recompiled = buildInputMessage(Wsdl.parse(wsdlUrl, recompiling));
+        assertEquals(0, recompiling.getSchemaCacheHitCount());
+        assertEquals(1, recompiling.getSchemaCacheMissCount());
+        assertEquals(compiled, recompiled);
+        for (File file : FileUtils.listFiles(types, new String[]{"xsb"}, true)) {
+            assertFalse("corrupt".equals(FileUtils.readFileToString(file)));
+        }
+    }
+
+    @Test
+    public void lazyCompilation_schemaErrorsDeferred() throws IOException {
+        breakSchema();
+        try {
+            Wsdl.parse(wsdlUrl, cache);
+            fail("SoapBuilderException expected");
+        } catch (SoapBuilderException ex) {
+            // expected - the schema is compiled eagerly by default
+        }
+        Wsdl wsdl = Wsdl.parse(wsdlUrl, WsdlCache.builder().lazySchemaCompilation(true).build());
+        assertFalse(wsdl.getBindings().isEmpty());
+        try {
+            buildInputMessage(wsdl);
+            fail("SoapBuilderException expected");
+        } catch (SoapBuilderException ex) {
+            // expected - the schema is compiled when the message is built
+        }
+    }
+
+    @Test
+    public void lazyCompilation_failedCompilationRetried() throws IOException {
+        breakSchema();
+        Wsdl wsdl = Wsdl.parse(wsdlUrl, WsdlCache.builder().lazySchemaCompilation(true).build());
+        try {
+            buildInputMessage(wsdl);
+            fail("SoapBuilderException expected");
+        } catch (SoapBuilderException ex) {
+            // expected - the schema is broken
+        }
+        File file = new File(folder, "snowboard.wsdl");
+        FileUtils.writeStringToFile(file, FileUtils.readFileToString(file).replace("xsd:missing", "xsd:string"));
+        assertNotNull(buildInputMessage(wsdl));
+    }
+
+    @Test
+    public void backgroundCompilation_compiledOnce() throws Exception {
+        final AtomicInteger compilations = new AtomicInteger();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            WsdlCache background = WsdlCache.builder().backgroundSchemaCompilation(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    compilations.incrementAndGet();
+                    executor.execute(command);
+                }
+            }).build();
+            String first = buildInputMessage(Wsdl.parse(wsdlUrl, background));
+            String second = buildInputMessage(Wsdl.parse(wsdlUrl, background));
+            assertEquals(first, second);
+            assertEquals(1, compilations.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void breakSchema() throws IOException {
+        // the messages have to reference the schema, so that the types are needed to build them
+        File wsdl = new File(folder, "snowboard.wsdl");
+        String content = FileUtils.readFileToString(wsdl)
+                .replace("http://www.w3.org/1999/XMLSchema", "http://www.w3.org/2001/XMLSchema")
+                .replace("http://schemas.snowboard-info.com/EndorsementSearch.xsd", "http://namespaces.snowboard-info.com")
+                .replace("http://www.snowboard-info.com/EndorsementSearch.wsdl", "http://namespaces.snowboard-info.com")
+                .replace("type=\"string\"", "type=\"xsd:missing\"");
+        FileUtils.writeStringToFile(wsdl, content);
+    }
+
+    private static String buildInputMessage(Wsdl wsdl) {
+        SoapBuilder builder = wsdl.binding().name(BINDING).find();
+        return builder.buildInputMessage(builder.getOperations().get(0));
+    }
+
+}
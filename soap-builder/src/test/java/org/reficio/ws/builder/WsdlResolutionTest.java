@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.builder;
+
+import com.google.common.io.Resources;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.builder.core.WsdlCache;
+import org.reficio.ws.common.ResourceUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests the resolution of the WSDL and XSD documents through an XML catalog and a mirror directory
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class WsdlResolutionTest {
+
+    private final static String BINDING = "{urn:service}ServiceSoap";
+
+    private HttpServer server;
+    private ResourceHandler handler;
+    private File mirror;
+
+    @Before
+    public void initializeServer() throws IOException {
+        handler = new ResourceHandler();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", handler);
+        server.start();
+        mirror = DefinitionSaveTest.createTempFolder("wsdl-mirror");
+    }
+
+    @After
+    public void destroyServer() throws IOException {
+        server.stop(0);
+        FileUtils.deleteDirectory(mirror);
+    }
+
+    @Test
+    public void catalog_remoteLocationsResolvedLocally() throws IOException {
+        // neither the WSDL nor the schemas it imports are reachable, the catalog maps them to local resources
+        URL catalog = ResourceUtils.getResourceWithAbsolutePackagePath("catalog", "catalog.xml");
+        WsdlCache cache = WsdlCache.builder().catalog(catalog).build();
+        String message = buildInputMessage(Wsdl.parse(new URL("http://schemas.invalid/service/service.wsdl"), cache));
+        assertTrue(message.contains("<common>"));
+    }
+
+    @Test
+    public void populatedMirror_parsedWithoutNetwork() throws IOException {
+        URL wsdlUrl = new URL("http://localhost:" + server.getAddress().getPort() + "/service/service.wsdl");
+        WsdlCache populating = WsdlCache.builder().mirrorDirectory(mirror).populateMirror(true).build();
+        String downloaded = buildInputMessage(Wsdl.parse(wsdlUrl, populating));
+        assertEquals(3, handler.requests.get());
+
+        WsdlCache offline = WsdlCache.builder().mirrorDirectory(mirror).build();
+        String mirrored = buildInputMessage(Wsdl.parse(wsdlUrl, offline));
+        assertEquals(downloaded, mirrored);
+        assertEquals(3, handler.requests.get());
+        assertTrue(new File(mirror, "http/localhost_" + server.getAddress().getPort() + "/common/common.xsd").isFile());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void populateMirror_mirrorDirectoryRequired() {
+        WsdlCache.builder().populateMirror(true).build();
+    }
+
+    private static String buildInputMessage(Wsdl wsdl) {
+        SoapBuilder builder = wsdl.binding().name(BINDING).find();
+        return builder.buildInputMessage(builder.getOperations().get(0));
+    }
+
+    private static class ResourceHandler implements HttpHandler {
+        private final AtomicInteger requests = new AtomicInteger();
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try {
+                URL resource = getClass().getResource("/catalog" + exchange.getRequestURI().getPath());
+                if (resource == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                byte[] body = Resources.toByteArray(resource);
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the round trips per call of the SoapClient against an endpoint that requires basic or digest
+ * authentication, with and without the preemptive authentication. Without it every call is challenged first,
+ * which doubles the number of the round trips.
+ * Run with "mvn -Pbenchmark test-compile exec:exec" - the round trips per call are printed at the end of every trial.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticationBenchmark {
+
+    private static final int PORT = 9697;
+    private static final String ENDPOINT = "http://localhost:" + PORT + "/authenticated";
+    private static final String ACTION = "http://example.com/GetLastTradePrice";
+    private static final String USER = "john";
+    private static final String PASSWORD = "changeit";
+    private static final String NONCE = "dcd98b7102dd2f0e8b11d0f600bfb0c093";
+    private static final String REQUEST = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body/></soapenv:Envelope>";
+
+    @Param({"BASIC", "DIGEST"})
+    private String authMethod;
+
+    @Param({"false", "true"})
+    private boolean preemptive;
+
+    private HttpServer server;
+    private SoapClient client;
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+
+    @Setup
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+        server.createContext("/authenticated", new AuthenticatingHandler());
+        server.start();
+        Security.Builder security = Security.builder();
+        if (authMethod.equals("BASIC")) {
+            security.authBasic(USER, PASSWORD);
+        } else {
+            security.authDigest(USER, PASSWORD);
+        }
+        client = SoapClient.builder()
+                .endpointUri(ENDPOINT)
+                .endpointSecurity(security.build())
+                .preemptiveAuthentication(preemptive)
+                .connectionPooling(true)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.disconnect();
+        server.stop(0);
+        System.out.printf("%n%s preemptive=%s: %.2f round trips per call%n", authMethod, preemptive,
+                (double) roundTrips.get() / calls.get());
+    }
+
+    @Benchmark
+    public String post() {
+        calls.incrementAndGet();
+        return client.post(ACTION, REQUEST);
+    }
+
+    /**
+     * Counts the round trips and challenges the requests without credentials - the credentials are not verified
+     */
+    private class AuthenticatingHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            roundTrips.incrementAndGet();
+            byte[] request = IOUtils.toByteArray(exchange.getRequestBody());
+            if (exchange.getRequestHeaders().getFirst("Authorization") == null) {
+                exchange.getResponseHeaders().add("WWW-Authenticate", authMethod.equals("BASIC") ?
+                        "Basic realm=\"soap\"" : "Digest realm=\"soap\", qop=\"auth\", nonce=\"" + NONCE + "\"");
+                exchange.sendResponseHeaders(401, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, request.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(request);
+            out.close();
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static org.reficio.ws.client.core.SoapConstants.*;
+
+/**
+ * Measures the cost of generating a single SOAP HTTP POST - the per-call request generation of the SoapClient
+ * against the way it was done before the introduction of the RequestTemplate.
+ * Run with "mvn -Pbenchmark test-compile exec:exec" - the GC profiler reports the bytes allocated per call
+ * as gc.alloc.rate.norm.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestTemplateBenchmark {
+
+    private static final String ENDPOINT = "http://localhost:9696/service/StockQuote";
+    private static final String ACTION = "http://example.com/GetLastTradePrice";
+
+    private final DefaultHttpClient client = new DefaultHttpClient();
+
+    private URI endpointUri;
+    private String envelope;
+    private StringEntity entity;
+    private RequestTemplate detectingTemplate;
+    private RequestTemplate versionedTemplate;
+
+    @Setup
+    public void setup() throws Exception {
+        endpointUri = new URI(ENDPOINT);
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            body.append("<m:item><m:symbol>SYM").append(i).append("</m:symbol></m:item>");
+        }
+        envelope = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<soapenv:Envelope xmlns:soapenv=\"" + SOAP_1_1_NAMESPACE + "\" xmlns:m=\"http://example.com\">"
+                + "<soapenv:Header/><soapenv:Body><m:GetLastTradePrice>" + body
+                + "</m:GetLastTradePrice></soapenv:Body></soapenv:Envelope>";
+        entity = new StringEntity(envelope);
+        detectingTemplate = new RequestTemplate(null, null, DEFAULT_COMPRESSION_THRESHOLD_IN_BYTES);
+        versionedTemplate = new RequestTemplate(SoapVersion.SOAP_1_1, null,
+                DEFAULT_COMPRESSION_THRESHOLD_IN_BYTES);
+    }
+
+    @Benchmark
+    public HttpPost legacyPost() {
+        HttpPost post = new HttpPost(endpointUri.toString());
+        post.setEntity(entity);
+        if (envelope.contains(SOAP_1_1_NAMESPACE)) {
+            post.addHeader(PROP_SOAP_ACTION_11, "\"" + ACTION + "\"");
+            post.addHeader(PROP_CONTENT_TYPE, MIMETYPE_TEXT_XML);
+            client.getParams().setParameter(PROP_CONTENT_TYPE, MIMETYPE_TEXT_XML);
+        } else if (envelope.contains(SOAP_1_2_NAMESPACE)) {
+            post.addHeader(PROP_CONTENT_TYPE, MIMETYPE_APPLICATION_XML + PROP_DELIMITER + PROP_SOAP_ACTION_12
+                    + "\"" + ACTION + "\"");
+        }
+        return post;
+    }
+
+    @Benchmark
+    public HttpPost templatePostDetectingVersion() {
+        HttpPost post = detectingTemplate.createPost(ACTION, envelope, entity);
+        post.setURI(endpointUri);
+        return post;
+    }
+
+    @Benchmark
+    public HttpPost templatePostWithVersionHint() {
+        HttpPost post = versionedTemplate.createPost(ACTION, envelope, entity);
+        post.setURI(endpointUri);
+        return post;
+    }
+
+}
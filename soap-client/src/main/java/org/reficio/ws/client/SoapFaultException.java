@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Exception thrown when the server responds with a SOAP 1.1 or SOAP 1.2 fault. Returns HTTP error code if the fault
+ * has been received with one - it is a TransmissionException, so that the faults are handled as the other error
+ * responses by default.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class SoapFaultException extends TransmissionException {
+
+    private final QName faultCode;
+    private final String faultString;
+    private final String faultActor;
+
+    public SoapFaultException(QName faultCode, String faultString, String faultActor, Integer errorCode) {
+        super(String.format("SOAP fault code=[%s] string=[%s]", faultCode, faultString), faultString, errorCode);
+        this.faultCode = faultCode;
+        this.faultString = faultString;
+        this.faultActor = faultActor;
+    }
+
+    /**
+     * @return faultcode of a SOAP 1.1 fault, or Code/Value of a SOAP 1.2 fault
+     */
+    public QName getFaultCode() {
+        return faultCode;
+    }
+
+    /**
+     * @return faultstring of a SOAP 1.1 fault, or the first Reason/Text of a SOAP 1.2 fault
+     */
+    public String getFaultString() {
+        return faultString;
+    }
+
+    /**
+     * @return faultactor of a SOAP 1.1 fault, or Role of a SOAP 1.2 fault; null if not present
+     */
+    public String getFaultActor() {
+        return faultActor;
+    }
+
+}
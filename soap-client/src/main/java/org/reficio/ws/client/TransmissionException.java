@@ -47,6 +47,12 @@ public class TransmissionException extends SoapClientException {
         this.errorCode = errorCode;
     }
 
+    protected TransmissionException(String message, String response, Integer errorCode) {
+        super(message);
+        this.errorResponse = response;
+        this.errorCode = errorCode;
+    }
+
     public String getErrorResponse() {
         return errorResponse;
     }
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.reficio.ws.SoapException;
+import org.reficio.ws.client.SoapClientException;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Posts a sequence of requests with a bounded number of requests in flight.
+ * The requests are pulled from the Iterable only when there is a free slot, so at most maxInFlight of them are
+ * held at a time, even if the Iterable is lazy. The results are passed to the callback in the calling thread.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+final class BatchPost {
+
+    private final SoapClient client;
+    private final int maxInFlight;
+
+    BatchPost(SoapClient client, int maxInFlight) {
+        this.client = client;
+        this.maxInFlight = maxInFlight;
+    }
+
+    void execute(Iterable<SoapRequest> requests, BatchCallback callback) {
+        ExecutorService executor = Executors.newFixedThreadPool(maxInFlight,
+                new ThreadFactoryBuilder().setNameFormat("soap-batch-%d").setDaemon(true).build());
+        try {
+            CompletionService<BatchResult> completion = new ExecutorCompletionService<BatchResult>(executor);
+            Iterator<SoapRequest> iterator = requests.iterator();
+            int index = 0;
+            int inFlight = 0;
+            while (true) {
+                while (inFlight < maxInFlight && iterator.hasNext()) {
+                    completion.submit(new RequestTask(index++, checkNotNull(iterator.next())));
+                    inFlight++;
+                }
+                if (inFlight == 0) {
+                    break;
+                }
+                callback.completed(takeResult(completion));
+                inFlight--;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static BatchResult takeResult(CompletionService<BatchResult> completion) {
+        try {
+            return completion.take().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SoapClientException("Batch post interrupted", ex);
+        } catch (ExecutionException ex) {
+            // SOAP failures are reported in the result, anything else is a bug that should not be swallowed
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SoapClientException(cause);
+        }
+    }
+
+    private final class RequestTask implements Callable<BatchResult> {
+
+        private final int index;
+        private final SoapRequest request;
+
+        private RequestTask(int index, SoapRequest request) {
+            this.index = index;
+            this.request = request;
+        }
+
+        @Override
+        public BatchResult call() {
+            try {
+                return new BatchResult(index, client.post(request), null);
+            } catch (SoapException ex) {
+                return new BatchResult(index, null, ex);
+            }
+        }
+    }
+
+}
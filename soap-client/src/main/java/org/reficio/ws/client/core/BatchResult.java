@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.SoapException;
+
+/**
+ * Outcome of a single request posted by SoapClient.postAll() - either the response or the failure of the request.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public final class BatchResult {
+
+    private final int index;
+    private final String response;
+    private final SoapException error;
+
+    BatchResult(int index, String response, SoapException error) {
+        this.index = index;
+        this.response = response;
+        this.error = error;
+    }
+
+    /**
+     * @return position of the request in the posted Iterable, starting from 0
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * @return the result returned by the SOAP server, or null if the request failed
+     */
+    public String getResponse() {
+        return response;
+    }
+
+    /**
+     * @return the failure of the request, or null if the request succeeded
+     */
+    public SoapException getError() {
+        return error;
+    }
+
+}
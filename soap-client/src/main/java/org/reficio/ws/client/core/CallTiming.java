@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.annotation.ThreadSafe;
+
+/**
+ * Timing record of a single SOAP call, filled in by the SoapClient when it is passed with the SoapRequest.
+ * It breaks down the last transmission attempt of the call into the wait for a pooled connection, the connect,
+ * the TLS handshake, the time to the first byte of the response (from the start of the request write)
+ * and the read of the response body, so that it can be seen where the latency goes.
+ * The phases that did not take place, e.g. the connect of a reused connection, are reported as 0.
+ * <p/>
+ * The body of a streamed response is read by the caller - its read is recorded when the stream is closed.
+ * A record may be reused, it describes the last call it has been passed to.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class CallTiming {
+
+    private final static long NOT_RECORDED = 0L;
+
+    // guarded by this; System.nanoTime() marks of the phases
+    private long callStarted;
+    private long attemptStarted;
+    private long leased;
+    private long connectStarted;
+    private long connected;
+    private long handshakeStarted;
+    private long handshakeCompleted;
+    private long requestStarted;
+    private long responseReceived;
+    private long completed;
+    private int attempts;
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+
+    /**
+     * @return time spent waiting for a connection to be leased from the pool
+     */
+    public synchronized double getPoolWaitInMillis() {
+        return interval(attemptStarted, leased);
+    }
+
+    /**
+     * @return time of the TCP connect, 0 if a pooled connection has been reused
+     */
+    public synchronized double getConnectInMillis() {
+        return interval(connectStarted, connected);
+    }
+
+    /**
+     * @return time of the TLS handshake, 0 if a pooled connection has been reused or TLS is not used
+     */
+    public synchronized double getTlsHandshakeInMillis() {
+        return interval(handshakeStarted, handshakeCompleted);
+    }
+
+    /**
+     * @return time from the start of the request write to the receipt of the response headers
+     */
+    public synchronized double getTimeToFirstByteInMillis() {
+        return interval(requestStarted, responseReceived);
+    }
+
+    /**
+     * @return time from the receipt of the response headers to the end of the response body
+     */
+    public synchronized double getBodyReadInMillis() {
+        return interval(responseReceived, completed);
+    }
+
+    /**
+     * @return time of the whole call, including the retries and their back-offs
+     */
+    public synchronized double getTotalInMillis() {
+        return interval(callStarted, completed);
+    }
+
+    /**
+     * @return true if the last attempt has been transmitted over a pooled connection
+     */
+    public synchronized boolean isConnectionReused() {
+        return attempts > 0 && connectStarted == NOT_RECORDED;
+    }
+
+    /**
+     * @return number of the transmission attempts of the call
+     */
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("CallTiming[poolWait=%.3f connect=%.3f tlsHandshake=%.3f timeToFirstByte=%.3f " +
+                "bodyRead=%.3f total=%.3f ms, attempts=%d]", getPoolWaitInMillis(), getConnectInMillis(),
+                getTlsHandshakeInMillis(), getTimeToFirstByteInMillis(), getBodyReadInMillis(), getTotalInMillis(),
+                attempts);
+    }
+
+    // ----------------------------------------------------------------
+    // RECORDING API
+    // ----------------------------------------------------------------
+    synchronized void callStarted() {
+        callStarted = System.nanoTime();
+        attempts = 0;
+        resetAttempt();
+        completed = NOT_RECORDED;
+    }
+
+    synchronized void attemptStarted() {
+        resetAttempt();
+        attemptStarted = System.nanoTime();
+        attempts++;
+    }
+
+    synchronized void connectStarted() {
+        connectStarted = System.nanoTime();
+        markLeased(connectStarted);
+    }
+
+    synchronized void connected() {
+        connected = System.nanoTime();
+    }
+
+    synchronized void handshakeStarted() {
+        handshakeStarted = System.nanoTime();
+    }
+
+    synchronized void handshakeCompleted() {
+        handshakeCompleted = System.nanoTime();
+    }
+
+    // invoked for every request of the exchange, e.g. CONNECT or a repeated authenticated one - the last one counts
+    synchronized void requestStarted() {
+        requestStarted = System.nanoTime();
+        markLeased(requestStarted);
+    }
+
+    synchronized void responseReceived() {
+        responseReceived = System.nanoTime();
+    }
+
+    synchronized void completed() {
+        if (completed == NOT_RECORDED) {
+            completed = System.nanoTime();
+        }
+    }
+
+    private void resetAttempt() {
+        attemptStarted = NOT_RECORDED;
+        leased = NOT_RECORDED;
+        connectStarted = NOT_RECORDED;
+        connected = NOT_RECORDED;
+        handshakeStarted = NOT_RECORDED;
+        handshakeCompleted = NOT_RECORDED;
+        requestStarted = NOT_RECORDED;
+        responseReceived = NOT_RECORDED;
+    }
+
+    // the connection has been leased when it starts to be opened or, if it is a pooled one, when it is written to
+    private void markLeased(long time) {
+        if (leased == NOT_RECORDED) {
+            leased = time;
+        }
+    }
+
+    private static double interval(long from, long to) {
+        if (from == NOT_RECORDED || to == NOT_RECORDED) {
+            return 0.0;
+        }
+        return (to - from) / 1000000.0;
+    }
+
+}
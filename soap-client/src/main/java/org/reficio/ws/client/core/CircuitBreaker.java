@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.CircuitBreakerOpenException;
+import org.reficio.ws.client.TransmissionException;
+
+import java.net.URI;
+
+/**
+ * Circuit breaker of a single endpoint of the SoapClient, exposed for monitoring.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class CircuitBreaker {
+
+    public static enum State {
+        CLOSED, OPEN, HALF_OPEN;
+    }
+
+    private final URI endpointUri;
+    private final CircuitBreakerPolicy policy;
+
+    private volatile State state = State.CLOSED;
+    private volatile int consecutiveFailures;
+    private long openedAtInMillis;
+    private boolean trialInFlight;
+
+    CircuitBreaker(URI endpointUri, CircuitBreakerPolicy policy) {
+        this.endpointUri = endpointUri;
+        this.policy = policy;
+    }
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+    public URI getEndpointUri() {
+        return endpointUri;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    // ----------------------------------------------------------------
+    // CIRCUIT BREAKER API
+    // ----------------------------------------------------------------
+
+    /**
+     * @return true if the request may be transmitted - in the half-open state only a single trial request may
+     */
+    boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAtInMillis >= policy.getOpenDurationInMillis()) {
+                state = State.HALF_OPEN;
+            }
+            if (state == State.HALF_OPEN && !trialInFlight) {
+                trialInFlight = true;
+                return true;
+            }
+            return state == State.CLOSED;
+        }
+    }
+
+    /**
+     * Gives up the permit of tryAcquire() of a request that has not been transmitted after all
+     */
+    synchronized void cancelTrial() {
+        trialInFlight = false;
+    }
+
+    void recordSuccess() {
+        if (state == State.CLOSED && consecutiveFailures == 0) {
+            return;
+        }
+        synchronized (this) {
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
+    }
+
+    void recordFailure(TransmissionException failure) {
+        if (!policy.isFailure(failure)) {
+            recordSuccess();
+            return;
+        }
+        synchronized (this) {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || consecutiveFailures >= policy.getFailureThreshold()) {
+                state = State.OPEN;
+                openedAtInMillis = System.currentTimeMillis();
+                trialInFlight = false;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.reficio.ws.client.TransmissionException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.reficio.ws.client.core.SoapConstants.*;
+
+/**
+ * Configuration of the circuit breakers of the SoapClient - each endpoint gets a circuit breaker of its own.
+ * The circuit opens after the given number of consecutive failures and rejects the requests without transmitting
+ * them until the open duration elapses. Then a single trial request is let through - the circuit closes again
+ * if it succeeds. I/O failures and the failure status codes count as failures; any other response, including
+ * a SOAP fault, proves that the endpoint is up.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public final class CircuitBreakerPolicy {
+
+    private final static List<Integer> DEFAULT_FAILURE_STATUS_CODES = Arrays.asList(502, 503, 504);
+
+    private int failureThreshold;
+    private long openDurationInMillis;
+    private Set<Integer> failureStatusCodes;
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public long getOpenDurationInMillis() {
+        return openDurationInMillis;
+    }
+
+    public Set<Integer> getFailureStatusCodes() {
+        return failureStatusCodes;
+    }
+
+    // ----------------------------------------------------------------
+    // CIRCUIT BREAKER API
+    // ----------------------------------------------------------------
+    boolean isFailure(TransmissionException failure) {
+        if (failure.getErrorCode() != null) {
+            return failureStatusCodes.contains(failure.getErrorCode());
+        }
+        // running out of pooled connections is a local condition - it says nothing about the endpoint
+        Throwable cause = failure.getCause();
+        return cause instanceof IOException && !(cause instanceof ConnectionPoolTimeoutException);
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+    private CircuitBreakerPolicy() {
+    }
+
+    /**
+     * Builder to construct a properly populated CircuitBreakerPolicy
+     */
+    public static class Builder {
+
+        private Integer failureThreshold = DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+        private Long openDurationInMillis = DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION_IN_MILLIS;
+        private Set<Integer> failureStatusCodes;
+
+        /**
+         * @param value Specifies the number of consecutive failures that open the circuit. Has to be positive.
+         * @return builder
+         */
+        public Builder failureThreshold(int value) {
+            checkArgument(value > 0);
+            failureThreshold = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the time in milliseconds the circuit stays open for. Has to be positive.
+         * @return builder
+         */
+        public Builder openDurationInMillis(long value) {
+            checkArgument(value > 0);
+            openDurationInMillis = value;
+            return this;
+        }
+
+        /**
+         * Marks the HTTP status code as a failure of the endpoint. By default 502, 503 and 504 are.
+         *
+         * @param value HTTP status code
+         * @return builder
+         */
+        public Builder failureStatusCode(int value) {
+            if (failureStatusCodes == null) {
+                failureStatusCodes = new HashSet<Integer>();
+            }
+            failureStatusCodes.add(value);
+            return this;
+        }
+
+        /**
+         * Constructs properly populated circuit breaker policy
+         *
+         * @return properly populated circuit breaker policy
+         */
+        public CircuitBreakerPolicy build() {
+            CircuitBreakerPolicy policy = new CircuitBreakerPolicy();
+            policy.failureThreshold = failureThreshold;
+            policy.openDurationInMillis = openDurationInMillis;
+            Set<Integer> statusCodes = failureStatusCodes != null ? failureStatusCodes
+                    : new HashSet<Integer>(DEFAULT_FAILURE_STATUS_CODES);
+            policy.failureStatusCodes = Collections.unmodifiableSet(new HashSet<Integer>(statusCodes));
+            return policy;
+        }
+    }
+
+    /**
+     * @return a new instance of a CircuitBreakerPolicy Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.reficio.ws.client.core.SoapConstants.PROP_CONTENT_ENCODING;
+
+/**
+ * Request entity compressed on the fly, while it is written to the connection.
+ * The length of the compressed content is not known upfront, so it is always sent chunked.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+final class CompressingEntity extends HttpEntityWrapper {
+
+    private final Compression compression;
+    private final Header contentEncoding;
+
+    CompressingEntity(HttpEntity entity, Compression compression) {
+        super(entity);
+        this.compression = compression;
+        this.contentEncoding = new BasicHeader(PROP_CONTENT_ENCODING, compression.getContentEncoding());
+    }
+
+    @Override
+    public Header getContentEncoding() {
+        return contentEncoding;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public boolean isChunked() {
+        return true;
+    }
+
+    /**
+     * Used by the non-blocking transport only, which reads the content instead of writing it.
+     * The content is compressed into memory in that case - async requests hold the whole envelope in memory anyway.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        // the compressing stream has to be closed to release the native deflater, the connection must stay open
+        DeflaterOutputStream compressed = compression.compress(new CloseShieldOutputStream(out));
+        try {
+            wrappedEntity.writeTo(compressed);
+            compressed.finish();
+        } finally {
+            compressed.close();
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content coding applied to the request bodies sent by the SoapClient.
+ * Compressed responses are decoded regardless of the chosen coding - both gzip and deflate are accepted.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public enum Compression {
+
+    GZIP("gzip") {
+        @Override
+        DeflaterOutputStream compress(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out);
+        }
+    },
+    DEFLATE("deflate") {
+        @Override
+        DeflaterOutputStream compress(OutputStream out) throws IOException {
+            return new DeflaterOutputStream(out);
+        }
+    };
+
+    private final String contentEncoding;
+
+    private Compression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    abstract DeflaterOutputStream compress(OutputStream out) throws IOException;
+
+}
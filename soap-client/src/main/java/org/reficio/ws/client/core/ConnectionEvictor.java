@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the eviction of the idle and expired connections of all the SoapClients in a single daemon thread.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class ConnectionEvictor {
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("soap-connection-evictor-%d").setDaemon(true).build());
+
+    private ConnectionEvictor() {
+    }
+
+    /**
+     * @param client           client whose connections are evicted
+     * @param intervalInMillis period of the eviction
+     * @return handle of the eviction, to be cancelled when the client disconnects
+     */
+    static ScheduledFuture<?> schedule(final SoapClient client, long intervalInMillis) {
+        return scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // an exception would cancel the eviction of the client
+                try {
+                    client.evictConnections();
+                } catch (RuntimeException ex) {
+                    // the next run retries
+                }
+            }
+        }, intervalInMillis, intervalInMillis, TimeUnit.MILLISECONDS);
+    }
+
+}
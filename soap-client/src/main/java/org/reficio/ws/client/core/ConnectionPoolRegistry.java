@@ -0,0 +1,270 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static org.reficio.ws.client.core.SoapConstants.*;
+
+/**
+ * Registry of the connection pools shared by the SoapClients. The clients with compatible transport settings,
+ * i.e. with the same TLS socket factory and port, lease their connections from the same pool, instead of keeping
+ * sockets of their own. The timeouts, the proxy and the authentication remain the settings of each client.
+ * <p/>
+ * Every pool counts the clients that use it and is shut down when the last of them disconnects. The connections
+ * leased from all the pools together are limited by maxConnectionsTotal, those of a single pool, i.e. of all the
+ * clients with the same TLS settings, by maxConnectionsPerPool. A request waits for a connection of the registry
+ * at most for the connection lease timeout of its client.
+ * <p/>
+ * The registry should be closed when the application stops - Spring does it on its own for a Closeable bean
+ * declared in Java config, otherwise shutdown has to be declared as the destroy-method of the bean.
+ * <p/>
+ * Only the blocking transport is shared - the asynchronous one is created by each client on demand.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class ConnectionPoolRegistry implements Closeable {
+
+    private int maxConnectionsTotal;
+    private int maxConnectionsPerPool;
+    private int maxConnectionsPerRoute;
+
+    // guarded by this
+    private final Map<PoolKey, Pool> pools = new HashMap<PoolKey, Pool>();
+    private boolean shutdown;
+
+    // a permit per connection leased from any of the pools
+    private Semaphore permits;
+
+    private ConnectionPoolRegistry() {
+    }
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+
+    /**
+     * @return number of the pools currently shared
+     */
+    public synchronized int getPoolCount() {
+        return pools.size();
+    }
+
+    /**
+     * @return number of the clients currently using the pools
+     */
+    public synchronized int getClientCount() {
+        int count = 0;
+        for (Pool pool : pools.values()) {
+            count += pool.references;
+        }
+        return count;
+    }
+
+    /**
+     * @return number of the connections currently leased from all the pools
+     */
+    public int getLeasedConnectionCount() {
+        return maxConnectionsTotal - permits.availablePermits();
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public int getMaxConnectionsPerPool() {
+        return maxConnectionsPerPool;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Shuts down all the pools, closing their connections. The clients using them cannot transmit any more
+     * and no client may be created with this registry afterwards.
+     */
+    public synchronized void shutdown() {
+        shutdown = true;
+        for (Pool pool : pools.values()) {
+            pool.manager.shutdown();
+        }
+        pools.clear();
+    }
+
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Equivalent of shutdown
+     */
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    // ----------------------------------------------------------------
+    // SHARING API
+    // ----------------------------------------------------------------
+    synchronized ClientConnectionManager acquire(SchemeLayeredSocketFactory tlsSocketFactory, int tlsPort) {
+        checkState(!shutdown, "Connection pool registry has been shut down");
+        PoolKey key = new PoolKey(tlsSocketFactory, tlsPort);
+        Pool pool = pools.get(key);
+        if (pool == null) {
+            pool = new Pool(createManager(tlsSocketFactory, tlsPort));
+            pools.put(key, pool);
+        }
+        pool.references++;
+        return pool.manager;
+    }
+
+    synchronized void release(ClientConnectionManager manager) {
+        Iterator<Pool> iterator = pools.values().iterator();
+        while (iterator.hasNext()) {
+            Pool pool = iterator.next();
+            if (pool.manager == manager) {
+                if (--pool.references == 0) {
+                    iterator.remove();
+                    manager.shutdown();
+                }
+                return;
+            }
+        }
+    }
+
+    private ClientConnectionManager createManager(SchemeLayeredSocketFactory tlsSocketFactory, int tlsPort) {
+        SchemeRegistry registry = TimedSocketFactory.createSchemeRegistry(tlsSocketFactory, tlsPort);
+        PoolingClientConnectionManager manager = new LimitedConnectionManager(registry, permits);
+        manager.setMaxTotal(maxConnectionsPerPool);
+        manager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        return manager;
+    }
+
+    private static final class Pool {
+        private final ClientConnectionManager manager;
+        private int references;
+
+        private Pool(ClientConnectionManager manager) {
+            this.manager = manager;
+        }
+    }
+
+    // the socket factories come from an SSLContextCache, so the clients with equal TLS settings share the same one
+    private static final class PoolKey {
+        private final SchemeLayeredSocketFactory tlsSocketFactory;
+        private final int tlsPort;
+
+        private PoolKey(SchemeLayeredSocketFactory tlsSocketFactory, int tlsPort) {
+            this.tlsSocketFactory = tlsSocketFactory;
+            this.tlsPort = tlsSocketFactory != null ? tlsPort : 0;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey key = (PoolKey) other;
+            return tlsSocketFactory == key.tlsSocketFactory && tlsPort == key.tlsPort;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(tlsSocketFactory) + tlsPort;
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+
+    /**
+     * @return a new instance of a ConnectionPoolRegistry Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private int maxConnectionsTotal = DEFAULT_SHARED_MAX_CONNECTIONS_TOTAL;
+        private Integer maxConnectionsPerPool;
+        private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+        /**
+         * @param value Specifies the maximum number of connections leased from all the shared pools together.
+         *              Has to be positive.
+         * @return builder
+         */
+        public Builder maxConnectionsTotal(int value) {
+            checkArgument(value > 0);
+            maxConnectionsTotal = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the maximum number of connections of every shared pool. Has to be positive.
+         *              maxConnectionsTotal by default.
+         * @return builder
+         */
+        public Builder maxConnectionsPerPool(int value) {
+            checkArgument(value > 0);
+            maxConnectionsPerPool = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the maximum number of connections per route of every shared pool. Has to be positive.
+         * @return builder
+         */
+        public Builder maxConnectionsPerRoute(int value) {
+            checkArgument(value > 0);
+            maxConnectionsPerRoute = value;
+            return this;
+        }
+
+        public ConnectionPoolRegistry build() {
+            int perPool = maxConnectionsPerPool != null ? maxConnectionsPerPool : maxConnectionsTotal;
+            checkState(perPool <= maxConnectionsTotal, "maxConnectionsPerPool cannot exceed maxConnectionsTotal");
+            checkState(maxConnectionsPerRoute <= perPool,
+                    "maxConnectionsPerRoute cannot exceed maxConnectionsPerPool");
+            ConnectionPoolRegistry registry = new ConnectionPoolRegistry();
+            registry.maxConnectionsTotal = maxConnectionsTotal;
+            registry.maxConnectionsPerPool = perPool;
+            registry.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            registry.permits = new Semaphore(maxConnectionsTotal);
+            return registry;
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.http.client.methods.HttpPost;
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.DeadlineExceededException;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overall deadline of a SOAP call, covering the connection lease, the connect, the TLS handshake, the write of the
+ * request and the read of the response of all the attempts. When it passes, the posts bound to it are aborted,
+ * which interrupts whichever phase they are in.
+ * <p/>
+ * The deadlines of all the SoapClients are enforced by a single daemon timer. Cancelled deadlines are removed from
+ * its queue at once where the JDK supports it (Java 7+) and purged periodically otherwise.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class Deadline implements Runnable {
+
+    private final static long PURGE_INTERVAL_IN_MILLIS = 10000L;
+
+    private final static ScheduledThreadPoolExecutor timer = createTimer();
+
+    private final int deadlineInMillis;
+    private final long expiresAt;
+    private final List<HttpPost> posts = new CopyOnWriteArrayList<HttpPost>();
+    private volatile boolean expired;
+    private volatile ScheduledFuture<?> expiry;
+
+    private Deadline(int deadlineInMillis) {
+        this.deadlineInMillis = deadlineInMillis;
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineInMillis);
+    }
+
+    /**
+     * @param deadlineInMillis time the call has to complete within
+     * @return the running deadline
+     */
+    static Deadline start(int deadlineInMillis) {
+        Deadline deadline = new Deadline(deadlineInMillis);
+        deadline.expiry = timer.schedule(deadline, deadlineInMillis, TimeUnit.MILLISECONDS);
+        return deadline;
+    }
+
+    /**
+     * @param post post aborted when the deadline passes; aborted at once if it has already passed
+     */
+    void bind(HttpPost post) {
+        posts.add(post);
+        if (expired) {
+            post.abort();
+        }
+    }
+
+    @Override
+    public void run() {
+        expired = true;
+        for (HttpPost post : posts) {
+            post.abort();
+        }
+    }
+
+    void cancel() {
+        ScheduledFuture<?> scheduled = expiry;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            expiry = null;
+        }
+        posts.clear();
+    }
+
+    boolean isExpired() {
+        return expired;
+    }
+
+    long getRemainingInMillis() {
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+
+    DeadlineExceededException exceeded(Throwable cause) {
+        String message = String.format("Deadline of [%d] ms exceeded", deadlineInMillis);
+        return cause != null ? new DeadlineExceededException(message, cause) : new DeadlineExceededException(message);
+    }
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("soap-deadline-timer-%d").setDaemon(true).build());
+        if (!removeOnCancel(executor)) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    executor.purge();
+                }
+            }, PURGE_INTERVAL_IN_MILLIS, PURGE_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return executor;
+    }
+
+    // setRemoveOnCancelPolicy is available as of Java 7 only
+    private static boolean removeOnCancel(ScheduledThreadPoolExecutor executor) {
+        try {
+            Method method = ScheduledThreadPoolExecutor.class.getMethod("setRemoveOnCancelPolicy", boolean.class);
+            method.invoke(executor, Boolean.TRUE);
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+}
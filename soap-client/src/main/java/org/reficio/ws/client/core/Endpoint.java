@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.TransmissionException;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Endpoint of the SoapClient together with its passive health tracking - the requests in flight,
+ * the recent latency and the circuit breaker that ejects the endpoint when it keeps failing -
+ * and the throttle that keeps the requests within the limits of the endpoint.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class Endpoint {
+
+    // weight of the latest sample in the moving average of the latency
+    private final static double LATENCY_SMOOTHING = 0.3;
+
+    private final URI uri;
+    private final CircuitBreaker circuitBreaker;
+    private final Throttle throttle;
+    private final boolean latencyTracked;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    // updated without synchronization - a lost sample does not matter to a moving average
+    private volatile double latencyInMillis = -1.0;
+
+    Endpoint(URI uri, CircuitBreaker circuitBreaker, Throttle throttle, boolean latencyTracked) {
+        this.uri = uri;
+        this.circuitBreaker = circuitBreaker;
+        this.throttle = throttle;
+        this.latencyTracked = latencyTracked;
+    }
+
+    URI getUri() {
+        return uri;
+    }
+
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    Throttle getThrottle() {
+        return throttle;
+    }
+
+    int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return moving average of the latency, or a negative value if no request has completed yet
+     */
+    double getLatencyInMillis() {
+        return latencyInMillis;
+    }
+
+    boolean isAvailable() {
+        return circuitBreaker == null || circuitBreaker.getState() != CircuitBreaker.State.OPEN;
+    }
+
+    boolean tryAcquire() {
+        return circuitBreaker == null || circuitBreaker.tryAcquire();
+    }
+
+    /**
+     * Waits for the throttle of the endpoint, if any, to let the request through
+     *
+     * @return start of the request, to be passed to requestCompleted()
+     * @throws org.reficio.ws.client.ThrottledException if the throttle does not let the request through in time
+     */
+    long requestStarted() {
+        return requestStarted(true);
+    }
+
+    /**
+     * Lets the request through only if the throttle of the endpoint, if any, does so without waiting
+     *
+     * @return start of the request, to be passed to requestCompleted()
+     * @throws org.reficio.ws.client.ThrottledException if the throttle does not let the request through right away
+     */
+    long requestStartedWithoutWaiting() {
+        return requestStarted(false);
+    }
+
+    private long requestStarted(boolean wait) {
+        if (throttle != null) {
+            try {
+                if (wait) {
+                    throttle.acquire();
+                } else {
+                    throttle.acquireWithoutWaiting();
+                }
+            } catch (TransmissionException ex) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.cancelTrial();
+                }
+                throw ex;
+            }
+        }
+        outstanding.incrementAndGet();
+        return latencyTracked ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * @param started value returned by requestStarted()
+     * @param failure failure of the request, or null if it succeeded
+     */
+    void requestCompleted(long started, TransmissionException failure) {
+        outstanding.decrementAndGet();
+        if (throttle != null) {
+            throttle.release(failure);
+        }
+        if (latencyTracked) {
+            double latency = (System.nanoTime() - started) / 1000000.0;
+            double average = latencyInMillis;
+            latencyInMillis = average < 0 ? latency : average + LATENCY_SMOOTHING * (latency - average);
+        }
+        if (circuitBreaker != null) {
+            if (failure == null) {
+                circuitBreaker.recordSuccess();
+            } else {
+                circuitBreaker.recordFailure(failure);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Callback that streams the SOAP envelope directly to the connection, so that the envelope does not have to be
+ * held in memory. The callback may be invoked more than once if the request has to be repeated,
+ * e.g. in response to an authentication challenge.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public interface EnvelopeWriter {
+
+    /**
+     * Writes the SOAP envelope to the given stream. The stream must not be closed.
+     *
+     * @param out stream that the envelope is transmitted through
+     * @throws IOException if the envelope cannot be written
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+}
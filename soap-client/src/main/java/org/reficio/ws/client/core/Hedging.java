@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedging state of a SoapClient - the latencies the hedge delays are derived from and the budget of the hedges.
+ * The budget is a token bucket: every hedgeable request adds the budget ratio of a token, every hedge takes a whole
+ * one, and the bucket holds at most the burst of tokens. It starts full.
+ * <p/>
+ * The hedges of all the SoapClients are scheduled by a single daemon timer and sent from a shared pool of daemon
+ * threads, which are released when idle.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class Hedging {
+
+    // the budget is kept in thousandths of a hedge, so that it can be counted atomically
+    private final static long HEDGE_COST = 1000L;
+
+    private final static ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("soap-hedge-timer-%d").setDaemon(true).build());
+    private final static ExecutorService executor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("soap-hedge-%d").setDaemon(true).build());
+
+    private final HedgingPolicy policy;
+    private final ConcurrentMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<String, LatencyHistogram>();
+    private final AtomicLong budget;
+    private final long budgetDeposit;
+    private final long budgetCapacity;
+
+    Hedging(HedgingPolicy policy) {
+        this.policy = policy;
+        this.budgetDeposit = Math.round(policy.getBudgetRatio() * HEDGE_COST);
+        this.budgetCapacity = policy.getBudgetBurst() * HEDGE_COST;
+        this.budget = new AtomicLong(budgetCapacity);
+    }
+
+    HedgingPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @param soapAction SOAPAction of a hedgeable request
+     * @return time after which the request is hedged
+     */
+    long getDelayInMillis(String soapAction) {
+        LatencyHistogram histogram = latencies.get(soapAction);
+        if (histogram == null || histogram.getCount() < policy.getMinSamples()) {
+            return policy.getInitialDelayInMillis();
+        }
+        return histogram.getValueAtPercentile(policy.getDelayPercentile()) / 1000L;
+    }
+
+    /**
+     * @param soapAction      SOAPAction of a hedgeable request
+     * @param latencyInNanos  latency of a successful transmission of the request or of its hedge
+     */
+    void recordLatency(String soapAction, long latencyInNanos) {
+        LatencyHistogram histogram = latencies.get(soapAction);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = latencies.putIfAbsent(soapAction, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        histogram.record(latencyInNanos / 1000L);
+    }
+
+    void requestStarted() {
+        long current = budget.get();
+        while (current < budgetCapacity && !budget.compareAndSet(current, Math.min(budgetCapacity, current + budgetDeposit))) {
+            current = budget.get();
+        }
+    }
+
+    /**
+     * @return true if the budget allows another hedge, which has then been taken from it
+     */
+    boolean tryAcquireHedge() {
+        long current = budget.get();
+        while (current >= HEDGE_COST) {
+            if (budget.compareAndSet(current, current - HEDGE_COST)) {
+                return true;
+            }
+            current = budget.get();
+        }
+        return false;
+    }
+
+    static ScheduledFuture<?> schedule(Runnable hedge, long delayInMillis) {
+        return timer.schedule(hedge, delayInMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static void execute(Runnable hedge) {
+        executor.execute(hedge);
+    }
+
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.reficio.ws.client.core.SoapConstants.*;
+
+/**
+ * Policy of hedging the requests of the SoapClient, to cut the tail latency of read-only operations.
+ * If a request has not completed within the hedge delay, a duplicate is sent, preferably to another endpoint.
+ * The first response wins and the other request is aborted. The hedge delay is the given percentile of the recent
+ * latencies of the operation, or the initial delay until enough of them have been observed.
+ * <p/>
+ * Only the SOAPActions on the hedgeable-action allowlist are ever hedged, as the duplicate is processed by the server
+ * too. The extra load is capped by the budget - at most the given fraction of the requests is hedged, with short
+ * bursts above it allowed. Requests streamed from an InputStream and asynchronous posts are never hedged.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class HedgingPolicy {
+
+    private double delayPercentile;
+    private long initialDelayInMillis;
+    private int minSamples;
+    private double budgetRatio;
+    private int budgetBurst;
+    private Set<String> hedgeableSoapActions;
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+    public double getDelayPercentile() {
+        return delayPercentile;
+    }
+
+    public long getInitialDelayInMillis() {
+        return initialDelayInMillis;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    public int getBudgetBurst() {
+        return budgetBurst;
+    }
+
+    public Set<String> getHedgeableSoapActions() {
+        return hedgeableSoapActions;
+    }
+
+    // ----------------------------------------------------------------
+    // HEDGING API
+    // ----------------------------------------------------------------
+    boolean isHedgeable(String soapAction) {
+        return soapAction != null && hedgeableSoapActions.contains(soapAction);
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+    private HedgingPolicy() {
+    }
+
+    /**
+     * Builder to construct a properly populated HedgingPolicy
+     */
+    public static class Builder {
+
+        private Double delayPercentile = DEFAULT_HEDGING_DELAY_PERCENTILE;
+        private Long initialDelayInMillis = DEFAULT_HEDGING_INITIAL_DELAY_IN_MILLIS;
+        private Integer minSamples = DEFAULT_HEDGING_MIN_SAMPLES;
+        private Double budgetRatio = DEFAULT_HEDGING_BUDGET_RATIO;
+        private Integer budgetBurst = DEFAULT_HEDGING_BUDGET_BURST;
+        private final Set<String> hedgeableSoapActions = new HashSet<String>();
+
+        /**
+         * @param value Specifies the percentile of the latencies of an operation used as its hedge delay,
+         *              between 0 and 100 exclusive.
+         * @return builder
+         */
+        public Builder delayPercentile(double value) {
+            checkArgument(value > 0.0 && value < 100.0);
+            delayPercentile = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the hedge delay in milliseconds used until enough latencies of the operation have
+         *              been observed. Has to be not negative.
+         * @return builder
+         */
+        public Builder initialDelayInMillis(long value) {
+            checkArgument(value >= 0);
+            initialDelayInMillis = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the number of latencies of an operation observed before its hedge delay is derived
+         *              from them. Has to be positive.
+         * @return builder
+         */
+        public Builder minSamples(int value) {
+            checkArgument(value > 0);
+            minSamples = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the maximum fraction of the requests that is hedged, between 0 and 1.
+         * @return builder
+         */
+        public Builder budgetRatio(double value) {
+            checkArgument(value >= 0.0 && value <= 1.0);
+            budgetRatio = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the number of hedges that may be sent in a burst above the budget ratio.
+         *              Has to be positive.
+         * @return builder
+         */
+        public Builder budgetBurst(int value) {
+            checkArgument(value > 0);
+            budgetBurst = value;
+            return this;
+        }
+
+        /**
+         * Adds the SOAPAction to the allowlist of read-only operations - only these are ever hedged.
+         *
+         * @param value SOAPAction of a read-only operation. Null is not accepted.
+         * @return builder
+         */
+        public Builder hedgeableSoapAction(String value) {
+            hedgeableSoapActions.add(checkNotNull(value));
+            return this;
+        }
+
+        /**
+         * Constructs properly populated hedging policy
+         *
+         * @return properly populated hedging policy
+         */
+        public HedgingPolicy build() {
+            HedgingPolicy policy = new HedgingPolicy();
+            policy.delayPercentile = delayPercentile;
+            policy.initialDelayInMillis = initialDelayInMillis;
+            policy.minSamples = minSamples;
+            policy.budgetRatio = budgetRatio;
+            policy.budgetBurst = budgetBurst;
+            policy.hedgeableSoapActions = Collections.unmodifiableSet(new HashSet<String>(hedgeableSoapActions));
+            return policy;
+        }
+    }
+
+    /**
+     * @return a new instance of a HedgingPolicy Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.HttpContext;
+import org.reficio.ws.annotation.ThreadSafe;
+
+/**
+ * Keeps a connection alive for as long as the server allows in the Keep-Alive header, but not longer than
+ * the keep-alive of the client. Without the header, the connection is kept alive for the keep-alive of the client,
+ * or indefinitely if it is 0.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+    private final ConnectionKeepAliveStrategy serverStrategy = new DefaultConnectionKeepAliveStrategy();
+    private final long keepAliveInMillis;
+
+    KeepAliveStrategy(long keepAliveInMillis) {
+        this.keepAliveInMillis = keepAliveInMillis;
+    }
+
+    @Override
+    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        long serverKeepAliveInMillis = serverStrategy.getKeepAliveDuration(response, context);
+        if (keepAliveInMillis <= 0) {
+            return serverKeepAliveInMillis;
+        }
+        return serverKeepAliveInMillis > 0 ? Math.min(serverKeepAliveInMillis, keepAliveInMillis) : keepAliveInMillis;
+    }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection pool whose leases also take a permit of a limit shared with other pools, e.g. all the pools of a
+ * ConnectionPoolRegistry. A connection holds the permit until it is returned to the pool or the pool is shut down.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class LimitedConnectionManager extends PoolingClientConnectionManager {
+
+    // the wait for a permit checks that often whether the request has been aborted
+    private final static long ABORT_CHECK_INTERVAL_IN_MILLIS = 50L;
+
+    private final Semaphore permits;
+    private final Set<ManagedClientConnection> leased =
+            Collections.newSetFromMap(new ConcurrentHashMap<ManagedClientConnection, Boolean>());
+
+    LimitedConnectionManager(SchemeRegistry registry, Semaphore permits) {
+        super(registry);
+        this.permits = permits;
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+        return new ClientConnectionRequest() {
+            private volatile boolean aborted;
+            private volatile ClientConnectionRequest request;
+
+            @Override
+            public ManagedClientConnection getConnection(long timeout, TimeUnit unit)
+                    throws InterruptedException, ConnectionPoolTimeoutException {
+                long started = System.nanoTime();
+                acquirePermit(timeout, unit);
+                try {
+                    request = LimitedConnectionManager.super.requestConnection(route, state);
+                    if (aborted) {
+                        request.abortRequest();
+                    }
+                    long remaining = timeout > 0 ? Math.max(1L, unit.toNanos(timeout) - (System.nanoTime() - started)) : 0L;
+                    ManagedClientConnection connection = request.getConnection(remaining, TimeUnit.NANOSECONDS);
+                    leased.add(connection);
+                    return connection;
+                } catch (InterruptedException ex) {
+                    permits.release();
+                    throw ex;
+                } catch (ConnectionPoolTimeoutException ex) {
+                    permits.release();
+                    throw ex;
+                } catch (RuntimeException ex) {
+                    permits.release();
+                    throw ex;
+                }
+            }
+
+            @Override
+            public void abortRequest() {
+                aborted = true;
+                ClientConnectionRequest current = request;
+                if (current != null) {
+                    current.abortRequest();
+                }
+            }
+
+            private void acquirePermit(long timeout, TimeUnit unit)
+                    throws InterruptedException, ConnectionPoolTimeoutException {
+                long deadline = System.nanoTime() + unit.toNanos(timeout);
+                while (!permits.tryAcquire(ABORT_CHECK_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (aborted) {
+                        throw new InterruptedException("Connection request aborted");
+                    }
+                    if (timeout > 0 && System.nanoTime() - deadline >= 0) {
+                        throw new ConnectionPoolTimeoutException("Timeout waiting for a connection of the shared pools");
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection(ManagedClientConnection connection, long keepAlive, TimeUnit unit) {
+        try {
+            super.releaseConnection(connection, keepAlive, unit);
+        } finally {
+            if (leased.remove(connection)) {
+                permits.release();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            super.shutdown();
+        } finally {
+            // the connections still leased are closed by the shutdown, so they are not returned
+            for (ManagedClientConnection connection : leased) {
+                if (leased.remove(connection)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+
+}
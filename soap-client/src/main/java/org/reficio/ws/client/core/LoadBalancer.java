@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.CircuitBreakerOpenException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the endpoint of every request according to the LoadBalancing strategy.
+ * The endpoints are ranked by the strategy first, then the first one admitted by its circuit breaker is chosen,
+ * so that a failing endpoint is temporarily ejected and the requests fail over to the healthy ones.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class LoadBalancer {
+
+    private final static Random random = new Random();
+
+    private final static Comparator<Endpoint> BY_OUTSTANDING = new Comparator<Endpoint>() {
+        @Override
+        public int compare(Endpoint first, Endpoint second) {
+            return first.getOutstanding() - second.getOutstanding();
+        }
+    };
+
+    private final List<Endpoint> endpoints;
+    private final LoadBalancing strategy;
+    private final AtomicInteger turn = new AtomicInteger();
+
+    LoadBalancer(List<Endpoint> endpoints, LoadBalancing strategy) {
+        this.endpoints = Collections.unmodifiableList(new ArrayList<Endpoint>(endpoints));
+        this.strategy = strategy;
+    }
+
+    List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @param failed endpoint the previous attempt of the request failed on, chosen last if possible; may be null
+     * @return endpoint for the request
+     * @throws CircuitBreakerOpenException if all the endpoints are ejected
+     */
+    Endpoint select(Endpoint failed) {
+        if (endpoints.size() == 1) {
+            Endpoint endpoint = endpoints.get(0);
+            if (!endpoint.tryAcquire()) {
+                throw new CircuitBreakerOpenException(String.format("Circuit breaker of [%s] is open", endpoint.getUri()));
+            }
+            return endpoint;
+        }
+        for (Endpoint endpoint : rank(failed)) {
+            if (endpoint.tryAcquire()) {
+                return endpoint;
+            }
+        }
+        throw new CircuitBreakerOpenException("Circuit breakers of all the endpoints are open");
+    }
+
+    private List<Endpoint> rank(Endpoint failed) {
+        // rotation spreads the requests among the endpoints that the strategy ranks equally
+        int start = (turn.getAndIncrement() & Integer.MAX_VALUE) % endpoints.size();
+        List<Endpoint> ranking = new ArrayList<Endpoint>(endpoints.size());
+        ranking.addAll(endpoints.subList(start, endpoints.size()));
+        ranking.addAll(endpoints.subList(0, start));
+        if (strategy == LoadBalancing.LEAST_OUTSTANDING) {
+            Collections.sort(ranking, BY_OUTSTANDING);
+        } else if (strategy == LoadBalancing.LATENCY_WEIGHTED) {
+            Endpoint chosen = chooseByLatency(ranking);
+            ranking.remove(chosen);
+            ranking.add(0, chosen);
+        }
+        if (failed != null && ranking.remove(failed)) {
+            ranking.add(failed);
+        }
+        return ranking;
+    }
+
+    private static Endpoint chooseByLatency(List<Endpoint> ranking) {
+        // endpoints without samples are weighted as the fastest one, so that they get measured
+        double fastest = Double.MAX_VALUE;
+        for (Endpoint endpoint : ranking) {
+            double latency = endpoint.getLatencyInMillis();
+            if (latency >= 0 && latency < fastest) {
+                fastest = latency;
+            }
+        }
+        double[] weights = new double[ranking.size()];
+        double total = 0.0;
+        for (int i = 0; i < weights.length; i++) {
+            Endpoint endpoint = ranking.get(i);
+            if (endpoint.isAvailable()) {
+                double latency = endpoint.getLatencyInMillis();
+                weights[i] = 1.0 / Math.max(latency >= 0 ? latency : fastest, 0.001);
+                total += weights[i];
+            }
+        }
+        if (total == 0.0) {
+            return ranking.get(0);
+        }
+        double point = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            point -= weights[i];
+            if (weights[i] > 0.0 && point < 0.0) {
+                return ranking.get(i);
+            }
+        }
+        return ranking.get(0);
+    }
+
+}
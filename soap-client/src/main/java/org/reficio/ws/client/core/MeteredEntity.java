@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.output.ProxyOutputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entity that counts the bytes transmitted on the wire, whether it is written or read.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+final class MeteredEntity extends HttpEntityWrapper {
+
+    private final AtomicLong bytes;
+
+    MeteredEntity(HttpEntity entity, AtomicLong bytes) {
+        super(entity);
+        this.bytes = bytes;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new ProxyInputStream(wrappedEntity.getContent()) {
+            @Override
+            protected void afterRead(int n) {
+                if (n > 0) {
+                    bytes.addAndGet(n);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        wrappedEntity.writeTo(new ProxyOutputStream(out) {
+            @Override
+            protected void afterWrite(int n) {
+                bytes.addAndGet(n);
+            }
+        });
+    }
+
+}
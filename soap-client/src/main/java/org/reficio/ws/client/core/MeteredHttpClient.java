@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.ConnectionReuseStrategy;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.AuthenticationStrategy;
+import org.apache.http.client.HttpRequestRetryHandler;
+import org.apache.http.client.RedirectStrategy;
+import org.apache.http.client.RequestDirector;
+import org.apache.http.client.UserTokenHandler;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultRequestDirector;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.io.IOException;
+
+/**
+ * HttpClient that records the requests, the connections and the CONNECT tunnels of every route in the
+ * SoapClientMetrics. A connection is counted when it is opened, i.e. when a request could not reuse
+ * a pooled one.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+class MeteredHttpClient extends DefaultHttpClient {
+
+    private final SoapClientMetrics metrics;
+
+    MeteredHttpClient(ClientConnectionManager connectionManager, HttpParams params, SoapClientMetrics metrics) {
+        super(connectionManager, params);
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected RequestDirector createClientRequestDirector(HttpRequestExecutor requestExec,
+                                                          ClientConnectionManager connectionManager,
+                                                          ConnectionReuseStrategy reuseStrategy,
+                                                          ConnectionKeepAliveStrategy keepAliveStrategy,
+                                                          HttpRoutePlanner routePlanner,
+                                                          HttpProcessor httpProcessor,
+                                                          HttpRequestRetryHandler retryHandler,
+                                                          RedirectStrategy redirectStrategy,
+                                                          AuthenticationStrategy targetAuthStrategy,
+                                                          AuthenticationStrategy proxyAuthStrategy,
+                                                          UserTokenHandler userTokenHandler,
+                                                          HttpParams params) {
+        return new MeteredRequestDirector(requestExec, connectionManager, reuseStrategy, keepAliveStrategy,
+                routePlanner, httpProcessor, retryHandler, redirectStrategy, targetAuthStrategy, proxyAuthStrategy,
+                userTokenHandler, params);
+    }
+
+    private class MeteredRequestDirector extends DefaultRequestDirector {
+
+        private MeteredRequestDirector(HttpRequestExecutor requestExec, ClientConnectionManager connectionManager,
+                                       ConnectionReuseStrategy reuseStrategy,
+                                       ConnectionKeepAliveStrategy keepAliveStrategy, HttpRoutePlanner routePlanner,
+                                       HttpProcessor httpProcessor, HttpRequestRetryHandler retryHandler,
+                                       RedirectStrategy redirectStrategy, AuthenticationStrategy targetAuthStrategy,
+                                       AuthenticationStrategy proxyAuthStrategy, UserTokenHandler userTokenHandler,
+                                       HttpParams params) {
+            super(LogFactory.getLog(DefaultRequestDirector.class), requestExec, connectionManager, reuseStrategy,
+                    keepAliveStrategy, routePlanner, httpProcessor, retryHandler, redirectStrategy,
+                    targetAuthStrategy, proxyAuthStrategy, userTokenHandler, params);
+        }
+
+        @Override
+        protected HttpRoute determineRoute(HttpHost target, HttpRequest request, HttpContext context) throws HttpException {
+            HttpRoute route = super.determineRoute(target, request, context);
+            metrics.getOrCreateRoute(route).recordRequest();
+            return route;
+        }
+
+        @Override
+        protected void establishRoute(HttpRoute route, HttpContext context) throws HttpException, IOException {
+            // invoked for every request - only a connection that has not carried any request yet is a new one
+            if (managedConn.getMetrics().getRequestCount() == 0) {
+                metrics.getOrCreateRoute(route).recordConnection();
+            }
+            super.establishRoute(route, context);
+        }
+
+        @Override
+        protected boolean createTunnelToTarget(HttpRoute route, HttpContext context) throws HttpException, IOException {
+            boolean secure = super.createTunnelToTarget(route, context);
+            metrics.getOrCreateRoute(route).recordTunnel();
+            return secure;
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.HttpEntity;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the requests sent by the SoapClient with a single SOAPAction.
+ * Latencies are measured until the whole response has been received - or until the response headers have been
+ * received, if the response is streamed. Byte counts are the sizes on the wire, i.e. after compression.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class OperationMetrics {
+
+    private final String soapAction;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+
+    OperationMetrics(String soapAction) {
+        this.soapAction = soapAction;
+    }
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+
+    /**
+     * @return SOAPAction of the operation, empty for the requests sent without SOAPAction
+     */
+    public String getSoapAction() {
+        return soapAction;
+    }
+
+    public long getRequestCount() {
+        return latencies.getCount();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    public double getLatencyMeanInMillis() {
+        return latencies.getMean() / 1000.0;
+    }
+
+    public double getLatencyMaxInMillis() {
+        return latencies.getMax() / 1000.0;
+    }
+
+    public double getLatency50thPercentileInMillis() {
+        return getLatencyPercentileInMillis(50.0);
+    }
+
+    public double getLatency90thPercentileInMillis() {
+        return getLatencyPercentileInMillis(90.0);
+    }
+
+    public double getLatency99thPercentileInMillis() {
+        return getLatencyPercentileInMillis(99.0);
+    }
+
+    public double getLatency999thPercentileInMillis() {
+        return getLatencyPercentileInMillis(99.9);
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return latency at the given percentile, accurate to about 3%
+     */
+    public double getLatencyPercentileInMillis(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    // ----------------------------------------------------------------
+    // METERING API
+    // ----------------------------------------------------------------
+    HttpEntity meterRequest(HttpEntity entity) {
+        return entity == null ? null : new MeteredEntity(entity, requestBytes);
+    }
+
+    HttpEntity meterResponse(HttpEntity entity) {
+        return entity == null ? null : new MeteredEntity(entity, responseBytes);
+    }
+
+    void recordLatency(long latencyInNanos) {
+        latencies.record(latencyInNanos / 1000L);
+    }
+
+    void recordError() {
+        errorCount.incrementAndGet();
+    }
+
+}
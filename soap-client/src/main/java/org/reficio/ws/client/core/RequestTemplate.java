@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.message.BasicHeader;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.reficio.ws.client.core.SoapConstants.*;
+
+/**
+ * Per-client template of the HTTP POST requests transmitted by the SoapClient.
+ * Everything that does not depend on the posted message - the SOAP headers - is prepared once, so that generating
+ * a request does not rebuild the headers on every call. The endpoint URI is set on the request once it is chosen.
+ * The SOAP version is either given explicitly or recognized by looking at the root element of the envelope only.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class RequestTemplate {
+
+    // SOAP actions are defined by the WSDL, so there is few of them - this bound protects against misuse only
+    private final static int MAX_CACHED_ACTIONS = 256;
+
+    private final static Header SOAP_1_1_CONTENT_TYPE = new BasicHeader(PROP_CONTENT_TYPE, MIMETYPE_TEXT_XML);
+    private final static Header SOAP_1_1_EMPTY_ACTION = new BasicHeader(PROP_SOAP_ACTION_11, "");
+    private final static Header SOAP_1_2_CONTENT_TYPE = new BasicHeader(PROP_CONTENT_TYPE, MIMETYPE_APPLICATION_XML);
+    private final static Header ACCEPT_ENCODING = new BasicHeader(PROP_ACCEPT_ENCODING, ACCEPTED_ENCODINGS);
+
+    private final SoapVersion soapVersion;
+    private final Compression compression;
+    private final int compressionThresholdInBytes;
+
+    private final ConcurrentMap<String, Header> soap11ActionHeaders = new ConcurrentHashMap<String, Header>();
+    private final ConcurrentMap<String, Header> soap12ContentTypeHeaders = new ConcurrentHashMap<String, Header>();
+
+    /**
+     * @param soapVersion SOAP version of all the transmitted envelopes, or null if it should be recognized per envelope
+     * @param compression coding of the request bodies, or null if the requests and responses should not be compressed
+     * @param compressionThresholdInBytes size of the request body below which it is sent uncompressed
+     */
+    RequestTemplate(SoapVersion soapVersion, Compression compression, int compressionThresholdInBytes) {
+        this.soapVersion = soapVersion;
+        this.compression = compression;
+        this.compressionThresholdInBytes = compressionThresholdInBytes;
+    }
+
+    HttpPost createPost(String soapAction, String envelope, HttpEntity entity) {
+        return createPost(soapAction, resolveSoapVersion(envelope), entity);
+    }
+
+    HttpPost createPost(String soapAction, SoapVersion envelopeVersion, HttpEntity entity) {
+        // the URI is set when the endpoint of the request is chosen
+        HttpPost post = new HttpPost();
+        if (compression != null) {
+            post.addHeader(ACCEPT_ENCODING);
+            entity = compress(entity);
+        }
+        post.setEntity(entity);
+        if (envelopeVersion == SoapVersion.SOAP_1_1) {
+            post.addHeader(getSoap11ActionHeader(soapAction));
+            post.addHeader(SOAP_1_1_CONTENT_TYPE);
+        } else if (envelopeVersion == SoapVersion.SOAP_1_2) {
+            post.addHeader(getSoap12ContentTypeHeader(soapAction));
+        }
+        return post;
+    }
+
+    SoapVersion getSoapVersion() {
+        return soapVersion;
+    }
+
+    SoapVersion resolveSoapVersion(String envelope) {
+        return soapVersion != null ? soapVersion : detectSoapVersion(envelope);
+    }
+
+    // bodies of unknown length are streamed, so they are presumed to be large enough to compress
+    private HttpEntity compress(HttpEntity entity) {
+        long length = entity.getContentLength();
+        if (length >= 0 && length < compressionThresholdInBytes) {
+            return entity;
+        }
+        return new CompressingEntity(entity, compression);
+    }
+
+    private Header getSoap11ActionHeader(String soapAction) {
+        if (soapAction == null) {
+            return SOAP_1_1_EMPTY_ACTION;
+        }
+        Header header = soap11ActionHeaders.get(soapAction);
+        if (header == null) {
+            header = new BasicHeader(PROP_SOAP_ACTION_11, "\"" + soapAction + "\"");
+            cache(soap11ActionHeaders, soapAction, header);
+        }
+        return header;
+    }
+
+    private Header getSoap12ContentTypeHeader(String soapAction) {
+        if (soapAction == null) {
+            return SOAP_1_2_CONTENT_TYPE;
+        }
+        Header header = soap12ContentTypeHeaders.get(soapAction);
+        if (header == null) {
+            String contentType = MIMETYPE_APPLICATION_XML + PROP_DELIMITER + PROP_SOAP_ACTION_12 + "\"" + soapAction + "\"";
+            header = new BasicHeader(PROP_CONTENT_TYPE, contentType);
+            cache(soap12ContentTypeHeaders, soapAction, header);
+        }
+        return header;
+    }
+
+    private static void cache(ConcurrentMap<String, Header> headers, String soapAction, Header header) {
+        if (headers.size() < MAX_CACHED_ACTIONS) {
+            headers.putIfAbsent(soapAction, header);
+        }
+    }
+
+    /**
+     * Recognizes the SOAP version looking at the start tag of the root element only - the namespace of the
+     * Envelope has to be declared there. The XML declaration, comments and processing instructions are skipped.
+     *
+     * @param envelope SOAP envelope or its leading part
+     * @return recognized SOAP version or null if the root element is not a SOAP Envelope
+     */
+    static SoapVersion detectSoapVersion(String envelope) {
+        int start = findRootElement(envelope);
+        if (start < 0) {
+            return null;
+        }
+        int end = findTagEnd(envelope, start);
+        int soap11 = envelope.lastIndexOf(SOAP_1_1_NAMESPACE, end);
+        if (soap11 >= start) {
+            return SoapVersion.SOAP_1_1;
+        }
+        int soap12 = envelope.lastIndexOf(SOAP_1_2_NAMESPACE, end);
+        if (soap12 >= start) {
+            return SoapVersion.SOAP_1_2;
+        }
+        return null;
+    }
+
+    private static int findRootElement(String envelope) {
+        int index = 0;
+        while (true) {
+            index = envelope.indexOf('<', index);
+            if (index < 0 || index + 1 >= envelope.length()) {
+                return -1;
+            }
+            char next = envelope.charAt(index + 1);
+            if (next == '?') {
+                index = skip(envelope, "?>", index + 2);
+            } else if (envelope.startsWith("<!--", index)) {
+                index = skip(envelope, "-->", index + 4);
+            } else if (next == '!') {
+                index = skip(envelope, ">", index + 2);
+            } else {
+                return index;
+            }
+            if (index < 0) {
+                return -1;
+            }
+        }
+    }
+
+    private static int skip(String envelope, String terminator, int from) {
+        int index = envelope.indexOf(terminator, from);
+        return index < 0 ? -1 : index + terminator.length();
+    }
+
+    private static int findTagEnd(String envelope, int start) {
+        char quote = 0;
+        for (int i = start; i < envelope.length(); i++) {
+            char c = envelope.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        return envelope.length();
+    }
+
+}
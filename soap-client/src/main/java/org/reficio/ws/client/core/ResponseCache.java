@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.SoapClientException;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.reficio.ws.client.core.SoapConstants.*;
+
+/**
+ * Cache of the responses to the idempotent SOAP operations, e.g. read-only lookups.
+ * Only the operations whose SOAPAction has been explicitly enabled are cached. Responses are keyed by the endpoint,
+ * the SOAPAction and a hash of the request envelope. They expire after the time-to-live and the least recently
+ * used ones are evicted when the cache is full. Only successful responses are cached.
+ * Concurrent requests for the same missing response are collapsed into a single call to the SOAP server.
+ * <p/>
+ * The cache may be shared by many SoapClients. Streamed and asynchronous requests are never cached.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class ResponseCache {
+
+    private Set<String> soapActions;
+    private Cache<Key, String> responses;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+
+    /**
+     * @return number of the requests served from the cache
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of the cacheable requests transmitted to the SOAP server
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return number of the cached responses
+     */
+    public long getSize() {
+        return responses.size();
+    }
+
+    /**
+     * Discards all the cached responses
+     */
+    public void invalidateAll() {
+        responses.invalidateAll();
+    }
+
+    // ----------------------------------------------------------------
+    // CACHING API
+    // ----------------------------------------------------------------
+    boolean isCacheable(String soapAction) {
+        return soapAction != null && soapActions.contains(soapAction);
+    }
+
+    String get(URI endpointUri, String soapAction, String envelope, final Callable<String> transmission) {
+        Key key = new Key(endpointUri, soapAction, Hashing.sha1().hashString(envelope, Charsets.UTF_8));
+        final boolean[] transmitted = new boolean[1];
+        try {
+            String response = responses.get(key, new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    transmitted[0] = true;
+                    return transmission.call();
+                }
+            });
+            (transmitted[0] ? missCount : hitCount).incrementAndGet();
+            return response;
+        } catch (CacheLoader.InvalidCacheLoadException ex) {
+            // the SOAP server returned no response, so there is nothing to cache
+            missCount.incrementAndGet();
+            return null;
+        } catch (ExecutionException ex) {
+            missCount.incrementAndGet();
+            throw new SoapClientException(ex.getCause());
+        } catch (UncheckedExecutionException ex) {
+            missCount.incrementAndGet();
+            throw (RuntimeException) ex.getCause();
+        } catch (ExecutionError ex) {
+            throw (Error) ex.getCause();
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+    private ResponseCache() {
+    }
+
+    /**
+     * Builder to construct a properly populated ResponseCache
+     */
+    public static class Builder {
+
+        private final Set<String> soapActions = new HashSet<String>();
+        private Integer maxEntries = DEFAULT_RESPONSE_CACHE_MAX_ENTRIES;
+        private Long timeToLiveInMillis = DEFAULT_RESPONSE_CACHE_TTL_IN_MILLIS;
+
+        /**
+         * Enables the caching of the responses to the operation with the given SOAPAction.
+         *
+         * @param value SOAPAction of an idempotent operation. Null is not accepted.
+         * @return builder
+         */
+        public Builder soapAction(String value) {
+            soapActions.add(checkNotNull(value));
+            return this;
+        }
+
+        /**
+         * @param value Specifies the maximum number of the cached responses. Has to be positive.
+         * @return builder
+         */
+        public Builder maxEntries(int value) {
+            checkArgument(value > 0);
+            maxEntries = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the time in milliseconds after which a cached response expires. Has to be positive.
+         * @return builder
+         */
+        public Builder timeToLiveInMillis(long value) {
+            checkArgument(value > 0);
+            timeToLiveInMillis = value;
+            return this;
+        }
+
+        /**
+         * Constructs properly populated response cache
+         *
+         * @return properly populated response cache
+         */
+        public ResponseCache build() {
+            ResponseCache cache = new ResponseCache();
+            cache.soapActions = Collections.unmodifiableSet(new HashSet<String>(soapActions));
+            cache.responses = CacheBuilder.newBuilder()
+                    .maximumSize(maxEntries)
+                    .expireAfterWrite(timeToLiveInMillis, TimeUnit.MILLISECONDS)
+                    .build();
+            return cache;
+        }
+    }
+
+    /**
+     * @return a new instance of a ResponseCache Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Identity of a cached response - the envelope is represented by its hash, so that it is not retained
+     */
+    private static final class Key {
+
+        private final URI endpointUri;
+        private final String soapAction;
+        private final HashCode envelopeHash;
+
+        private Key(URI endpointUri, String soapAction, HashCode envelopeHash) {
+            this.endpointUri = endpointUri;
+            this.soapAction = soapAction;
+            this.envelopeHash = envelopeHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return endpointUri.equals(other.endpointUri) && soapAction.equals(other.soapAction)
+                    && envelopeHash.equals(other.envelopeHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * endpointUri.hashCode() + soapAction.hashCode()) + envelopeHash.hashCode();
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.annotation.ThreadSafe;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Compiled path of the elements selected by a ResponseReader. The steps are separated by slashes and are matched
+ * by the local name, by the namespace and the local name if given as {namespace}name, or by any name if given as *.
+ * An absolute path starts at the document element; a relative one at the children of the SOAP Body.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class ResponsePath {
+
+    private final static String ANY = "*";
+
+    private final String expression;
+    private final QName[] steps;
+
+    private ResponsePath(String expression, QName[] steps) {
+        this.expression = expression;
+        this.steps = steps;
+    }
+
+    static ResponsePath compile(String expression) {
+        checkArgument(expression.length() > 0 && !expression.equals("/"), "Empty path");
+        List<QName> steps = new ArrayList<QName>();
+        String relative = expression;
+        if (expression.startsWith("/")) {
+            relative = expression.substring(1);
+        } else {
+            steps.add(new QName(ANY, "Envelope"));
+            steps.add(new QName(ANY, "Body"));
+        }
+        for (String step : relative.split("/", -1)) {
+            steps.add(compileStep(expression, step));
+        }
+        return new ResponsePath(expression, steps.toArray(new QName[steps.size()]));
+    }
+
+    private static QName compileStep(String expression, String step) {
+        checkArgument(step.length() > 0, "Empty step in path [%s]", expression);
+        if (step.equals(ANY)) {
+            return new QName(ANY, ANY);
+        }
+        if (step.startsWith("{")) {
+            int end = step.indexOf('}');
+            checkArgument(end > 0 && end < step.length() - 1, "Malformed step [%s] in path [%s]", step, expression);
+            return new QName(step.substring(1, end), step.substring(end + 1));
+        }
+        return new QName(ANY, step);
+    }
+
+    String getExpression() {
+        return expression;
+    }
+
+    int getLength() {
+        return steps.length;
+    }
+
+    /**
+     * @param depth         depth of the element, starting from 1 for the document element
+     * @param namespaceUri  namespace of the element, empty if none
+     * @param localName     local name of the element
+     * @return true if the step of the path at the given depth matches the element
+     */
+    boolean matches(int depth, String namespaceUri, String localName) {
+        QName step = steps[depth - 1];
+        return (step.getLocalPart().equals(ANY) || step.getLocalPart().equals(localName))
+                && (step.getNamespaceURI().equals(ANY) || step.getNamespaceURI().equals(namespaceUri));
+    }
+
+}
@@ -0,0 +1,312 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.SoapClientException;
+import org.reficio.ws.client.SoapFaultException;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.reficio.ws.client.core.SoapConstants.*;
+
+/**
+ * Streaming reader of SOAP responses - detects the SOAP 1.1 and SOAP 1.2 faults and extracts the values of
+ * the selected elements in a single pass over the response, without building a tree of it.
+ * The paths are compiled once, when the reader is built, so a reader should be built once and reused.
+ * <p/>
+ * A path is a sequence of steps separated by slashes. A step matches an element by its local name, by its namespace
+ * and local name if given as {namespace}name, or any element if given as *. A path starting with a slash starts
+ * at the document element, e.g. /Envelope/Header/SessionId; any other path starts at the children of the SOAP Body,
+ * e.g. GetQuoteResponse/Price. The value of a selected element is its text content, including the text of
+ * its descendants.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class ResponseReader {
+
+    private final static XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+    private final List<ResponsePath> paths;
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+    public List<String> getPaths() {
+        List<String> expressions = new ArrayList<String>();
+        for (ResponsePath path : paths) {
+            expressions.add(path.getExpression());
+        }
+        return expressions;
+    }
+
+    /**
+     * @param response SOAP response
+     * @return values of the selected elements
+     * @throws SoapFaultException if the response is a SOAP fault
+     */
+    public ResponseValues read(String response) {
+        try {
+            return readAndClose(xmlInputFactory.createXMLStreamReader(new StringReader(response)), null);
+        } catch (XMLStreamException ex) {
+            throw new SoapClientException("Response parsing failed", ex);
+        }
+    }
+
+    /**
+     * @param response stream of a SOAP response; it is not closed
+     * @return values of the selected elements
+     * @throws SoapFaultException if the response is a SOAP fault
+     */
+    public ResponseValues read(InputStream response) {
+        try {
+            return readAndClose(xmlInputFactory.createXMLStreamReader(response), null);
+        } catch (XMLStreamException ex) {
+            throw new SoapClientException("Response parsing failed", ex);
+        }
+    }
+
+    /**
+     * @param response reader of a SOAP response, positioned at the start of the document; it is read to the end
+     *                 of the document, or of the fault, but not closed
+     * @return values of the selected elements
+     * @throws SoapFaultException if the response is a SOAP fault
+     */
+    public ResponseValues read(XMLStreamReader response) {
+        try {
+            return read(response, null);
+        } catch (XMLStreamException ex) {
+            throw new SoapClientException("Response parsing failed", ex);
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // READING API
+    // ----------------------------------------------------------------
+
+    /**
+     * @param content stream of an error response; it is not closed
+     * @param status  HTTP status of the error response
+     * @return the fault of the response, or null if the response is not a SOAP fault
+     */
+    static SoapFaultException findFault(InputStream content, Integer status) {
+        try {
+            new ResponseReader(Collections.<ResponsePath>emptyList())
+                    .readAndClose(xmlInputFactory.createXMLStreamReader(content), status);
+            return null;
+        } catch (SoapFaultException ex) {
+            return ex;
+        } catch (XMLStreamException ex) {
+            return null;
+        }
+    }
+
+    // closing the reader does not close the underlying stream
+    private ResponseValues readAndClose(XMLStreamReader reader, Integer status) throws XMLStreamException {
+        try {
+            return read(reader, status);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private ResponseValues read(XMLStreamReader reader, Integer status) throws XMLStreamException {
+        int[] matched = new int[paths.size()];
+        StringBuilder[] captured = new StringBuilder[paths.size()];
+        Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+        for (ResponsePath path : paths) {
+            values.put(path.getExpression(), new ArrayList<String>());
+        }
+        String envelopeNamespace = null;
+        boolean inBody = false;
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String namespaceUri = reader.getNamespaceURI();
+                namespaceUri = namespaceUri != null ? namespaceUri : "";
+                String localName = reader.getLocalName();
+                if (depth == 1 && localName.equals("Envelope") && isSoapNamespace(namespaceUri)) {
+                    envelopeNamespace = namespaceUri;
+                } else if (depth == 2 && localName.equals("Body") && namespaceUri.equals(envelopeNamespace)) {
+                    inBody = true;
+                } else if (depth == 3 && inBody && localName.equals("Fault") && namespaceUri.equals(envelopeNamespace)) {
+                    throw readFault(reader, SOAP_1_2_NAMESPACE.equals(envelopeNamespace), status);
+                }
+                // a path advances only if all its previous steps match the ancestors of the element
+                for (int i = 0; i < matched.length; i++) {
+                    ResponsePath path = paths.get(i);
+                    if (matched[i] == depth - 1 && depth <= path.getLength() && path.matches(depth, namespaceUri, localName)) {
+                        matched[i] = depth;
+                        if (depth == path.getLength()) {
+                            captured[i] = new StringBuilder();
+                        }
+                    }
+                }
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                for (StringBuilder text : captured) {
+                    if (text != null) {
+                        text.append(reader.getText());
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                for (int i = 0; i < matched.length; i++) {
+                    if (matched[i] == depth) {
+                        if (captured[i] != null) {
+                            values.get(paths.get(i).getExpression()).add(captured[i].toString());
+                            captured[i] = null;
+                        }
+                        matched[i] = depth - 1;
+                    }
+                }
+                if (depth == 2) {
+                    inBody = false;
+                }
+                depth--;
+            }
+        }
+        return new ResponseValues(values);
+    }
+
+    private static SoapFaultException readFault(XMLStreamReader reader, boolean soap12, Integer status)
+            throws XMLStreamException {
+        QName code = null;
+        String string = null;
+        String actor = null;
+        String child = null;
+        // depth relative to the Fault element
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String localName = reader.getLocalName();
+                if (depth == 0) {
+                    child = localName;
+                    if (localName.equals(soap12 ? "Role" : "faultactor")) {
+                        actor = reader.getElementText().trim();
+                        continue;
+                    } else if (!soap12 && localName.equals("faultcode")) {
+                        code = readQName(reader);
+                        continue;
+                    } else if (!soap12 && localName.equals("faultstring")) {
+                        string = reader.getElementText().trim();
+                        continue;
+                    }
+                } else if (depth == 1 && soap12) {
+                    if (child.equals("Code") && localName.equals("Value")) {
+                        code = readQName(reader);
+                        continue;
+                    } else if (child.equals("Reason") && localName.equals("Text") && string == null) {
+                        string = reader.getElementText().trim();
+                        continue;
+                    }
+                }
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+            }
+        }
+        return new SoapFaultException(code, string, actor, status);
+    }
+
+    // the prefix of the QName is resolved at the end of the element, where the namespaces of the element are in scope
+    private static QName readQName(XMLStreamReader reader) throws XMLStreamException {
+        String value = reader.getElementText().trim();
+        int colon = value.indexOf(':');
+        String prefix = colon > 0 ? value.substring(0, colon) : "";
+        String namespaceUri = reader.getNamespaceURI(prefix);
+        return new QName(namespaceUri != null ? namespaceUri : "", value.substring(colon + 1), prefix);
+    }
+
+    private static boolean isSoapNamespace(String namespaceUri) {
+        return SOAP_1_1_NAMESPACE.equals(namespaceUri) || SOAP_1_2_NAMESPACE.equals(namespaceUri);
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        return factory;
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+    private ResponseReader(List<ResponsePath> paths) {
+        this.paths = paths;
+    }
+
+    /**
+     * Builder to construct a properly populated ResponseReader
+     */
+    public static class Builder {
+
+        private final Map<String, ResponsePath> paths = new LinkedHashMap<String, ResponsePath>();
+
+        /**
+         * Selects the elements of the given path - their values are extracted while reading.
+         *
+         * @param value path of the elements. Null is not accepted.
+         * @return builder
+         */
+        public Builder select(String value) {
+            checkNotNull(value);
+            if (!paths.containsKey(value)) {
+                paths.put(value, ResponsePath.compile(value));
+            }
+            return this;
+        }
+
+        /**
+         * Constructs properly populated response reader
+         *
+         * @return properly populated response reader
+         */
+        public ResponseReader build() {
+            return new ResponseReader(Collections.unmodifiableList(new ArrayList<ResponsePath>(paths.values())));
+        }
+    }
+
+    /**
+     * @return a new instance of a ResponseReader Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Values of the elements selected by a ResponseReader from a single response - the text content of every
+ * selected element, in the document order.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public final class ResponseValues {
+
+    private final Map<String, List<String>> values;
+
+    ResponseValues(Map<String, List<String>> values) {
+        this.values = values;
+    }
+
+    /**
+     * @param path path selected by the ResponseReader
+     * @return value of the first element selected by the path, or null if there was none
+     */
+    public String getValue(String path) {
+        List<String> selected = getValues(path);
+        return selected.isEmpty() ? null : selected.get(0);
+    }
+
+    /**
+     * @param path path selected by the ResponseReader
+     * @return values of all the elements selected by the path
+     */
+    public List<String> getValues(String path) {
+        List<String> selected = values.get(path);
+        checkArgument(selected != null, "Path [%s] has not been selected by the reader", path);
+        return Collections.unmodifiableList(selected);
+    }
+
+}
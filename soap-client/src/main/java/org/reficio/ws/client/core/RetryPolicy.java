@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.TransmissionException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.reficio.ws.client.core.SoapConstants.*;
+
+/**
+ * Policy of retrying the failed transmissions of the SoapClient.
+ * A transmission is retried only if it failed with a retryable HTTP status code or exception, the maximum number
+ * of attempts has not been reached and the SOAPAction of the request is on the idempotent-action allowlist.
+ * The failures to connect are retried regardless of the SOAPAction, as the request has not been sent in that case.
+ * Consecutive attempts are separated by an exponentially growing, randomly jittered backoff.
+ * <p/>
+ * Requests streamed from an InputStream and asynchronous posts are never retried. The EnvelopeWriter of a retried
+ * request is invoked once per attempt.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class RetryPolicy {
+
+    private final static List<Integer> DEFAULT_RETRYABLE_STATUS_CODES = Arrays.asList(502, 503, 504);
+
+    private final static Random random = new Random();
+
+    private int maxAttempts;
+    private long initialBackoffInMillis;
+    private long maxBackoffInMillis;
+    private double backoffMultiplier;
+    private double jitter;
+    private Set<Integer> retryableStatusCodes;
+    private List<Class<? extends Exception>> retryableExceptions;
+    private Set<String> idempotentSoapActions;
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoffInMillis() {
+        return initialBackoffInMillis;
+    }
+
+    public long getMaxBackoffInMillis() {
+        return maxBackoffInMillis;
+    }
+
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public Set<Integer> getRetryableStatusCodes() {
+        return retryableStatusCodes;
+    }
+
+    public List<Class<? extends Exception>> getRetryableExceptions() {
+        return retryableExceptions;
+    }
+
+    public Set<String> getIdempotentSoapActions() {
+        return idempotentSoapActions;
+    }
+
+    // ----------------------------------------------------------------
+    // RETRY API
+    // ----------------------------------------------------------------
+    boolean isRetryable(int attempt, String soapAction, TransmissionException failure) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        if (isConnectFailure(failure.getCause())) {
+            return true;
+        }
+        if (soapAction == null || !idempotentSoapActions.contains(soapAction)) {
+            return false;
+        }
+        if (failure.getErrorCode() != null) {
+            return retryableStatusCodes.contains(failure.getErrorCode());
+        }
+        for (Class<? extends Exception> retryable : retryableExceptions) {
+            if (retryable.isInstance(failure.getCause())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param attempt number of the failed attempt, starting from 1
+     * @return backoff before the next attempt
+     */
+    long getBackoffInMillis(int attempt) {
+        double backoff = Math.min(maxBackoffInMillis, initialBackoffInMillis * Math.pow(backoffMultiplier, attempt - 1));
+        double jittered = backoff * (1.0 - jitter * random.nextDouble());
+        return Math.round(jittered);
+    }
+
+    static boolean isConnectFailure(Throwable cause) {
+        return cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+                || cause instanceof ConnectionPoolTimeoutException;
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+    private RetryPolicy() {
+    }
+
+    /**
+     * Builder to construct a properly populated RetryPolicy
+     */
+    public static class Builder {
+
+        private Integer maxAttempts = DEFAULT_RETRY_MAX_ATTEMPTS;
+        private Long initialBackoffInMillis = DEFAULT_RETRY_INITIAL_BACKOFF_IN_MILLIS;
+        private Long maxBackoffInMillis = DEFAULT_RETRY_MAX_BACKOFF_IN_MILLIS;
+        private Double backoffMultiplier = DEFAULT_RETRY_BACKOFF_MULTIPLIER;
+        private Double jitter = DEFAULT_RETRY_JITTER;
+        private Set<Integer> retryableStatusCodes;
+        private List<Class<? extends Exception>> retryableExceptions;
+        private final Set<String> idempotentSoapActions = new HashSet<String>();
+
+        /**
+         * @param value Specifies the maximum number of attempts, including the first one. Has to be positive.
+         * @return builder
+         */
+        public Builder maxAttempts(int value) {
+            checkArgument(value > 0);
+            maxAttempts = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the backoff in milliseconds after the first failed attempt. Has to be not negative.
+         * @return builder
+         */
+        public Builder initialBackoffInMillis(long value) {
+            checkArgument(value >= 0);
+            initialBackoffInMillis = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the upper bound of the backoff in milliseconds. Has to be not negative.
+         * @return builder
+         */
+        public Builder maxBackoffInMillis(long value) {
+            checkArgument(value >= 0);
+            maxBackoffInMillis = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the factor the backoff grows by after each failed attempt. Has to be at least 1.
+         * @return builder
+         */
+        public Builder backoffMultiplier(double value) {
+            checkArgument(value >= 1.0);
+            backoffMultiplier = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the fraction of the backoff that is randomized, between 0 and 1.
+         * @return builder
+         */
+        public Builder jitter(double value) {
+            checkArgument(value >= 0.0 && value <= 1.0);
+            jitter = value;
+            return this;
+        }
+
+        /**
+         * Marks the HTTP status code as retryable. By default 502, 503 and 504 are.
+         *
+         * @param value HTTP status code
+         * @return builder
+         */
+        public Builder retryableStatusCode(int value) {
+            if (retryableStatusCodes == null) {
+                retryableStatusCodes = new HashSet<Integer>();
+            }
+            retryableStatusCodes.add(value);
+            return this;
+        }
+
+        /**
+         * Marks the transmission failure as retryable. By default all the I/O failures are.
+         *
+         * @param value type of the failure. Null is not accepted.
+         * @return builder
+         */
+        public Builder retryableException(Class<? extends Exception> value) {
+            checkNotNull(value);
+            if (retryableExceptions == null) {
+                retryableExceptions = new ArrayList<Class<? extends Exception>>();
+            }
+            retryableExceptions.add(value);
+            return this;
+        }
+
+        /**
+         * Adds the SOAPAction to the allowlist of idempotent operations - only these are ever retried once sent.
+         *
+         * @param value SOAPAction of an idempotent operation. Null is not accepted.
+         * @return builder
+         */
+        public Builder idempotentSoapAction(String value) {
+            idempotentSoapActions.add(checkNotNull(value));
+            return this;
+        }
+
+        /**
+         * Constructs properly populated retry policy
+         *
+         * @return properly populated retry policy
+         */
+        public RetryPolicy build() {
+            RetryPolicy policy = new RetryPolicy();
+            policy.maxAttempts = maxAttempts;
+            policy.initialBackoffInMillis = initialBackoffInMillis;
+            policy.maxBackoffInMillis = maxBackoffInMillis;
+            policy.backoffMultiplier = backoffMultiplier;
+            policy.jitter = jitter;
+            Set<Integer> statusCodes = retryableStatusCodes != null ? retryableStatusCodes
+                    : new HashSet<Integer>(DEFAULT_RETRYABLE_STATUS_CODES);
+            policy.retryableStatusCodes = Collections.unmodifiableSet(new HashSet<Integer>(statusCodes));
+            List<Class<? extends Exception>> exceptions = retryableExceptions != null ? retryableExceptions
+                    : Collections.<Class<? extends Exception>>singletonList(IOException.class);
+            policy.retryableExceptions = Collections.unmodifiableList(new ArrayList<Class<? extends Exception>>(exceptions));
+            policy.idempotentSoapActions = Collections.unmodifiableSet(new HashSet<String>(idempotentSoapActions));
+            return policy;
+        }
+    }
+
+    /**
+     * @return a new instance of a RetryPolicy Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the connections of the SoapClient along a single route, i.e. to a single endpoint, directly or
+ * through the proxy. A connection to an HTTPS endpoint through a proxy carries a CONNECT tunnel, so on a pooled
+ * route there should be far fewer connections and tunnels than requests.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class RouteMetrics {
+
+    private final String route;
+    private final boolean tunnelled;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicLong tunnelCount = new AtomicLong();
+
+    RouteMetrics(String route, boolean tunnelled) {
+        this.route = route;
+        this.tunnelled = tunnelled;
+    }
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+
+    /**
+     * @return description of the route, e.g. {http://proxy:8080}->https://host:443
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * @return true if the connections of the route carry a CONNECT tunnel through the proxy
+     */
+    public boolean isTunnelled() {
+        return tunnelled;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return number of the connections established along the route
+     */
+    public long getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * @return number of the CONNECT tunnels established through the proxy
+     */
+    public long getTunnelCount() {
+        return tunnelCount.get();
+    }
+
+    /**
+     * @return fraction of the requests sent over a connection that had been established before, 0 if there were
+     * no requests
+     */
+    public double getConnectionReuseRate() {
+        long connections = connectionCount.get();
+        long requests = requestCount.get();
+        return requests == 0 ? 0.0 : Math.max(0.0, (double) (requests - connections) / requests);
+    }
+
+    // ----------------------------------------------------------------
+    // METERING API
+    // ----------------------------------------------------------------
+    void recordRequest() {
+        requestCount.incrementAndGet();
+    }
+
+    void recordConnection() {
+        connectionCount.incrementAndGet();
+    }
+
+    void recordTunnel() {
+        tunnelCount.incrementAndGet();
+    }
+
+}
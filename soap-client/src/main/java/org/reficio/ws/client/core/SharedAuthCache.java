@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.reficio.ws.annotation.ThreadSafe;
+
+/**
+ * Cache of the authentication schemes per route, shared by all the requests of the SoapClient, so that
+ * the credentials are sent preemptively instead of after an authentication challenge.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class SharedAuthCache extends BasicAuthCache {
+
+    @Override
+    public synchronized void put(HttpHost host, AuthScheme authScheme) {
+        super.put(host, authScheme);
+    }
+
+    @Override
+    public synchronized AuthScheme get(HttpHost host) {
+        return super.get(host);
+    }
+
+    @Override
+    public synchronized void remove(HttpHost host) {
+        super.remove(host);
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.auth.AuthScheme;
+import org.apache.http.auth.AuthSchemeFactory;
+import org.apache.http.auth.AuthenticationException;
+import org.apache.http.auth.Credentials;
+import org.apache.http.auth.MalformedChallengeException;
+import org.apache.http.impl.auth.DigestScheme;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.reficio.ws.annotation.ThreadSafe;
+
+/**
+ * Digest scheme that may be cached in the SharedAuthCache and reused by concurrent requests.
+ * The nonce of the last challenge is reused and every request gets its own nonce count,
+ * until the server issues a new challenge, e.g. when the nonce gets stale - the scheme that answers it replaces
+ * this one in the cache.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class SharedDigestScheme extends DigestScheme {
+
+    final static AuthSchemeFactory FACTORY = new AuthSchemeFactory() {
+        @Override
+        public AuthScheme newInstance(HttpParams params) {
+            return new SharedDigestScheme();
+        }
+    };
+
+    private boolean challenged;
+
+    @Override
+    public synchronized void processChallenge(Header header) throws MalformedChallengeException {
+        super.processChallenge(header);
+        // a stale nonce concerns the scheme that used it, not a new one - a new scheme has to be complete to be cached
+        if (!challenged) {
+            overrideParamter("stale", "false");
+        }
+        challenged = true;
+    }
+
+    @Override
+    public synchronized Header authenticate(Credentials credentials, HttpRequest request, HttpContext context)
+            throws AuthenticationException {
+        return super.authenticate(credentials, request, context);
+    }
+
+    @Override
+    public synchronized boolean isComplete() {
+        return super.isComplete();
+    }
+
+}
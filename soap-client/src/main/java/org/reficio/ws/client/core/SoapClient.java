@@ -18,43 +18,107 @@
  */
 package org.reficio.ws.client.core;
 
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.*;
 import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.ChallengeState;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.NTCredentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.UserTokenHandler;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.params.AuthPolicy;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.EofSensorInputStream;
+import org.apache.http.conn.EofSensorWatcher;
+import org.apache.http.conn.ManagedClientConnection;
 import org.apache.http.conn.params.ConnRoutePNames;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.routing.HttpRoutePlanner;
 import org.apache.http.conn.routing.RouteInfo;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
+import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentProducer;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.BasicClientConnectionManager;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.nio.client.DefaultHttpAsyncClient;
+import org.apache.http.impl.nio.conn.AsyncSchemeRegistryFactory;
+import org.apache.http.impl.nio.conn.PoolingClientAsyncConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.conn.scheme.AsyncScheme;
+import org.apache.http.nio.conn.scheme.AsyncSchemeRegistry;
+import org.apache.http.nio.conn.ssl.SSLLayeringStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.reficio.ws.SoapException;
 import org.reficio.ws.annotation.ThreadSafe;
 import org.reficio.ws.client.SoapClientException;
+import org.reficio.ws.client.SoapFaultException;
 import org.reficio.ws.client.TransmissionException;
+import org.reficio.ws.client.ssl.SSLContextCache;
 import org.reficio.ws.client.ssl.SSLUtils;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static org.reficio.ws.client.core.SoapConstants.*;
 
 /**
@@ -63,6 +127,13 @@ import static org.reficio.ws.client.core.SoapConstants.*;
  * When it comes to SOAP it supports version 1.1 and 1.2 - SOAPAction attribute is automatically properly placed,
  * either in the header (SOAP 1.1) or in the content (SOAP 1.2).
  * SOAP version recognition is based on the SOAP namespace included in the payload.
+ * By default a single connection is used - enable connection pooling in the builder if the client is shared
+ * between many threads.
+ * Messages may also be posted asynchronously - the asynchronous transport is based on non-blocking I/O, so
+ * in-flight requests do not occupy any caller threads. It is started on the first asynchronous post.
+ * Large messages may be streamed in both directions, see the SoapRequest and the postFor... methods.
+ * The timeouts and the overall deadline may be specified per request, and the request may carry a CallTiming
+ * record filled in with the breakdown of its latency.
  * This class may throw an unchecked @see org.reficio.ws.client.SoapClientException
  *
  * @author Tom Bujok
@@ -75,18 +146,70 @@ public final class SoapClient {
 
     private final static String NULL_SOAP_ACTION = null;
 
+    // the SOAP namespace is looked up in the leading part of a streamed envelope only
+    private final static int ENVELOPE_PROLOG_SIZE = 8192;
+
+    private final static XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+    private final static String[] HEDGE_PARAMETERS = {CoreConnectionPNames.SO_TIMEOUT,
+            CoreConnectionPNames.CONNECTION_TIMEOUT, ClientPNames.CONN_MANAGER_TIMEOUT, PARAM_DEADLINE};
+
     private int readTimeoutInMillis;
     private int connectTimeoutInMillis;
+    private int deadlineInMillis;
+
+    private boolean connectionPooling;
+    private int maxConnectionsTotal;
+    private int maxConnectionsPerRoute;
+    private int connectionLeaseTimeoutInMillis;
+    private boolean staleConnectionCheck;
+    private ConnectionPoolRegistry connectionPoolRegistry;
+    private boolean connectionPoolReleased;
+    private int keepAliveInMillis;
+    private int idleConnectionTimeoutInMillis;
+    private int connectionEvictionIntervalInMillis;
+    private int warmUpConnections;
+    private ScheduledFuture<?> connectionEviction;
 
     private URI endpointUri;
+    private List<URI> endpointUris;
+    private LoadBalancing loadBalancing;
     private Security endpointProperties;
     private boolean endpointTlsEnabled;
+    private SoapVersion soapVersion;
+    private Compression compression;
+    private int compressionThresholdInBytes;
+    private ResponseCache responseCache;
+    private RetryPolicy retryPolicy;
+    private CircuitBreakerPolicy circuitBreakerPolicy;
+    private HedgingPolicy hedgingPolicy;
+    private ThrottlingPolicy throttlingPolicy;
+    private LoadBalancer loadBalancer;
+    private Hedging hedging;
+    private boolean metricsEnabled;
+    private String metricsJmxName;
+    private SoapClientMetrics metrics;
+    private ObjectName metricsObjectName;
 
     private URI proxyUri;
     private Security proxyProperties;
     private boolean proxyTlsEnabled;
 
     private DefaultHttpClient client;
+    private DefaultHttpAsyncClient asyncClient;
+    private RequestTemplate requestTemplate;
+
+    private boolean preemptiveAuthentication;
+    private AuthCache authCache;
+
+    private SSLContextCache tlsContextCache;
+    private SSLContext tlsContext;
+    private SSLSocketFactory tlsSocketFactory;
+    private X509HostnameVerifier tlsHostnameVerifier;
+    private int tlsPort;
+
+    private HttpHost proxyHost;
+    private HttpRoutePlanner proxyRoutePlanner;
 
 
     // ----------------------------------------------------------------
@@ -110,14 +233,303 @@ public final class SoapClient {
      * @param requestEnvelope SOAP message envelope
      * @return The result returned by the SOAP server
      */
-    public String post(String soapAction, String requestEnvelope) {
-        log.debug(String.format("Sending request to host=[%s] action=[%s] request:%n%s", endpointUri.toString(),
-                soapAction, requestEnvelope));
-        String response = transmit(soapAction, requestEnvelope);
-        log.debug("Received response:\n" + requestEnvelope);
+    public String post(final String soapAction, final String requestEnvelope) {
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Sending request to host=[%s] action=[%s] request:%n%s", endpointUri.toString(),
+                    soapAction, requestEnvelope));
+        }
+        String response;
+        if (isCacheable(soapAction, requestEnvelope)) {
+            response = responseCache.get(endpointUri, soapAction, requestEnvelope, new Callable<String>() {
+                @Override
+                public String call() {
+                    return transmit(soapAction, generatePost(soapAction, requestEnvelope), deadlineInMillis);
+                }
+            });
+        } else {
+            response = transmit(soapAction, generatePost(soapAction, requestEnvelope), deadlineInMillis);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Received response:\n" + response);
+        }
         return response;
     }
 
+    /**
+     * Post the SOAP message to the SOAP server streaming the envelope from the given stream.
+     * The stream is closed once it has been transmitted.
+     *
+     * @param soapAction      SOAPAction attribute
+     * @param requestEnvelope SOAP message envelope
+     * @return The result returned by the SOAP server
+     */
+    public String post(String soapAction, InputStream requestEnvelope) {
+        return post(SoapRequest.builder().soapAction(soapAction).envelope(requestEnvelope).build());
+    }
+
+    /**
+     * Post the SOAP message to the SOAP server streaming the envelope written by the given callback
+     *
+     * @param soapAction    SOAPAction attribute
+     * @param soapVersion   SOAP version of the written envelope
+     * @param requestWriter callback that writes the SOAP message envelope
+     * @return The result returned by the SOAP server
+     */
+    public String post(String soapAction, SoapVersion soapVersion, EnvelopeWriter requestWriter) {
+        return post(SoapRequest.builder().soapAction(soapAction).soapVersion(soapVersion).envelope(requestWriter).build());
+    }
+
+    /**
+     * Post the SOAP request to the SOAP server
+     *
+     * @param request SOAP request
+     * @return The result returned by the SOAP server
+     */
+    public String post(final SoapRequest request) {
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Sending request to host=[%s] action=[%s]", endpointUri, request.getSoapAction()));
+        }
+        if (isCacheable(request.getSoapAction(), request.getEnvelope())) {
+            return responseCache.get(endpointUri, request.getSoapAction(), request.getEnvelope(), new Callable<String>() {
+                @Override
+                public String call() {
+                    return transmit(request.getSoapAction(), generatePost(request), getDeadlineInMillis(request));
+                }
+            });
+        }
+        return transmit(request.getSoapAction(), generatePost(request), getDeadlineInMillis(request));
+    }
+
+    /**
+     * Post all the SOAP requests to the SOAP server, with at most maxInFlight of them transmitted concurrently.
+     * Requests are pulled from the Iterable lazily, so at most maxInFlight of them are held in memory at a time.
+     * Concurrent posting requires connection pooling - at least maxInFlight connections per route should be allowed.
+     *
+     * @param requests    SOAP requests
+     * @param maxInFlight maximum number of requests transmitted at the same time
+     * @return results of the requests, in the order of the requests
+     */
+    public List<BatchResult> postAll(Iterable<SoapRequest> requests, int maxInFlight) {
+        final List<BatchResult> results = new ArrayList<BatchResult>();
+        postAll(requests, maxInFlight, new BatchCallback() {
+            @Override
+            public void completed(BatchResult result) {
+                while (results.size() <= result.getIndex()) {
+                    results.add(null);
+                }
+                results.set(result.getIndex(), result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Post all the SOAP requests to the SOAP server, with at most maxInFlight of them transmitted concurrently.
+     * The results are passed to the callback as soon as they are received. Returns when all the requests are done.
+     * Requests are pulled from the Iterable lazily, so at most maxInFlight of them are held in memory at a time.
+     * Concurrent posting requires connection pooling - at least maxInFlight connections per route should be allowed.
+     *
+     * @param requests    SOAP requests
+     * @param maxInFlight maximum number of requests transmitted at the same time
+     * @param callback    receiver of the results, invoked in the calling thread
+     */
+    public void postAll(Iterable<SoapRequest> requests, int maxInFlight, BatchCallback callback) {
+        checkNotNull(requests);
+        checkNotNull(callback);
+        checkArgument(maxInFlight > 0);
+        if (maxInFlight > 1 && !connectionPooling) {
+            throw new SoapClientException("Concurrent posting requires connection pooling to be enabled");
+        }
+        new BatchPost(this, maxInFlight).execute(requests, callback);
+    }
+
+    /**
+     * Post the SOAP request to the SOAP server and return the response as a stream, without buffering it.
+     * The connection is released once the stream has been fully read or closed, so it always has to be closed.
+     * The deadline of the request covers the read of the stream as well.
+     *
+     * @param request SOAP request
+     * @return The stream of the result returned by the SOAP server
+     */
+    public InputStream postForStream(SoapRequest request) {
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Sending request to host=[%s] action=[%s]", endpointUri, request.getSoapAction()));
+        }
+        HttpPost post = generatePost(request);
+        OperationMetrics operation = meter(request.getSoapAction(), post);
+        long started = operation != null ? System.nanoTime() : 0L;
+        Deadline deadline = startCall(post, getDeadlineInMillis(request));
+        try {
+            HttpEntity entity = executePost(request.getSoapAction(), post, operation);
+            InputStream content = entity == null ? null : entity.getContent();
+            recordSuccess(operation, started);
+            if (content == null) {
+                completeCall(post);
+                return null;
+            }
+            return deadline != null || request.getTiming() != null ? completeOnClose(post, content) : content;
+        } catch (IOException ex) {
+            completeCall(post);
+            throw recordFailure(operation, started, translateFailure(post, ex));
+        } catch (SoapException ex) {
+            completeCall(post);
+            throw recordFailure(operation, started, ex);
+        }
+    }
+
+    /**
+     * Post the SOAP request to the SOAP server and return a StAX reader that parses the response as it arrives.
+     * The connection is released once the end of the document has been reached or the reader has been closed,
+     * so the reader always has to be closed.
+     *
+     * @param request SOAP request
+     * @return The reader of the result returned by the SOAP server
+     */
+    public XMLStreamReader postForReader(SoapRequest request) {
+        InputStream content = postForStream(request);
+        if (content == null) {
+            return null;
+        }
+        try {
+            return new ResponseStreamReader(xmlInputFactory.createXMLStreamReader(content), content);
+        } catch (XMLStreamException ex) {
+            IOUtils.closeQuietly(content);
+            throw new SoapClientException("Response parsing failed", ex);
+        }
+    }
+
+    /**
+     * Post the SOAP request to the SOAP server and extract the values of the elements selected by the given reader
+     * from the response in a single pass, as it arrives, without buffering it.
+     *
+     * @param request SOAP request
+     * @param reader  reader of the response
+     * @return The values selected from the result returned by the SOAP server
+     * @throws SoapFaultException if the SOAP server responds with a SOAP fault
+     */
+    public ResponseValues postForValues(SoapRequest request, ResponseReader reader) {
+        checkNotNull(reader);
+        InputStream content = postForStream(request);
+        if (content == null) {
+            return null;
+        }
+        try {
+            return reader.read(content);
+        } finally {
+            IOUtils.closeQuietly(content);
+        }
+    }
+
+    /**
+     * Post the SOAP request to the SOAP server and return the response as a streaming Source, e.g. to transform it.
+     * The connection is released once the source has been fully read or its stream has been closed.
+     *
+     * @param request SOAP request
+     * @return The source of the result returned by the SOAP server
+     */
+    public Source postForSource(SoapRequest request) {
+        InputStream content = postForStream(request);
+        return content == null ? null : new StreamSource(content, endpointUri.toString());
+    }
+
+    /**
+     * Post the SOAP message to the SOAP server asynchronously without specifying the SOAPAction
+     *
+     * @param requestEnvelope SOAP message envelope
+     * @return The future result returned by the SOAP server
+     * @see #postAsync(String, String)
+     */
+    public ListenableFuture<String> postAsync(String requestEnvelope) {
+        return postAsync(NULL_SOAP_ACTION, requestEnvelope);
+    }
+
+    /**
+     * Post the SOAP message to the SOAP server asynchronously specifying the SOAPAction.
+     * The future fails with a TransmissionException if the transmission fails, and cancelling the future
+     * aborts the underlying exchange. Listeners attached to the future are executed by the I/O dispatcher
+     * thread unless an executor is specified, so they must not block. The calling thread does not wait for the
+     * throttle of the endpoint - if it does not let the request through right away, or the circuit breaker is open,
+     * the future fails with a ThrottledException or a CircuitBreakerOpenException.
+     *
+     * @param soapAction      SOAPAction attribute
+     * @param requestEnvelope SOAP message envelope
+     * @return The future result returned by the SOAP server
+     */
+    public ListenableFuture<String> postAsync(String soapAction, String requestEnvelope) {
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Sending async request to host=[%s] action=[%s] request:%n%s", endpointUri.toString(),
+                    soapAction, requestEnvelope));
+        }
+        HttpPost post = generatePost(soapAction, requestEnvelope);
+        OperationMetrics operation = meter(soapAction, post);
+        long started = operation != null ? System.nanoTime() : 0L;
+        Endpoint endpoint;
+        long endpointStarted;
+        try {
+            endpoint = loadBalancer.select(null);
+            // the caller must not block, so a request the throttle does not let through right away is rejected
+            endpointStarted = endpoint.requestStartedWithoutWaiting();
+        } catch (TransmissionException ex) {
+            return Futures.immediateFailedFuture(recordFailure(operation, started, ex));
+        }
+        post.setURI(endpoint.getUri());
+        AsyncPost result = new AsyncPost(endpoint, endpointStarted, operation, started);
+        try {
+            result.bind(getAsyncClient().execute(post, createContext(), result));
+        } catch (RuntimeException ex) {
+            result.failed(ex);
+        }
+        return result;
+    }
+
+    /**
+     * @return metrics of the client, or null if they are not enabled
+     */
+    public SoapClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return circuit breaker of the (first) endpoint, for monitoring purposes, or null if it is not enabled
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return loadBalancer.getEndpoints().get(0).getCircuitBreaker();
+    }
+
+    /**
+     * @return circuit breakers of all the endpoints, for monitoring purposes, or an empty list if they are not enabled
+     */
+    public List<CircuitBreaker> getCircuitBreakers() {
+        List<CircuitBreaker> circuitBreakers = new ArrayList<CircuitBreaker>();
+        for (Endpoint endpoint : loadBalancer.getEndpoints()) {
+            if (endpoint.getCircuitBreaker() != null) {
+                circuitBreakers.add(endpoint.getCircuitBreaker());
+            }
+        }
+        return circuitBreakers;
+    }
+
+    /**
+     * @return throttle of the (first) endpoint, for monitoring and adjustment, or null if throttling is not enabled
+     */
+    public Throttle getThrottle() {
+        return loadBalancer.getEndpoints().get(0).getThrottle();
+    }
+
+    /**
+     * @return throttles of all the endpoints, for monitoring and adjustment, or an empty list if throttling is not
+     *         enabled
+     */
+    public List<Throttle> getThrottles() {
+        List<Throttle> throttles = new ArrayList<Throttle>();
+        for (Endpoint endpoint : loadBalancer.getEndpoints()) {
+            if (endpoint.getThrottle() != null) {
+                throttles.add(endpoint.getThrottle());
+            }
+        }
+        return throttles;
+    }
+
     /**
      * Disconnects from the SOAP server
      * Underlying connection is a persistent connection by default:
@@ -125,8 +537,44 @@ public final class SoapClient {
      * @link http://docs.oracle.com/javase/1.5.0/docs/guide/net/http-keepalive.html
      */
     public void disconnect() {
+        if (connectionEviction != null) {
+            connectionEviction.cancel(false);
+        }
         if (client != null) {
+            releaseConnectionManager();
+        }
+        unregisterMetrics();
+        synchronized (this) {
+            if (asyncClient != null) {
+                try {
+                    asyncClient.shutdown();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private synchronized void releaseConnectionManager() {
+        if (connectionPoolRegistry == null) {
             client.getConnectionManager().shutdown();
+        } else if (!connectionPoolReleased) {
+            // the shared pool is shut down by the registry, once none of its clients uses it
+            connectionPoolReleased = true;
+            connectionPoolRegistry.release(client.getConnectionManager());
+        }
+    }
+
+    // closes the connections the server will not keep alive any more, before a request fails on them
+    synchronized void evictConnections() {
+        ClientConnectionManager manager = client.getConnectionManager();
+        manager.closeExpiredConnections();
+        manager.closeIdleConnections(idleConnectionTimeoutInMillis, TimeUnit.MILLISECONDS);
+        if (asyncClient != null) {
+            PoolingClientAsyncConnectionManager asyncManager =
+                    (PoolingClientAsyncConnectionManager) asyncClient.getConnectionManager();
+            asyncManager.closeExpiredConnections();
+            asyncManager.closeIdleConnections(idleConnectionTimeoutInMillis, TimeUnit.MILLISECONDS);
         }
     }
 
@@ -134,52 +582,631 @@ public final class SoapClient {
     // TRANSMISSION API
     // ----------------------------------------------------------------
     private HttpPost generatePost(String soapAction, String requestEnvelope) {
-        try {
-            HttpPost post = new HttpPost(endpointUri.toString());
-            StringEntity contentEntity = new StringEntity(requestEnvelope);
-            post.setEntity(contentEntity);
-            if (requestEnvelope.contains(SOAP_1_1_NAMESPACE)) {
-                soapAction = soapAction != null ? "\"" + soapAction + "\"" : "";
-                post.addHeader(PROP_SOAP_ACTION_11, soapAction);
-                post.addHeader(PROP_CONTENT_TYPE, MIMETYPE_TEXT_XML);
-                client.getParams().setParameter(PROP_CONTENT_TYPE, MIMETYPE_TEXT_XML);
-            } else if (requestEnvelope.contains(SOAP_1_2_NAMESPACE)) {
-                String contentType = MIMETYPE_APPLICATION_XML;
-                if (soapAction != null) {
-                    contentType = contentType + PROP_DELIMITER + PROP_SOAP_ACTION_12 + "\"" + soapAction + "\"";
-                }
-                post.addHeader(PROP_CONTENT_TYPE, contentType);
+        return requestTemplate.createPost(soapAction, requestEnvelope, createStringEntity(requestEnvelope));
+    }
+
+    private HttpPost generatePost(final SoapRequest request) {
+        SoapVersion soapVersion = request.getSoapVersion();
+        if (soapVersion == null) {
+            soapVersion = requestTemplate.getSoapVersion();
+        }
+        AbstractHttpEntity entity;
+        if (request.getEnvelope() != null) {
+            entity = createStringEntity(request.getEnvelope());
+            if (soapVersion == null) {
+                soapVersion = RequestTemplate.detectSoapVersion(request.getEnvelope());
+            }
+        } else if (request.getEnvelopeStream() != null) {
+            InputStream envelope = new BufferedInputStream(request.getEnvelopeStream(), ENVELOPE_PROLOG_SIZE);
+            if (soapVersion == null) {
+                soapVersion = detectSoapVersion(envelope);
             }
-            return post;
+            entity = new InputStreamEntity(envelope, -1);
+        } else {
+            entity = new EntityTemplate(new ContentProducer() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    request.getEnvelopeWriter().writeTo(out);
+                }
+            });
+        }
+        return configurePost(requestTemplate.createPost(request.getSoapAction(), soapVersion, entity), request);
+    }
+
+    // the parameters of the request take precedence over the ones of the client
+    private static HttpPost configurePost(HttpPost post, SoapRequest request) {
+        HttpParams params = post.getParams();
+        if (request.getReadTimeoutInMillis() != null) {
+            HttpConnectionParams.setSoTimeout(params, request.getReadTimeoutInMillis());
+        }
+        if (request.getConnectTimeoutInMillis() != null) {
+            HttpConnectionParams.setConnectionTimeout(params, request.getConnectTimeoutInMillis());
+        }
+        if (request.getConnectionLeaseTimeoutInMillis() != null) {
+            HttpClientParams.setConnectionManagerTimeout(params, request.getConnectionLeaseTimeoutInMillis());
+        }
+        if (request.getTiming() != null) {
+            params.setParameter(PARAM_CALL_TIMING, request.getTiming());
+        }
+        return post;
+    }
+
+    private int getDeadlineInMillis(SoapRequest request) {
+        return request.getDeadlineInMillis() != null ? request.getDeadlineInMillis() : deadlineInMillis;
+    }
+
+    private static StringEntity createStringEntity(String requestEnvelope) {
+        try {
+            return new StringEntity(requestEnvelope);
         } catch (UnsupportedEncodingException ex) {
             throw new SoapClientException(ex);
         }
     }
 
-    private String transmit(String soapAction, String data) {
-        HttpPost post = generatePost(soapAction, data);
-        return executePost(post);
+    private static SoapVersion detectSoapVersion(InputStream requestEnvelope) {
+        try {
+            byte[] prolog = new byte[ENVELOPE_PROLOG_SIZE];
+            requestEnvelope.mark(ENVELOPE_PROLOG_SIZE);
+            int length = IOUtils.read(requestEnvelope, prolog);
+            requestEnvelope.reset();
+            // namespace URIs are plain ASCII, so the encoding of the envelope does not matter here
+            return RequestTemplate.detectSoapVersion(new String(prolog, 0, length, "ISO-8859-1"));
+        } catch (IOException ex) {
+            throw new SoapClientException("Reading of the request envelope failed", ex);
+        }
+    }
+
+    private boolean isCacheable(String soapAction, String requestEnvelope) {
+        return responseCache != null && requestEnvelope != null && responseCache.isCacheable(soapAction);
+    }
+
+    private String transmit(String soapAction, HttpPost post, int deadlineInMillis) {
+        OperationMetrics operation = meter(soapAction, post);
+        long started = operation != null ? System.nanoTime() : 0L;
+        startCall(post, deadlineInMillis);
+        try {
+            String response;
+            if (isHedgeable(soapAction, post)) {
+                response = new HedgedPost(soapAction, post, operation).execute();
+            } else {
+                HttpEntity entity = executePost(soapAction, post, operation);
+                response = entity == null ? null : EntityUtils.toString(entity);
+            }
+            recordSuccess(operation, started);
+            return response;
+        } catch (IOException ex) {
+            throw recordFailure(operation, started, translateFailure(post, ex));
+        } catch (SoapException ex) {
+            throw recordFailure(operation, started, ex);
+        } finally {
+            completeCall(post);
+        }
+    }
+
+    /**
+     * @return the deadline of the call, or null if it has none
+     */
+    private Deadline startCall(HttpPost post, int deadlineInMillis) {
+        CallTiming timing = getTiming(post);
+        if (timing != null) {
+            timing.callStarted();
+        }
+        if (deadlineInMillis == INFINITE_TIMEOUT) {
+            return null;
+        }
+        Deadline deadline = Deadline.start(deadlineInMillis);
+        post.getParams().setParameter(PARAM_DEADLINE, deadline);
+        deadline.bind(post);
+        return deadline;
+    }
+
+    private static void completeCall(HttpPost post) {
+        CallTiming timing = getTiming(post);
+        if (timing != null) {
+            timing.completed();
+        }
+        Deadline deadline = getDeadline(post);
+        if (deadline != null) {
+            deadline.cancel();
+        }
+    }
+
+    // the call of a streamed response is complete once the stream has been read or closed
+    private static InputStream completeOnClose(final HttpPost post, InputStream content) {
+        return new EofSensorInputStream(content, new EofSensorWatcher() {
+            @Override
+            public boolean eofDetected(InputStream wrapped) {
+                completeCall(post);
+                return true;
+            }
+
+            @Override
+            public boolean streamClosed(InputStream wrapped) {
+                completeCall(post);
+                return true;
+            }
+
+            @Override
+            public boolean streamAbort(InputStream wrapped) {
+                completeCall(post);
+                return true;
+            }
+        });
+    }
+
+    private static CallTiming getTiming(HttpPost post) {
+        return TimedSocketFactory.getTiming(post.getParams());
+    }
+
+    private static Deadline getDeadline(HttpPost post) {
+        return (Deadline) post.getParams().getParameter(PARAM_DEADLINE);
+    }
+
+    private OperationMetrics meter(String soapAction, HttpPost post) {
+        if (metrics == null) {
+            return null;
+        }
+        OperationMetrics operation = metrics.getOrCreateOperation(soapAction);
+        post.setEntity(operation.meterRequest(post.getEntity()));
+        return operation;
+    }
+
+    private void recordSuccess(OperationMetrics operation, long started) {
+        if (operation != null) {
+            metrics.recordSuccess(operation, started);
+        }
+    }
+
+    private <T extends SoapException> T recordFailure(OperationMetrics operation, long started, T failure) {
+        if (operation != null) {
+            metrics.recordFailure(operation, started, failure);
+        }
+        return failure;
+    }
+
+    private boolean isHedgeable(String soapAction, HttpPost post) {
+        if (hedging == null || !hedging.getPolicy().isHedgeable(soapAction)) {
+            return false;
+        }
+        HttpEntity entity = post.getEntity();
+        return entity == null || entity.isRepeatable();
+    }
+
+    private HttpEntity executePost(String soapAction, HttpPost post, OperationMetrics operation) {
+        return executePost(soapAction, post, operation, null);
+    }
+
+    /**
+     * @param avoided endpoint chosen last if possible; may be null
+     */
+    private HttpEntity executePost(String soapAction, HttpPost post, OperationMetrics operation, Endpoint avoided) {
+        Endpoint failed = avoided;
+        int failovers = 0;
+        CallTiming timing = getTiming(post);
+        for (int attempt = 1; ; ) {
+            Endpoint endpoint = loadBalancer.select(failed);
+            post.setURI(endpoint.getUri());
+            long started = endpoint.requestStarted();
+            if (timing != null) {
+                timing.attemptStarted();
+            }
+            try {
+                HttpEntity entity = executePostOnce(post, operation);
+                endpoint.requestCompleted(started, null);
+                return entity;
+            } catch (TransmissionException ex) {
+                // an aborted request, e.g. one that lost to its hedge, says nothing about the endpoint
+                endpoint.requestCompleted(started, post.isAborted() ? null : ex);
+                failed = endpoint;
+                if (isFailover(failovers, post, ex)) {
+                    // the request has not been sent, so it is safe to try it on another endpoint right away
+                    failovers++;
+                    continue;
+                }
+                if (!isRetryable(attempt, soapAction, post, ex)) {
+                    throw ex;
+                }
+                backOff(attempt, post, ex);
+                attempt++;
+            }
+        }
+    }
+
+    private boolean isFailover(int failovers, HttpPost post, TransmissionException failure) {
+        if (failovers >= endpointUris.size() - 1 || post.isAborted() || !RetryPolicy.isConnectFailure(failure.getCause())) {
+            return false;
+        }
+        HttpEntity entity = post.getEntity();
+        return entity == null || entity.isRepeatable();
     }
 
-    private String executePost(HttpPost post) {
+    private boolean isRetryable(int attempt, String soapAction, HttpPost post, TransmissionException failure) {
+        if (retryPolicy == null || post.isAborted()) {
+            return false;
+        }
+        HttpEntity entity = post.getEntity();
+        return (entity == null || entity.isRepeatable()) && retryPolicy.isRetryable(attempt, soapAction, failure);
+    }
+
+    private void backOff(int attempt, HttpPost post, TransmissionException failure) {
+        long backoff = retryPolicy.getBackoffInMillis(attempt);
+        Deadline deadline = getDeadline(post);
+        if (deadline != null && deadline.getRemainingInMillis() <= backoff) {
+            // the retry could not complete in time anyway
+            throw deadline.exceeded(failure);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Attempt [%d] failed, retrying in [%d] ms: %s", attempt, backoff, failure.getMessage()));
+        }
         try {
-            HttpResponse response = client.execute(post);
-            StatusLine statusLine = response.getStatusLine();
-            HttpEntity entity = response.getEntity();
-            if (statusLine.getStatusCode() >= 300) {
-                EntityUtils.consume(entity);
-                throw new TransmissionException(statusLine.getReasonPhrase(), statusLine.getStatusCode());
-            }
-            return entity == null ? null : EntityUtils.toString(entity);
+            Thread.sleep(backoff);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TransmissionException("Transmission interrupted", ex);
+        }
+    }
+
+    private HttpEntity executePostOnce(HttpPost post, OperationMetrics operation) {
+        try {
+            HttpResponse response = client.execute(post, createContext());
+            if (operation != null) {
+                response.setEntity(operation.meterResponse(response.getEntity()));
+            }
+            return checkResponse(response);
         } catch (SoapException ex) {
             throw ex;
-        } catch (ConnectTimeoutException ex) {
-            throw new TransmissionException("Connection timed out", ex);
         } catch (IOException ex) {
-            throw new TransmissionException("Transmission failed", ex);
+            throw translateFailure(post, ex);
         } catch (RuntimeException ex) {
             post.abort();
-            throw new TransmissionException("Transmission aborted", ex);
+            throw translateFailure(post, ex);
+        }
+    }
+
+    private HttpContext createContext() {
+        if (authCache == null) {
+            return null;
+        }
+        // the context of a request is not thread-safe, so only the authentication cache is shared
+        HttpContext context = new BasicHttpContext();
+        context.setAttribute(ClientContext.AUTH_CACHE, authCache);
+        return context;
+    }
+
+    private static HttpEntity checkResponse(HttpResponse response) throws IOException {
+        StatusLine statusLine = response.getStatusLine();
+        HttpEntity entity = response.getEntity();
+        if (statusLine.getStatusCode() >= 300) {
+            SoapFaultException fault = readFault(entity, statusLine.getStatusCode());
+            EntityUtils.consume(entity);
+            if (fault != null) {
+                throw fault;
+            }
+            throw new TransmissionException(statusLine.getReasonPhrase(), statusLine.getStatusCode());
+        }
+        return decodeEntity(entity);
+    }
+
+    // SOAP 1.1 faults are sent with the status 500, SOAP 1.2 faults with 400 or 500
+    private static SoapFaultException readFault(HttpEntity entity, int status) {
+        if (entity == null || (status != 400 && status != 500)) {
+            return null;
+        }
+        try {
+            InputStream content = decodeEntity(entity).getContent();
+            try {
+                return ResponseReader.findFault(content, status);
+            } finally {
+                content.close();
+            }
+        } catch (IOException ex) {
+            return null;
+        } catch (TransmissionException ex) {
+            return null;
+        }
+    }
+
+    private static HttpEntity decodeEntity(HttpEntity entity) throws IOException {
+        Header contentEncoding = entity == null ? null : entity.getContentEncoding();
+        if (contentEncoding == null) {
+            return entity;
+        }
+        String coding = contentEncoding.getValue().trim();
+        if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+            return new GzipDecompressingEntity(entity);
+        } else if (coding.equalsIgnoreCase("deflate")) {
+            return new DeflateDecompressingEntity(entity);
+        } else if (coding.equalsIgnoreCase("identity")) {
+            return entity;
+        }
+        EntityUtils.consume(entity);
+        throw new TransmissionException(String.format("Unsupported Content-Encoding [%s]", coding));
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    // a post aborted by its deadline fails with whatever the abort has interrupted
+    private static TransmissionException translateFailure(HttpPost post, Exception ex) {
+        Deadline deadline = getDeadline(post);
+        if (deadline != null && deadline.isExpired()) {
+            return deadline.exceeded(ex);
+        }
+        return translateFailure(ex);
+    }
+
+    private static TransmissionException translateFailure(Exception ex) {
+        if (ex instanceof ConnectionPoolTimeoutException) {
+            return new TransmissionException("Connection lease timed out", ex);
+        } else if (ex instanceof ConnectTimeoutException) {
+            return new TransmissionException("Connection timed out", ex);
+        } else if (ex instanceof IOException) {
+            return new TransmissionException("Transmission failed", ex);
+        }
+        return new TransmissionException("Transmission aborted", ex);
+    }
+
+    /**
+     * Future of an asynchronous post - completed by the callback of the non-blocking transport
+     */
+    private final class AsyncPost extends AbstractFuture<String> implements FutureCallback<HttpResponse> {
+
+        private final Endpoint endpoint;
+        private final long endpointStarted;
+        private final OperationMetrics operation;
+        private final long started;
+        private final AtomicBoolean endpointReleased = new AtomicBoolean();
+        private volatile Future<HttpResponse> exchange;
+
+        private AsyncPost(Endpoint endpoint, long endpointStarted, OperationMetrics operation, long started) {
+            this.endpoint = endpoint;
+            this.endpointStarted = endpointStarted;
+            this.operation = operation;
+            this.started = started;
+        }
+
+        private void bind(Future<HttpResponse> exchange) {
+            this.exchange = exchange;
+            if (isCancelled()) {
+                exchange.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (!super.cancel(mayInterruptIfRunning)) {
+                return false;
+            }
+            Future<HttpResponse> current = exchange;
+            if (current != null) {
+                current.cancel(true);
+            }
+            return true;
+        }
+
+        @Override
+        public void completed(HttpResponse response) {
+            try {
+                if (operation != null) {
+                    response.setEntity(operation.meterResponse(response.getEntity()));
+                }
+                HttpEntity entity;
+                try {
+                    entity = checkResponse(response);
+                } catch (TransmissionException ex) {
+                    releaseEndpoint(ex);
+                    throw ex;
+                }
+                releaseEndpoint(null);
+                String result = entity == null ? null : EntityUtils.toString(entity);
+                recordSuccess(operation, started);
+                set(result);
+            } catch (SoapException ex) {
+                setException(recordFailure(operation, started, ex));
+            } catch (IOException ex) {
+                setException(recordFailure(operation, started, translateFailure(ex)));
+            }
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            TransmissionException failure = translateFailure(ex);
+            releaseEndpoint(failure);
+            setException(recordFailure(operation, started, failure));
+        }
+
+        @Override
+        public void cancelled() {
+            releaseEndpoint(null);
+            super.cancel(false);
+        }
+
+        // the exchange may fail both synchronously and through the callback, the endpoint is released once
+        private void releaseEndpoint(TransmissionException failure) {
+            if (endpointReleased.compareAndSet(false, true)) {
+                endpoint.requestCompleted(endpointStarted, failure);
+            }
+        }
+    }
+
+    /**
+     * Hedged transmission of a request - the request is sent from the calling thread and, if it has not completed
+     * within the hedge delay, its hedge from the shared hedging pool. The first response wins and the other
+     * transmission is aborted. If the request fails, the response of the hedge is awaited, if it has been sent.
+     */
+    private final class HedgedPost implements Runnable {
+
+        private final String soapAction;
+        private final HttpPost post;
+        private final OperationMetrics operation;
+        private final AtomicBoolean decided = new AtomicBoolean();
+        private final SettableFuture<String> hedgeResponse = SettableFuture.create();
+        // guarded by this
+        private boolean postFailed;
+        private HttpPost hedge;
+
+        private HedgedPost(String soapAction, HttpPost post, OperationMetrics operation) {
+            this.soapAction = soapAction;
+            this.post = post;
+            this.operation = operation;
+        }
+
+        private String execute() {
+            hedging.requestStarted();
+            ScheduledFuture<?> timer = Hedging.schedule(this, hedging.getDelayInMillis(soapAction));
+            try {
+                String response = transmitOnce(post, null);
+                if (decided.compareAndSet(false, true)) {
+                    abortHedge();
+                }
+                return response;
+            } catch (SoapException ex) {
+                HttpPost sent;
+                synchronized (this) {
+                    postFailed = true;
+                    sent = hedge;
+                }
+                if (sent == null) {
+                    throw ex;
+                }
+                return awaitHedge(ex);
+            } finally {
+                timer.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            final HttpPost sent;
+            synchronized (this) {
+                if (postFailed || decided.get()) {
+                    return;
+                }
+                if (!hedging.tryAcquireHedge()) {
+                    if (metrics != null) {
+                        metrics.recordHedgeOverBudget();
+                    }
+                    return;
+                }
+                hedge = copyPost(post);
+                sent = hedge;
+            }
+            if (metrics != null) {
+                metrics.recordHedge();
+            }
+            final Endpoint avoided = findEndpoint(post.getURI());
+            Hedging.execute(new Runnable() {
+                @Override
+                public void run() {
+                    transmitHedge(sent, avoided);
+                }
+            });
+        }
+
+        private void transmitHedge(HttpPost sent, Endpoint avoided) {
+            try {
+                String response = transmitOnce(sent, avoided);
+                if (decided.compareAndSet(false, true)) {
+                    post.abort();
+                    if (metrics != null) {
+                        metrics.recordHedgeWin();
+                    }
+                }
+                hedgeResponse.set(response);
+            } catch (RuntimeException ex) {
+                hedgeResponse.setException(ex);
+            }
+        }
+
+        private String transmitOnce(HttpPost transmitted, Endpoint avoided) {
+            long started = System.nanoTime();
+            HttpEntity entity = executePost(soapAction, transmitted, operation, avoided);
+            String response;
+            try {
+                response = entity == null ? null : EntityUtils.toString(entity);
+            } catch (IOException ex) {
+                throw translateFailure(transmitted, ex);
+            }
+            hedging.recordLatency(soapAction, System.nanoTime() - started);
+            return response;
+        }
+
+        private String awaitHedge(SoapException failure) {
+            try {
+                return hedgeResponse.get();
+            } catch (InterruptedException ex) {
+                abortHedge();
+                Thread.currentThread().interrupt();
+                throw new TransmissionException("Transmission interrupted", ex);
+            } catch (ExecutionException ex) {
+                // the failure of the request is more telling than the failure of its hedge
+                throw failure;
+            }
+        }
+
+        private synchronized void abortHedge() {
+            if (hedge != null) {
+                hedge.abort();
+            }
+        }
+
+        // the hedge shares the timeouts and the deadline of the request, but not its timing record
+        private HttpPost copyPost(HttpPost original) {
+            HttpPost copy = new HttpPost(original.getURI());
+            copy.setHeaders(original.getAllHeaders());
+            copy.setEntity(original.getEntity());
+            for (String name : HEDGE_PARAMETERS) {
+                copy.getParams().setParameter(name, original.getParams().getParameter(name));
+            }
+            Deadline deadline = getDeadline(original);
+            if (deadline != null) {
+                deadline.bind(copy);
+            }
+            return copy;
+        }
+
+        private Endpoint findEndpoint(URI uri) {
+            for (Endpoint endpoint : loadBalancer.getEndpoints()) {
+                if (endpoint.getUri().equals(uri)) {
+                    return endpoint;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * StAX reader of a streamed response - releases the underlying connection when it is done with the response
+     */
+    private static final class ResponseStreamReader extends StreamReaderDelegate {
+
+        private final InputStream content;
+
+        private ResponseStreamReader(XMLStreamReader reader, InputStream content) {
+            super(reader);
+            this.content = content;
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            int event = super.next();
+            if (event == XMLStreamConstants.END_DOCUMENT) {
+                IOUtils.closeQuietly(content);
+            }
+            return event;
+        }
+
+        @Override
+        public void close() throws XMLStreamException {
+            try {
+                super.close();
+            } finally {
+                IOUtils.closeQuietly(content);
+            }
         }
     }
 
@@ -187,23 +1214,123 @@ public final class SoapClient {
     // INITIALIZATION API
     // ----------------------------------------------------------------
     private void initialize() {
+        configureTls();
         configureClient();
         configureAuthentication();
-        configureTls();
         configureProxy();
+        configureMetrics();
+        configureConnectionEviction();
+        warmUpConnections();
+    }
+
+    private void configureClient() {
+        ClientConnectionManager connectionManager = createConnectionManager();
+        if (metricsEnabled) {
+            metrics = new SoapClientMetrics(connectionManager);
+            client = new MeteredHttpClient(connectionManager, createHttpParams(), metrics);
+        } else {
+            client = new DefaultHttpClient(connectionManager, createHttpParams());
+        }
+        // a SoapClient has a single identity, so its connections are not bound to a user token; otherwise a connection
+        // carrying a TLS client certificate or an NTLM context would never be leased again, and every request
+        // through a proxy would open a new CONNECT tunnel and perform a new TLS handshake
+        client.setUserTokenHandler(new UserTokenHandler() {
+            @Override
+            public Object getUserToken(HttpContext context) {
+                return null;
+            }
+        });
+        client.setKeepAliveStrategy(new KeepAliveStrategy(keepAliveInMillis));
+        configureCallTiming();
+        requestTemplate = new RequestTemplate(soapVersion, compression, compressionThresholdInBytes);
+        loadBalancer = createLoadBalancer();
+        hedging = hedgingPolicy != null ? new Hedging(hedgingPolicy) : null;
+    }
+
+    // the request and the response carry the parameters of the request, thus its timing record, if any
+    private void configureCallTiming() {
+        client.addRequestInterceptor(new HttpRequestInterceptor() {
+            @Override
+            public void process(HttpRequest request, HttpContext context) {
+                CallTiming timing = TimedSocketFactory.getTiming(request.getParams());
+                if (timing != null) {
+                    timing.requestStarted();
+                }
+            }
+        });
+        client.addResponseInterceptor(new HttpResponseInterceptor() {
+            @Override
+            public void process(HttpResponse response, HttpContext context) {
+                CallTiming timing = TimedSocketFactory.getTiming(response.getParams());
+                if (timing != null) {
+                    timing.responseReceived();
+                }
+            }
+        });
     }
 
-    private void configureClient() {
-        client = new DefaultHttpClient();
+    private HttpParams createHttpParams() {
         HttpParams httpParameters = new BasicHttpParams();
         HttpConnectionParams.setConnectionTimeout(httpParameters, connectTimeoutInMillis);
         HttpConnectionParams.setSoTimeout(httpParameters, readTimeoutInMillis);
-        client.setParams(httpParameters);
+        HttpConnectionParams.setStaleCheckingEnabled(httpParameters, staleConnectionCheck);
+        HttpClientParams.setConnectionManagerTimeout(httpParameters, connectionLeaseTimeoutInMillis);
+        return httpParameters;
+    }
+
+    private ClientConnectionManager createConnectionManager() {
+        if (connectionPoolRegistry != null) {
+            return connectionPoolRegistry.acquire(tlsSocketFactory, tlsPort);
+        }
+        SchemeRegistry registry = TimedSocketFactory.createSchemeRegistry(tlsSocketFactory, tlsPort);
+        if (!connectionPooling) {
+            return new BasicClientConnectionManager(registry);
+        }
+        PoolingClientConnectionManager manager = new PoolingClientConnectionManager(registry);
+        manager.setMaxTotal(maxConnectionsTotal);
+        manager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        return manager;
+    }
+
+    private LoadBalancer createLoadBalancer() {
+        // with several endpoints a failing one is always ejected, to let the requests fail over to the others
+        CircuitBreakerPolicy policy = circuitBreakerPolicy;
+        if (policy == null && endpointUris.size() > 1) {
+            policy = CircuitBreakerPolicy.builder().build();
+        }
+        List<Endpoint> endpoints = new ArrayList<Endpoint>();
+        for (URI uri : endpointUris) {
+            CircuitBreaker circuitBreaker = policy != null ? new CircuitBreaker(uri, policy) : null;
+            Throttle throttle = throttlingPolicy != null ? new Throttle(uri, throttlingPolicy) : null;
+            endpoints.add(new Endpoint(uri, circuitBreaker, throttle, loadBalancing == LoadBalancing.LATENCY_WEIGHTED));
+        }
+        return new LoadBalancer(endpoints, loadBalancing);
     }
 
     private void configureAuthentication() {
-        configureAuthentication(endpointUri, endpointProperties);
+        for (URI uri : endpointUris) {
+            configureAuthentication(uri, endpointProperties);
+        }
         configureAuthentication(proxyUri, proxyProperties);
+        if (preemptiveAuthentication) {
+            configurePreemptiveAuthentication();
+        }
+    }
+
+    private void configurePreemptiveAuthentication() {
+        authCache = new SharedAuthCache();
+        // basic credentials do not depend on a challenge, so they are sent with the very first request of a route;
+        // a digest scheme is cached after the first challenge and its nonce is reused by the subsequent requests
+        for (URI uri : endpointUris) {
+            if (endpointProperties.isAuthBasic()) {
+                authCache.put(new HttpHost(uri.getHost(), uri.getPort(), uri.getScheme()), new BasicScheme());
+            }
+        }
+        if (proxyUri != null && proxyProperties.isAuthBasic()) {
+            authCache.put(new HttpHost(proxyUri.getHost(), proxyUri.getPort(), proxyUri.getScheme()),
+                    new BasicScheme(ChallengeState.PROXY));
+        }
+        client.getAuthSchemes().register(AuthPolicy.DIGEST, SharedDigestScheme.FACTORY);
     }
 
     private void configureAuthentication(URI uri, Security security) {
@@ -225,31 +1352,29 @@ public final class SoapClient {
     }
 
     private void configureTls() {
-        SSLSocketFactory factory;
-        int port;
+        // the contexts are shared, so that the clients resume the TLS sessions established by each other
         try {
             if (endpointTlsEnabled && proxyTlsEnabled) {
-                factory = SSLUtils.getMergedSocketFactory(endpointProperties, proxyProperties);
-                registerTlsScheme(factory, proxyUri.getPort());
+                tlsContext = tlsContextCache.getMergedContext(endpointProperties, proxyProperties);
+                tlsSocketFactory = tlsContextCache.getMergedSocketFactory(endpointProperties, proxyProperties);
+                tlsHostnameVerifier = SSLUtils.getMergedHostnameVerifier(endpointProperties, proxyProperties);
+                tlsPort = proxyUri.getPort();
             } else if (endpointTlsEnabled) {
-                factory = SSLUtils.getFactory(endpointProperties);
-                port = endpointUri.getPort();
-                registerTlsScheme(factory, port);
+                tlsContext = tlsContextCache.getContext(endpointProperties);
+                tlsSocketFactory = tlsContextCache.getFactory(endpointProperties);
+                tlsHostnameVerifier = SSLUtils.getHostnameVerifier(endpointProperties);
+                tlsPort = endpointUri.getPort();
             } else if (proxyTlsEnabled) {
-                factory = SSLUtils.getFactory(proxyProperties);
-                port = proxyUri.getPort();
-                registerTlsScheme(factory, port);
+                tlsContext = tlsContextCache.getContext(proxyProperties);
+                tlsSocketFactory = tlsContextCache.getFactory(proxyProperties);
+                tlsHostnameVerifier = SSLUtils.getHostnameVerifier(proxyProperties);
+                tlsPort = proxyUri.getPort();
             }
         } catch (GeneralSecurityException ex) {
             throw new SoapClientException(ex);
         }
     }
 
-    private void registerTlsScheme(SchemeLayeredSocketFactory factory, int port) {
-        Scheme sch = new Scheme(HTTPS, port, factory);
-        client.getConnectionManager().getSchemeRegistry().register(sch);
-    }
-
     private void configureProxy() {
         if (proxyUri == null) {
             return;
@@ -261,18 +1386,146 @@ public final class SoapClient {
             // To make the HttpClient talk to a HTTP End-site through an HTTPS Proxy, the route should be secure,
             //  but there should not be any Tunnelling or Layering.
             if (!endpointTlsEnabled) {
-                client.setRoutePlanner(new HttpRoutePlanner() {
+                proxyRoutePlanner = new HttpRoutePlanner() {
                     @Override
                     public HttpRoute determineRoute(HttpHost target, HttpRequest request, HttpContext context) {
                         return new HttpRoute(target, null, proxy, true, RouteInfo.TunnelType.PLAIN, RouteInfo.LayerType.PLAIN);
                     }
-                });
+                };
+                client.setRoutePlanner(proxyRoutePlanner);
             }
-            client.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
+            proxyHost = proxy;
         } else {
-            HttpHost proxy = new HttpHost(proxyUri.getHost(), proxyUri.getPort());
-            client.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxy);
+            proxyHost = new HttpHost(proxyUri.getHost(), proxyUri.getPort());
+        }
+        client.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY, proxyHost);
+    }
+
+    private void configureMetrics() {
+        if (metrics == null || metricsJmxName == null) {
+            return;
+        }
+        try {
+            metricsObjectName = new ObjectName(String.format("%s:type=SoapClient,name=%s", JMX_DOMAIN,
+                    ObjectName.quote(metricsJmxName)));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metricsObjectName);
+        } catch (JMException ex) {
+            throw new SoapClientException(String.format("Registration of the metrics [%s] failed", metricsJmxName), ex);
+        }
+    }
+
+    private void configureConnectionEviction() {
+        if (idleConnectionTimeoutInMillis > 0) {
+            connectionEviction = ConnectionEvictor.schedule(this, connectionEvictionIntervalInMillis);
+        }
+    }
+
+    // pre-opens the connections to the endpoints, so that the first requests do not pay for the connect and the TLS
+    // handshake; the routes tunnelled through a proxy are established by the first requests, as usual
+    private void warmUpConnections() {
+        if (warmUpConnections == 0) {
+            return;
+        }
+        int count = Math.min(warmUpConnections, getMaxConnectionsPerRoute());
+        for (URI uri : endpointUris) {
+            try {
+                warmUpConnections(uri, count);
+            } catch (Exception ex) {
+                log.warn(String.format("Connection warm-up to [%s] failed", uri), ex);
+            }
+        }
+    }
+
+    private void warmUpConnections(URI uri, int count) throws Exception {
+        HttpPost post = new HttpPost(uri);
+        post.setParams(client.getParams());
+        HttpContext context = new BasicHttpContext();
+        HttpRoute route = client.getRoutePlanner().determineRoute(URIUtils.extractHost(uri), post, context);
+        if (route.isTunnelled() || route.isLayered()) {
+            return;
+        }
+        ClientConnectionManager manager = client.getConnectionManager();
+        List<ManagedClientConnection> connections = new ArrayList<ManagedClientConnection>();
+        try {
+            // all the connections are leased at once, otherwise the same one would be opened and released each time
+            for (int i = 0; i < count; i++) {
+                ManagedClientConnection connection = manager.requestConnection(route, null)
+                        .getConnection(connectionLeaseTimeoutInMillis, TimeUnit.MILLISECONDS);
+                connections.add(connection);
+                if (!connection.isOpen()) {
+                    connection.open(route, context, client.getParams());
+                }
+                connection.markReusable();
+            }
+        } finally {
+            for (ManagedClientConnection connection : connections) {
+                manager.releaseConnection(connection, keepAliveInMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private int getMaxConnectionsPerRoute() {
+        if (connectionPoolRegistry != null) {
+            return connectionPoolRegistry.getMaxConnectionsPerRoute();
+        }
+        return connectionPooling ? maxConnectionsPerRoute : 1;
+    }
+
+    private void unregisterMetrics() {
+        if (metricsObjectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsObjectName);
+        } catch (JMException ex) {
+            log.warn(String.format("Unregistration of the metrics [%s] failed", metricsJmxName), ex);
+        }
+        metricsObjectName = null;
+    }
+
+    // ----------------------------------------------------------------
+    // ASYNC INITIALIZATION API
+    // ----------------------------------------------------------------
+    private synchronized DefaultHttpAsyncClient getAsyncClient() {
+        if (asyncClient == null) {
+            try {
+                asyncClient = createAsyncClient();
+            } catch (IOReactorException ex) {
+                throw new SoapClientException("Asynchronous transport setup failed", ex);
+            }
+            asyncClient.start();
+        }
+        return asyncClient;
+    }
+
+    // mirrors the configuration of the blocking client, so that both transports behave in the same way
+    private DefaultHttpAsyncClient createAsyncClient() throws IOReactorException {
+        PoolingClientAsyncConnectionManager manager = new PoolingClientAsyncConnectionManager(
+                new DefaultConnectingIOReactor(), createAsyncSchemeRegistry());
+        manager.setMaxTotal(maxConnectionsTotal);
+        manager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        DefaultHttpAsyncClient async = new DefaultHttpAsyncClient(manager);
+        HttpParams httpParameters = createHttpParams();
+        if (proxyHost != null) {
+            httpParameters.setParameter(ConnRoutePNames.DEFAULT_PROXY, proxyHost);
+        }
+        async.setParams(httpParameters);
+        async.setCredentialsProvider(client.getCredentialsProvider());
+        async.setAuthSchemes(client.getAuthSchemes());
+        async.setKeepAliveStrategy(client.getConnectionKeepAliveStrategy());
+        if (proxyRoutePlanner != null) {
+            async.setRoutePlanner(proxyRoutePlanner);
         }
+        return async;
+    }
+
+    private AsyncSchemeRegistry createAsyncSchemeRegistry() {
+        AsyncSchemeRegistry registry = AsyncSchemeRegistryFactory.createDefault();
+        if (tlsContext != null) {
+            registry.register(new AsyncScheme(HTTPS, tlsPort, new SSLLayeringStrategy(tlsContext, tlsHostnameVerifier)));
+        }
+        return registry;
     }
 
 
@@ -289,14 +1542,39 @@ public final class SoapClient {
 
         private Integer readTimeoutInMillis = INFINITE_TIMEOUT;
         private Integer connectTimeoutInMillis = INFINITE_TIMEOUT;
+        private Integer deadlineInMillis = INFINITE_TIMEOUT;
+
+        private boolean connectionPooling;
+        private Integer maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+        private Integer maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+        private Integer connectionLeaseTimeoutInMillis = INFINITE_TIMEOUT;
+        private boolean staleConnectionCheck = true;
+        private ConnectionPoolRegistry connectionPoolRegistry;
+        private Integer keepAliveInMillis = INFINITE_TIMEOUT;
+        private Integer idleConnectionTimeoutInMillis = INFINITE_TIMEOUT;
+        private Integer connectionEvictionIntervalInMillis = DEFAULT_CONNECTION_EVICTION_INTERVAL_IN_MILLIS;
+        private Integer warmUpConnections = 0;
 
-        private URI endpointUri;
+        private List<URI> endpointUris;
+        private LoadBalancing loadBalancing = LoadBalancing.ROUND_ROBIN;
         private Security endpointProperties;
         private boolean endpointTlsEnabled;
+        private SoapVersion soapVersion;
+        private Compression compression;
+        private Integer compressionThresholdInBytes = DEFAULT_COMPRESSION_THRESHOLD_IN_BYTES;
+        private ResponseCache responseCache;
+        private RetryPolicy retryPolicy;
+        private CircuitBreakerPolicy circuitBreakerPolicy;
+        private HedgingPolicy hedgingPolicy;
+        private ThrottlingPolicy throttlingPolicy;
+        private boolean metricsEnabled;
+        private String metricsJmxName;
 
         private URI proxyUri;
         private Security proxyProperties;
         private boolean proxyTlsEnabled;
+        private boolean preemptiveAuthentication;
+        private SSLContextCache tlsContextCache = SSLContextCache.getShared();
 
         /**
          * @param value URL of the SOAP endpoint to whom the client should send messages. Null is not accepted.
@@ -317,8 +1595,55 @@ public final class SoapClient {
          * @return builder
          */
         public Builder endpointUri(URI value) {
-            endpointUri = checkNotNull(value);
-            endpointTlsEnabled = value.getScheme().equalsIgnoreCase(HTTPS);
+            return endpointUris(Collections.singletonList(checkNotNull(value)));
+        }
+
+        /**
+         * @param value URLs of the SOAP endpoints to whom the client should send messages. Null or empty is not accepted.
+         * @return builder
+         * @see #endpointUris(java.util.List)
+         */
+        public Builder endpointUris(String... value) {
+            checkNotNull(value);
+            List<URI> uris = new ArrayList<URI>();
+            for (String uri : value) {
+                checkNotNull(uri);
+                try {
+                    uris.add(new URI(uri));
+                } catch (URISyntaxException ex) {
+                    throw new SoapClientException(String.format("URI [%s] is malformed", uri), ex);
+                }
+            }
+            return endpointUris(uris);
+        }
+
+        /**
+         * Makes the client balance the requests among several equivalent endpoints, e.g. all the soap:address
+         * locations of a service. The endpoints share the connection pool and the security configuration, so all
+         * of them have to use the same scheme - either HTTP or HTTPS.
+         *
+         * @param value URLs of the SOAP endpoints to whom the client should send messages. Null or empty is not accepted.
+         * @return builder
+         */
+        public Builder endpointUris(List<URI> value) {
+            checkNotNull(value);
+            checkArgument(!value.isEmpty());
+            String scheme = value.get(0).getScheme();
+            for (URI uri : value) {
+                checkNotNull(uri);
+                checkArgument(uri.getScheme().equalsIgnoreCase(scheme), "All the endpoints have to use the same scheme");
+            }
+            endpointUris = new ArrayList<URI>(value);
+            endpointTlsEnabled = scheme.equalsIgnoreCase(HTTPS);
+            return this;
+        }
+
+        /**
+         * @param value Specifies how the requests are distributed among the endpoints. Round robin by default.
+         * @return builder
+         */
+        public Builder loadBalancing(LoadBalancing value) {
+            loadBalancing = checkNotNull(value);
             return this;
         }
 
@@ -346,6 +1671,121 @@ public final class SoapClient {
             return this;
         }
 
+        /**
+         * Declares the SOAP version of all the envelopes sent by the client, so that it does not have to be
+         * recognized per message. The version of a SoapRequest still takes precedence, if specified.
+         *
+         * @param value SOAP version of the sent envelopes. Null is not accepted.
+         * @return builder
+         */
+        public Builder soapVersion(SoapVersion value) {
+            soapVersion = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * Enables the compression of the request bodies and asks the server for compressed responses.
+         * Compressed responses are decoded transparently. Disabled by default.
+         *
+         * @param value coding of the request bodies. Null is not accepted.
+         * @return builder
+         */
+        public Builder compression(Compression value) {
+            compression = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * @param value Specifies the size of the request body below which it is sent uncompressed. Has to be not negative.
+         * @return builder
+         */
+        public Builder compressionThresholdInBytes(int value) {
+            checkArgument(value >= 0);
+            compressionThresholdInBytes = value;
+            return this;
+        }
+
+        /**
+         * Serves the responses to the idempotent operations enabled in the cache from the cache. Disabled by default.
+         *
+         * @param value response cache, may be shared by many clients. Null is not accepted.
+         * @return builder
+         */
+        public Builder responseCache(ResponseCache value) {
+            responseCache = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * Retries the failed transmissions according to the given policy. Disabled by default.
+         *
+         * @param value retry policy. Null is not accepted.
+         * @return builder
+         */
+        public Builder retryPolicy(RetryPolicy value) {
+            retryPolicy = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * Guards the endpoint with a circuit breaker configured by the given policy. Disabled by default.
+         *
+         * @param value circuit breaker policy. Null is not accepted.
+         * @return builder
+         */
+        public Builder circuitBreaker(CircuitBreakerPolicy value) {
+            circuitBreakerPolicy = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * Keeps the requests to every endpoint within the rate and concurrency limits of the given policy.
+         * Disabled by default.
+         *
+         * @param value throttling policy. Null is not accepted.
+         * @return builder
+         */
+        public Builder throttling(ThrottlingPolicy value) {
+            throttlingPolicy = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * Hedges the requests of the read-only operations according to the given policy. Disabled by default.
+         * Hedging requires connection pooling, so it enables it.
+         *
+         * @param value hedging policy. Null is not accepted.
+         * @return builder
+         */
+        public Builder hedgingPolicy(HedgingPolicy value) {
+            hedgingPolicy = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * Enables the collection of the client metrics, readable through SoapClient.getMetrics(). Disabled by default.
+         *
+         * @param value metrics enabled/disabled
+         * @return builder
+         */
+        public Builder metricsEnabled(boolean value) {
+            metricsEnabled = value;
+            return this;
+        }
+
+        /**
+         * Enables the collection of the client metrics and registers them in the platform MBean server, as
+         * org.reficio.ws:type=SoapClient,name=[value]. They are unregistered when the client disconnects.
+         *
+         * @param value name of the client metrics, unique within the JVM. Null is not accepted.
+         * @return builder
+         */
+        public Builder metricsJmxName(String value) {
+            metricsJmxName = checkNotNull(value);
+            metricsEnabled = true;
+            return this;
+        }
+
         public Builder endpointSecurity(Security value) {
             this.endpointProperties = checkNotNull(value);
             return this;
@@ -356,6 +1796,29 @@ public final class SoapClient {
             return this;
         }
 
+        /**
+         * Makes the client authenticate preemptively: basic credentials are sent with the first request of every
+         * route and digest challenges are reused by the subsequent requests, which saves a 401 round trip per call.
+         * Disabled by default.
+         *
+         * @param value preemptive authentication enabled/disabled
+         * @return builder
+         */
+        public Builder preemptiveAuthentication(boolean value) {
+            this.preemptiveAuthentication = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the cache of the SSL contexts, whose TLS sessions the client may resume.
+         *              SSLContextCache.getShared() by default. Null is not accepted.
+         * @return builder
+         */
+        public Builder tlsContextCache(SSLContextCache value) {
+            this.tlsContextCache = checkNotNull(value);
+            return this;
+        }
+
         /**
          * @param value Specifies the timeout in millisecond for the read operation. Has to be not negative.
          * @return builder
@@ -376,6 +1839,139 @@ public final class SoapClient {
             return this;
         }
 
+        /**
+         * Specifies the time every blocking call has to complete within - the connection lease, the connect,
+         * the TLS handshake, the write of the request and the read of the response, including the retries.
+         * When it passes, the transmission is aborted and a DeadlineExceededException is thrown.
+         * May be overridden per request. Asynchronous posts are not bounded by it.
+         *
+         * @param value Specifies the deadline in millisecond. Has to be not negative - 0 means no deadline.
+         * @return builder
+         */
+        public Builder deadlineInMillis(int value) {
+            checkArgument(value >= 0);
+            deadlineInMillis = value;
+            return this;
+        }
+
+        /**
+         * Enables a pool of persistent connections, so that the client may be safely shared by many threads
+         * that transmit messages concurrently. Disabled by default - a single connection is used then.
+         *
+         * @param value connection pooling enabled/disabled
+         * @return builder
+         */
+        public Builder connectionPooling(boolean value) {
+            connectionPooling = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the maximum number of pooled connections in total. Has to be positive.
+         * @return builder
+         */
+        public Builder maxConnectionsTotal(int value) {
+            checkArgument(value > 0);
+            maxConnectionsTotal = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the maximum number of pooled connections per route. Has to be positive.
+         * @return builder
+         */
+        public Builder maxConnectionsPerRoute(int value) {
+            checkArgument(value > 0);
+            maxConnectionsPerRoute = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the timeout in millisecond for leasing a connection from the pool. Has to be not negative.
+         * @return builder
+         */
+        public Builder connectionLeaseTimeoutInMillis(int value) {
+            checkArgument(value >= 0);
+            connectionLeaseTimeoutInMillis = value;
+            return this;
+        }
+
+        /**
+         * Enables the validation of stale connections before they are reused. Enabled by default.
+         *
+         * @param value stale connection check enabled/disabled
+         * @return builder
+         */
+        public Builder staleConnectionCheck(boolean value) {
+            staleConnectionCheck = value;
+            return this;
+        }
+
+        /**
+         * Makes the client lease its connections from a pool shared with the other clients of the registry that have
+         * the same TLS settings, instead of keeping a pool of its own. Implies connection pooling - the connection
+         * limits are the ones of the shared pool then. The pool is released when the client disconnects.
+         *
+         * @param value Specifies the registry of the shared connection pools. Null is not accepted.
+         * @return builder
+         */
+        public Builder connectionPoolRegistry(ConnectionPoolRegistry value) {
+            connectionPoolRegistry = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * Specifies how long an idle connection is kept alive in the pool. The shorter Keep-Alive timeout of the
+         * server takes precedence. 0 by default - the connections are kept alive for as long as the server allows.
+         *
+         * @param value Specifies the keep-alive in milliseconds. Has to be not negative.
+         * @return builder
+         */
+        public Builder keepAliveInMillis(int value) {
+            checkArgument(value >= 0);
+            keepAliveInMillis = value;
+            return this;
+        }
+
+        /**
+         * Enables a background eviction of the connections that have been idle longer than the timeout, or whose
+         * keep-alive has expired, so that the requests sent after a quiet period do not fail on half-closed sockets.
+         * 0 by default - no eviction.
+         *
+         * @param value Specifies the idle timeout of the connections in milliseconds. Has to be not negative.
+         * @return builder
+         */
+        public Builder idleConnectionTimeoutInMillis(int value) {
+            checkArgument(value >= 0);
+            idleConnectionTimeoutInMillis = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies how often the idle and expired connections are evicted, in milliseconds.
+         *              Has to be positive.
+         * @return builder
+         */
+        public Builder connectionEvictionIntervalInMillis(int value) {
+            checkArgument(value > 0);
+            connectionEvictionIntervalInMillis = value;
+            return this;
+        }
+
+        /**
+         * Pre-opens the connections to every endpoint when the client is built, at most as many as allowed per route.
+         * The routes tunnelled through a proxy are not warmed up. A failed warm-up is logged and does not prevent
+         * the client from being built. 0 by default.
+         *
+         * @param value Specifies the number of the connections opened per endpoint. Has to be not negative.
+         * @return builder
+         */
+        public Builder warmUpConnections(int value) {
+            checkArgument(value >= 0);
+            warmUpConnections = value;
+            return this;
+        }
+
         /**
          * Constructs properly populated soap client
          *
@@ -387,12 +1983,27 @@ public final class SoapClient {
 
         private SoapClient initializeClient() {
             SoapClient client = new SoapClient();
-            client.endpointUri = endpointUri;
+            checkState(endpointUris != null, "Endpoint URI has to be specified");
+            client.endpointUri = endpointUris.get(0);
+            client.endpointUris = endpointUris;
+            client.loadBalancing = loadBalancing;
             if (endpointProperties == null) {
                 endpointProperties = Security.builder().build();
             }
             client.endpointProperties = endpointProperties;
+            client.tlsContextCache = tlsContextCache;
+            client.preemptiveAuthentication = preemptiveAuthentication;
             client.endpointTlsEnabled = endpointTlsEnabled;
+            client.soapVersion = soapVersion;
+            client.compression = compression;
+            client.compressionThresholdInBytes = compressionThresholdInBytes;
+            client.responseCache = responseCache;
+            client.retryPolicy = retryPolicy;
+            client.circuitBreakerPolicy = circuitBreakerPolicy;
+            client.hedgingPolicy = hedgingPolicy;
+            client.throttlingPolicy = throttlingPolicy;
+            client.metricsEnabled = metricsEnabled;
+            client.metricsJmxName = metricsJmxName;
 
             client.proxyUri = proxyUri;
             if (proxyProperties == null) {
@@ -403,6 +2014,18 @@ public final class SoapClient {
 
             client.readTimeoutInMillis = readTimeoutInMillis;
             client.connectTimeoutInMillis = connectTimeoutInMillis;
+            client.deadlineInMillis = deadlineInMillis;
+
+            client.connectionPooling = connectionPooling || connectionPoolRegistry != null || hedgingPolicy != null;
+            client.connectionPoolRegistry = connectionPoolRegistry;
+            client.keepAliveInMillis = keepAliveInMillis;
+            client.idleConnectionTimeoutInMillis = idleConnectionTimeoutInMillis;
+            client.connectionEvictionIntervalInMillis = connectionEvictionIntervalInMillis;
+            client.warmUpConnections = warmUpConnections;
+            client.maxConnectionsTotal = maxConnectionsTotal;
+            client.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            client.connectionLeaseTimeoutInMillis = connectionLeaseTimeoutInMillis;
+            client.staleConnectionCheck = staleConnectionCheck;
 
             client.initialize();
             return client;
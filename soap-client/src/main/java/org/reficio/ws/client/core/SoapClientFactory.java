@@ -18,6 +18,10 @@
  */
 package org.reficio.ws.client.core;
 
+import org.reficio.ws.client.ssl.SSLContextCache;
+
+import java.util.List;
+
 /**
  * @author Tom Bujok
  * @since 1.0.0
@@ -25,13 +29,39 @@ package org.reficio.ws.client.core;
 public class SoapClientFactory {
 
     private String endpointUri;
+    private List<String> endpointUris;
+    private LoadBalancing loadBalancing;
     private Security endpointSecurity;
+    private SoapVersion soapVersion;
+    private Compression compression;
+    private Integer compressionThresholdInBytes;
+    private ResponseCache responseCache;
+    private RetryPolicy retryPolicy;
+    private HedgingPolicy hedgingPolicy;
+    private ThrottlingPolicy throttlingPolicy;
+    private CircuitBreakerPolicy circuitBreakerPolicy;
+    private Boolean metricsEnabled;
+    private String metricsJmxName;
 
     private String proxyUri;
     private Security proxySecurity;
+    private Boolean preemptiveAuthentication;
+    private SSLContextCache tlsContextCache;
 
     private Integer readTimeoutInMillis;
     private Integer connectTimeoutInMillis;
+    private Integer deadlineInMillis;
+
+    private Boolean connectionPooling;
+    private Integer maxConnectionsTotal;
+    private Integer maxConnectionsPerRoute;
+    private Integer connectionLeaseTimeoutInMillis;
+    private Boolean staleConnectionCheck;
+    private ConnectionPoolRegistry connectionPoolRegistry;
+    private Integer keepAliveInMillis;
+    private Integer idleConnectionTimeoutInMillis;
+    private Integer connectionEvictionIntervalInMillis;
+    private Integer warmUpConnections;
 
     public String getEndpointUri() {
         return endpointUri;
@@ -41,6 +71,94 @@ public class SoapClientFactory {
         this.endpointUri = endpointUri;
     }
 
+    public List<String> getEndpointUris() {
+        return endpointUris;
+    }
+
+    public void setEndpointUris(List<String> endpointUris) {
+        this.endpointUris = endpointUris;
+    }
+
+    public LoadBalancing getLoadBalancing() {
+        return loadBalancing;
+    }
+
+    public void setLoadBalancing(LoadBalancing loadBalancing) {
+        this.loadBalancing = loadBalancing;
+    }
+
+    public SoapVersion getSoapVersion() {
+        return soapVersion;
+    }
+
+    public void setSoapVersion(SoapVersion soapVersion) {
+        this.soapVersion = soapVersion;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    public Integer getCompressionThresholdInBytes() {
+        return compressionThresholdInBytes;
+    }
+
+    public void setCompressionThresholdInBytes(Integer compressionThresholdInBytes) {
+        this.compressionThresholdInBytes = compressionThresholdInBytes;
+    }
+
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+        return circuitBreakerPolicy;
+    }
+
+    public void setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+        this.circuitBreakerPolicy = circuitBreakerPolicy;
+    }
+
+    public Boolean getMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public void setMetricsEnabled(Boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    public String getMetricsJmxName() {
+        return metricsJmxName;
+    }
+
+    public void setMetricsJmxName(String metricsJmxName) {
+        this.metricsJmxName = metricsJmxName;
+    }
+
     public String getProxyUri() {
         return proxyUri;
     }
@@ -65,6 +183,14 @@ public class SoapClientFactory {
         this.connectTimeoutInMillis = connectTimeoutInMillis;
     }
 
+    public Integer getDeadlineInMillis() {
+        return deadlineInMillis;
+    }
+
+    public void setDeadlineInMillis(Integer deadlineInMillis) {
+        this.deadlineInMillis = deadlineInMillis;
+    }
+
     public Security getEndpointSecurity() {
         return endpointSecurity;
     }
@@ -81,21 +207,200 @@ public class SoapClientFactory {
         this.proxySecurity = proxySecurity;
     }
 
+    public Boolean getConnectionPooling() {
+        return connectionPooling;
+    }
+
+    public void setConnectionPooling(Boolean connectionPooling) {
+        this.connectionPooling = connectionPooling;
+    }
+
+    public Integer getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public void setMaxConnectionsTotal(Integer maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    public Integer getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(Integer maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public Integer getConnectionLeaseTimeoutInMillis() {
+        return connectionLeaseTimeoutInMillis;
+    }
+
+    public void setConnectionLeaseTimeoutInMillis(Integer connectionLeaseTimeoutInMillis) {
+        this.connectionLeaseTimeoutInMillis = connectionLeaseTimeoutInMillis;
+    }
+
+    public Boolean getStaleConnectionCheck() {
+        return staleConnectionCheck;
+    }
+
+    public void setStaleConnectionCheck(Boolean staleConnectionCheck) {
+        this.staleConnectionCheck = staleConnectionCheck;
+    }
+
+    public Boolean getPreemptiveAuthentication() {
+        return preemptiveAuthentication;
+    }
+
+    public void setPreemptiveAuthentication(Boolean preemptiveAuthentication) {
+        this.preemptiveAuthentication = preemptiveAuthentication;
+    }
+
+    public SSLContextCache getTlsContextCache() {
+        return tlsContextCache;
+    }
+
+    public void setTlsContextCache(SSLContextCache tlsContextCache) {
+        this.tlsContextCache = tlsContextCache;
+    }
+
+    public ConnectionPoolRegistry getConnectionPoolRegistry() {
+        return connectionPoolRegistry;
+    }
+
+    public void setConnectionPoolRegistry(ConnectionPoolRegistry connectionPoolRegistry) {
+        this.connectionPoolRegistry = connectionPoolRegistry;
+    }
+
+    public Integer getKeepAliveInMillis() {
+        return keepAliveInMillis;
+    }
+
+    public void setKeepAliveInMillis(Integer keepAliveInMillis) {
+        this.keepAliveInMillis = keepAliveInMillis;
+    }
+
+    public Integer getIdleConnectionTimeoutInMillis() {
+        return idleConnectionTimeoutInMillis;
+    }
+
+    public void setIdleConnectionTimeoutInMillis(Integer idleConnectionTimeoutInMillis) {
+        this.idleConnectionTimeoutInMillis = idleConnectionTimeoutInMillis;
+    }
+
+    public Integer getConnectionEvictionIntervalInMillis() {
+        return connectionEvictionIntervalInMillis;
+    }
+
+    public void setConnectionEvictionIntervalInMillis(Integer connectionEvictionIntervalInMillis) {
+        this.connectionEvictionIntervalInMillis = connectionEvictionIntervalInMillis;
+    }
+
+    public Integer getWarmUpConnections() {
+        return warmUpConnections;
+    }
+
+    public void setWarmUpConnections(Integer warmUpConnections) {
+        this.warmUpConnections = warmUpConnections;
+    }
+
+    public ThrottlingPolicy getThrottlingPolicy() {
+        return throttlingPolicy;
+    }
+
+    public void setThrottlingPolicy(ThrottlingPolicy throttlingPolicy) {
+        this.throttlingPolicy = throttlingPolicy;
+    }
+
     public SoapClient create() {
         SoapClient.Builder builder = SoapClient.builder();
 
         if (endpointUri != null) {
             builder.endpointUri(endpointUri);
         }
+        if (endpointUris != null) {
+            builder.endpointUris(endpointUris.toArray(new String[endpointUris.size()]));
+        }
+        if (loadBalancing != null) {
+            builder.loadBalancing(loadBalancing);
+        }
+        if (soapVersion != null) {
+            builder.soapVersion(soapVersion);
+        }
+        if (compression != null) {
+            builder.compression(compression);
+        }
+        if (compressionThresholdInBytes != null) {
+            builder.compressionThresholdInBytes(compressionThresholdInBytes);
+        }
+        if (responseCache != null) {
+            builder.responseCache(responseCache);
+        }
+        if (retryPolicy != null) {
+            builder.retryPolicy(retryPolicy);
+        }
+        if (hedgingPolicy != null) {
+            builder.hedgingPolicy(hedgingPolicy);
+        }
+        if (throttlingPolicy != null) {
+            builder.throttling(throttlingPolicy);
+        }
+        if (circuitBreakerPolicy != null) {
+            builder.circuitBreaker(circuitBreakerPolicy);
+        }
+        if (metricsEnabled != null) {
+            builder.metricsEnabled(metricsEnabled);
+        }
+        if (metricsJmxName != null) {
+            builder.metricsJmxName(metricsJmxName);
+        }
         if (proxyUri != null) {
             builder.proxyUri(proxyUri);
         }
+        if (preemptiveAuthentication != null) {
+            builder.preemptiveAuthentication(preemptiveAuthentication);
+        }
+        if (tlsContextCache != null) {
+            builder.tlsContextCache(tlsContextCache);
+        }
         if (readTimeoutInMillis != null) {
             builder.readTimeoutInMillis(readTimeoutInMillis);
         }
         if (connectTimeoutInMillis != null) {
             builder.connectTimeoutInMillis(connectTimeoutInMillis);
         }
+        if (deadlineInMillis != null) {
+            builder.deadlineInMillis(deadlineInMillis);
+        }
+        if (connectionPooling != null) {
+            builder.connectionPooling(connectionPooling);
+        }
+        if (maxConnectionsTotal != null) {
+            builder.maxConnectionsTotal(maxConnectionsTotal);
+        }
+        if (maxConnectionsPerRoute != null) {
+            builder.maxConnectionsPerRoute(maxConnectionsPerRoute);
+        }
+        if (connectionLeaseTimeoutInMillis != null) {
+            builder.connectionLeaseTimeoutInMillis(connectionLeaseTimeoutInMillis);
+        }
+        if (staleConnectionCheck != null) {
+            builder.staleConnectionCheck(staleConnectionCheck);
+        }
+        if (connectionPoolRegistry != null) {
+            builder.connectionPoolRegistry(connectionPoolRegistry);
+        }
+        if (keepAliveInMillis != null) {
+            builder.keepAliveInMillis(keepAliveInMillis);
+        }
+        if (idleConnectionTimeoutInMillis != null) {
+            builder.idleConnectionTimeoutInMillis(idleConnectionTimeoutInMillis);
+        }
+        if (connectionEvictionIntervalInMillis != null) {
+            builder.connectionEvictionIntervalInMillis(connectionEvictionIntervalInMillis);
+        }
+        if (warmUpConnections != null) {
+            builder.warmUpConnections(warmUpConnections);
+        }
         if (endpointSecurity != null) {
             builder.endpointSecurity(endpointSecurity);
         }
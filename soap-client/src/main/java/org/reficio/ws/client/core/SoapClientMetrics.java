@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.reficio.ws.SoapException;
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.TransmissionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the SoapClient: per-SOAPAction latencies and byte counts, error counts by HTTP status, hedge counts and
+ * the gauges of the connection pool. Readable directly and through JMX, if the client registers them.
+ * The metrics are collected only if enabled in the SoapClient.Builder - otherwise they cost nothing.
+ * <p/>
+ * The pool gauges and the per-route connection metrics reflect the blocking transport; the gauges are 0 if
+ * connection pooling is disabled.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class SoapClientMetrics implements SoapClientMetricsMXBean {
+
+    private final static String NO_SOAP_ACTION = "";
+
+    private final PoolingClientConnectionManager pool;
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<String, OperationMetrics>();
+    private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<String, RouteMetrics>();
+    private final ConcurrentMap<Integer, AtomicLong> errorsByStatus = new ConcurrentHashMap<Integer, AtomicLong>();
+    private final AtomicLong errorsWithoutStatus = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong hedgesOverBudget = new AtomicLong();
+
+    SoapClientMetrics(ClientConnectionManager connectionManager) {
+        if (connectionManager instanceof PoolingClientConnectionManager) {
+            this.pool = (PoolingClientConnectionManager) connectionManager;
+        } else {
+            this.pool = null;
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+    @Override
+    public List<OperationMetrics> getOperations() {
+        return new ArrayList<OperationMetrics>(operations.values());
+    }
+
+    /**
+     * @param soapAction SOAPAction of the operation, null for the requests sent without SOAPAction
+     * @return metrics of the operation, or null if no request has been sent with the SOAPAction
+     */
+    public OperationMetrics getOperation(String soapAction) {
+        return operations.get(soapAction != null ? soapAction : NO_SOAP_ACTION);
+    }
+
+    @Override
+    public List<RouteMetrics> getRoutes() {
+        return new ArrayList<RouteMetrics>(routes.values());
+    }
+
+    /**
+     * @param route description of the route, as returned by RouteMetrics.getRoute()
+     * @return metrics of the route, or null if no request has been sent along the route
+     */
+    public RouteMetrics getRoute(String route) {
+        return routes.get(route);
+    }
+
+    @Override
+    public long getRequestCount() {
+        long count = 0;
+        for (OperationMetrics operation : operations.values()) {
+            count += operation.getRequestCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getErrorCount() {
+        long count = 0;
+        for (OperationMetrics operation : operations.values()) {
+            count += operation.getErrorCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return number of the failed requests by the HTTP status code returned by the SOAP server
+     */
+    @Override
+    public Map<Integer, Long> getErrorCountsByStatus() {
+        Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+        for (Map.Entry<Integer, AtomicLong> entry : errorsByStatus.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    /**
+     * @return number of the requests that failed without an HTTP status, e.g. because of an I/O failure
+     */
+    @Override
+    public long getErrorCountWithoutStatus() {
+        return errorsWithoutStatus.get();
+    }
+
+    @Override
+    public long getRequestBytes() {
+        long bytes = 0;
+        for (OperationMetrics operation : operations.values()) {
+            bytes += operation.getRequestBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getResponseBytes() {
+        long bytes = 0;
+        for (OperationMetrics operation : operations.values()) {
+            bytes += operation.getResponseBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    @Override
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    @Override
+    public long getHedgeBudgetExhaustedCount() {
+        return hedgesOverBudget.get();
+    }
+
+    /**
+     * @return fraction of the requests that have been hedged, or 0 if no request has been sent
+     */
+    @Override
+    public double getHedgeRate() {
+        long requests = getRequestCount();
+        return requests == 0 ? 0.0 : (double) hedges.get() / requests;
+    }
+
+    @Override
+    public int getLeasedConnections() {
+        return pool == null ? 0 : pool.getTotalStats().getLeased();
+    }
+
+    @Override
+    public int getPendingConnections() {
+        return pool == null ? 0 : pool.getTotalStats().getPending();
+    }
+
+    @Override
+    public int getAvailableConnections() {
+        return pool == null ? 0 : pool.getTotalStats().getAvailable();
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return pool == null ? 0 : pool.getTotalStats().getMax();
+    }
+
+    // ----------------------------------------------------------------
+    // METERING API
+    // ----------------------------------------------------------------
+    OperationMetrics getOrCreateOperation(String soapAction) {
+        String key = soapAction != null ? soapAction : NO_SOAP_ACTION;
+        OperationMetrics operation = operations.get(key);
+        if (operation == null) {
+            OperationMetrics created = new OperationMetrics(key);
+            operation = operations.putIfAbsent(key, created);
+            if (operation == null) {
+                operation = created;
+            }
+        }
+        return operation;
+    }
+
+    RouteMetrics getOrCreateRoute(HttpRoute route) {
+        String key = route.toString();
+        RouteMetrics metrics = routes.get(key);
+        if (metrics == null) {
+            RouteMetrics created = new RouteMetrics(key, route.isTunnelled());
+            metrics = routes.putIfAbsent(key, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    void recordHedge() {
+        hedges.incrementAndGet();
+    }
+
+    void recordHedgeWin() {
+        hedgeWins.incrementAndGet();
+    }
+
+    void recordHedgeOverBudget() {
+        hedgesOverBudget.incrementAndGet();
+    }
+
+    void recordSuccess(OperationMetrics operation, long startedInNanos) {
+        operation.recordLatency(System.nanoTime() - startedInNanos);
+    }
+
+    void recordFailure(OperationMetrics operation, long startedInNanos, SoapException failure) {
+        operation.recordLatency(System.nanoTime() - startedInNanos);
+        operation.recordError();
+        Integer status = failure instanceof TransmissionException ? ((TransmissionException) failure).getErrorCode() : null;
+        if (status == null) {
+            errorsWithoutStatus.incrementAndGet();
+            return;
+        }
+        AtomicLong count = errorsByStatus.get(status);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = errorsByStatus.putIfAbsent(status, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+}
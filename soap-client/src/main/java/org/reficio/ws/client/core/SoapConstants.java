@@ -50,12 +50,15 @@ final class SoapConstants {
             PROP_SOAP_ACTION_12 = "action=",
             PROP_CONTENT_TYPE = "Content-Type",
             PROP_CONTENT_LENGTH = "Content-Length",
+            PROP_CONTENT_ENCODING = "Content-Encoding",
+            PROP_ACCEPT_ENCODING = "Accept-Encoding",
             PROP_AUTH = "Authorization",
             PROP_PROXY_AUTH = "Proxy-Authorization",
             PROP_PROXY_CONN = "Proxy-Connection",
             PROP_KEEP_ALIVE = "Keep-Alive",
             PROP_BASIC_AUTH = "Basic",
-            PROP_DELIMITER = "; ";
+            PROP_DELIMITER = "; ",
+            ACCEPTED_ENCODINGS = "gzip,deflate";
 
 
     public final static String
@@ -67,9 +70,44 @@ final class SoapConstants {
             TLS_CONTEXT = "TLS",
             JKS_KEYSTORE = "JKS";
 
+    public final static String
+            JMX_DOMAIN = "org.reficio.ws";
+
+    public final static String
+            PARAM_CALL_TIMING = "org.reficio.ws.client.call-timing",
+            PARAM_DEADLINE = "org.reficio.ws.client.deadline";
+
     public final static int
             INFINITE_TIMEOUT = 0;
 
+    public final static int
+            DEFAULT_MAX_CONNECTIONS_TOTAL = 20,
+            DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20,
+            DEFAULT_SHARED_MAX_CONNECTIONS_TOTAL = 200,
+            DEFAULT_COMPRESSION_THRESHOLD_IN_BYTES = 1024,
+            DEFAULT_RESPONSE_CACHE_MAX_ENTRIES = 1000,
+            DEFAULT_RETRY_MAX_ATTEMPTS = 3,
+            DEFAULT_CONNECTION_EVICTION_INTERVAL_IN_MILLIS = 5000,
+            DEFAULT_HEDGING_MIN_SAMPLES = 100,
+            DEFAULT_HEDGING_BUDGET_BURST = 10,
+            DEFAULT_THROTTLING_MIN_CONCURRENCY_LIMIT = 1,
+            DEFAULT_THROTTLING_MAX_CONCURRENCY_LIMIT = 200,
+            DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+
+    public final static long
+            DEFAULT_RESPONSE_CACHE_TTL_IN_MILLIS = 60000L,
+            DEFAULT_RETRY_INITIAL_BACKOFF_IN_MILLIS = 100L,
+            DEFAULT_RETRY_MAX_BACKOFF_IN_MILLIS = 10000L,
+            DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION_IN_MILLIS = 30000L,
+            DEFAULT_HEDGING_INITIAL_DELAY_IN_MILLIS = 100L;
+
+    public final static double
+            DEFAULT_RETRY_BACKOFF_MULTIPLIER = 2.0,
+            DEFAULT_RETRY_JITTER = 0.5,
+            DEFAULT_HEDGING_DELAY_PERCENTILE = 95.0,
+            DEFAULT_HEDGING_BUDGET_RATIO = 0.05,
+            DEFAULT_THROTTLING_BACKOFF_RATIO = 0.9;
+
     public static enum AuthMethod {
         NONE, BASIC, DIGEST, NTLM, SPNEGO;
     }
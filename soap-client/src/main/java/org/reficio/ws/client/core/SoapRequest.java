@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.client.SoapClientException;
+
+import java.io.InputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * SOAP request to be posted by the SoapClient. The envelope may be specified as a String, as an InputStream
+ * or as an EnvelopeWriter callback - the latter two are streamed to the SOAP server without being buffered.
+ * The SOAP version has to be specified for the EnvelopeWriter, in the other cases it is recognized in the envelope.
+ * <p/>
+ * The timeouts and the deadline of the request override the ones of the SoapClient; the ones left unspecified are
+ * taken from the client.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public final class SoapRequest {
+
+    private String soapAction;
+    private SoapVersion soapVersion;
+
+    private String envelope;
+    private InputStream envelopeStream;
+    private EnvelopeWriter envelopeWriter;
+
+    private Integer readTimeoutInMillis;
+    private Integer connectTimeoutInMillis;
+    private Integer connectionLeaseTimeoutInMillis;
+    private Integer deadlineInMillis;
+    private CallTiming timing;
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+    public String getSoapAction() {
+        return soapAction;
+    }
+
+    public SoapVersion getSoapVersion() {
+        return soapVersion;
+    }
+
+    public String getEnvelope() {
+        return envelope;
+    }
+
+    public InputStream getEnvelopeStream() {
+        return envelopeStream;
+    }
+
+    public EnvelopeWriter getEnvelopeWriter() {
+        return envelopeWriter;
+    }
+
+    public Integer getReadTimeoutInMillis() {
+        return readTimeoutInMillis;
+    }
+
+    public Integer getConnectTimeoutInMillis() {
+        return connectTimeoutInMillis;
+    }
+
+    public Integer getConnectionLeaseTimeoutInMillis() {
+        return connectionLeaseTimeoutInMillis;
+    }
+
+    public Integer getDeadlineInMillis() {
+        return deadlineInMillis;
+    }
+
+    public CallTiming getTiming() {
+        return timing;
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+    private SoapRequest() {
+    }
+
+    /**
+     * Builder to construct a properly populated SoapRequest
+     */
+    public static class Builder {
+
+        private String soapAction;
+        private SoapVersion soapVersion;
+
+        private String envelope;
+        private InputStream envelopeStream;
+        private EnvelopeWriter envelopeWriter;
+
+        private Integer readTimeoutInMillis;
+        private Integer connectTimeoutInMillis;
+        private Integer connectionLeaseTimeoutInMillis;
+        private Integer deadlineInMillis;
+        private CallTiming timing;
+
+        /**
+         * @param value SOAPAction attribute. Null is accepted.
+         * @return builder
+         */
+        public Builder soapAction(String value) {
+            soapAction = value;
+            return this;
+        }
+
+        /**
+         * @param value SOAP version of the envelope. Null is not accepted.
+         * @return builder
+         */
+        public Builder soapVersion(SoapVersion value) {
+            soapVersion = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * @param value SOAP message envelope. Null is not accepted.
+         * @return builder
+         */
+        public Builder envelope(String value) {
+            envelope = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * @param value SOAP message envelope streamed to the SOAP server. Null is not accepted.
+         * @return builder
+         */
+        public Builder envelope(InputStream value) {
+            envelopeStream = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * @param value callback that streams the SOAP message envelope to the SOAP server. Null is not accepted.
+         * @return builder
+         */
+        public Builder envelope(EnvelopeWriter value) {
+            envelopeWriter = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * @param value Specifies the timeout in millisecond for the read operation of this request,
+         *              overriding the one of the client. Has to be not negative - 0 means no timeout.
+         * @return builder
+         */
+        public Builder readTimeoutInMillis(int value) {
+            checkArgument(value >= 0);
+            readTimeoutInMillis = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the timeout in millisecond for the connect operation of this request,
+         *              overriding the one of the client. Has to be not negative - 0 means no timeout.
+         * @return builder
+         */
+        public Builder connectTimeoutInMillis(int value) {
+            checkArgument(value >= 0);
+            connectTimeoutInMillis = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the timeout in millisecond for leasing a connection from the pool for this request,
+         *              overriding the one of the client. Has to be not negative - 0 means no timeout.
+         * @return builder
+         */
+        public Builder connectionLeaseTimeoutInMillis(int value) {
+            checkArgument(value >= 0);
+            connectionLeaseTimeoutInMillis = value;
+            return this;
+        }
+
+        /**
+         * Specifies the time the whole call has to complete within - the connection lease, the connect, the TLS
+         * handshake, the write of the request and the read of the response, including the retries. When it passes,
+         * the transmission is aborted and a DeadlineExceededException is thrown. Overrides the deadline of the client.
+         *
+         * @param value Specifies the deadline in millisecond. Has to be not negative - 0 means no deadline.
+         * @return builder
+         */
+        public Builder deadlineInMillis(int value) {
+            checkArgument(value >= 0);
+            deadlineInMillis = value;
+            return this;
+        }
+
+        /**
+         * @param value timing record filled in with the breakdown of the call. Null is accepted.
+         * @return builder
+         */
+        public Builder timing(CallTiming value) {
+            timing = value;
+            return this;
+        }
+
+        /**
+         * Constructs properly populated soap request
+         *
+         * @return properly populated soap request
+         */
+        public SoapRequest build() {
+            int envelopes = (envelope != null ? 1 : 0) + (envelopeStream != null ? 1 : 0) + (envelopeWriter != null ? 1 : 0);
+            if (envelopes != 1) {
+                throw new SoapClientException("Specify exactly one envelope - a String, an InputStream or an EnvelopeWriter");
+            }
+            if (envelopeWriter != null && soapVersion == null) {
+                throw new SoapClientException("Specify the SOAP version of the envelope written by the EnvelopeWriter");
+            }
+            SoapRequest request = new SoapRequest();
+            request.soapAction = soapAction;
+            request.soapVersion = soapVersion;
+            request.envelope = envelope;
+            request.envelopeStream = envelopeStream;
+            request.envelopeWriter = envelopeWriter;
+            request.readTimeoutInMillis = readTimeoutInMillis;
+            request.connectTimeoutInMillis = connectTimeoutInMillis;
+            request.connectionLeaseTimeoutInMillis = connectionLeaseTimeoutInMillis;
+            request.deadlineInMillis = deadlineInMillis;
+            request.timing = timing;
+            return request;
+        }
+    }
+
+    /**
+     * @return a new instance of a SoapRequest Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+}
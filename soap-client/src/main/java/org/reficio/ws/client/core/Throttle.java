@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.ThrottledException;
+import org.reficio.ws.client.TransmissionException;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Throttle of a single endpoint of the SoapClient, exposed for monitoring. The rate and the concurrency limit
+ * may be adjusted at runtime, e.g. when a partner announces a new quota.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class Throttle {
+
+    private final static double NANOS_PER_SECOND = 1000000000.0;
+
+    private final URI endpointUri;
+    private final ThrottlingPolicy policy;
+
+    // guarded by this
+    private double ratePerSecond;
+    private double tokens;
+    private long refilledAtInNanos;
+    private double concurrencyLimit;
+    private int inFlight;
+    private long rejectedCount;
+    private long overloadCount;
+
+    Throttle(URI endpointUri, ThrottlingPolicy policy) {
+        this.endpointUri = endpointUri;
+        this.policy = policy;
+        this.ratePerSecond = policy.getRatePerSecond();
+        this.tokens = policy.getRateBurst();
+        this.refilledAtInNanos = System.nanoTime();
+        this.concurrencyLimit = policy.getConcurrencyLimit();
+    }
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+    public URI getEndpointUri() {
+        return endpointUri;
+    }
+
+    public synchronized double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    /**
+     * @param value maximum number of requests per second. Has to be not negative, 0 disables the rate limiting.
+     */
+    public synchronized void setRatePerSecond(double value) {
+        checkArgument(value >= 0.0);
+        refill(System.nanoTime());
+        ratePerSecond = value;
+    }
+
+    /**
+     * @return current limit of the requests in flight, or 0 if the concurrency is not limited
+     */
+    public synchronized int getConcurrencyLimit() {
+        return (int) concurrencyLimit;
+    }
+
+    /**
+     * @param value limit of the requests in flight, from which the adaptive limit carries on. Has to be not negative,
+     *              0 disables the concurrency limiting.
+     */
+    public synchronized void setConcurrencyLimit(int value) {
+        checkArgument(value >= 0);
+        concurrencyLimit = value;
+        notifyAll();
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return number of the requests that failed with ThrottledException
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return number of the responses that signalled an overload of the endpoint
+     */
+    public synchronized long getOverloadCount() {
+        return overloadCount;
+    }
+
+    // ----------------------------------------------------------------
+    // THROTTLING API
+    // ----------------------------------------------------------------
+
+    /**
+     * Waits for a permit to send a request, which has to be given back by release()
+     *
+     * @throws ThrottledException if no permit is available within the maximum wait of the policy
+     */
+    void acquire() {
+        long maxWaitInNanos = TimeUnit.MILLISECONDS.toNanos(policy.getMaxWaitInMillis());
+        long deadline = System.nanoTime() + maxWaitInNanos;
+        long rateWaitInNanos = reserveToken(maxWaitInNanos);
+        try {
+            if (rateWaitInNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(rateWaitInNanos);
+            }
+            acquireSlot(deadline);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new TransmissionException("Transmission interrupted", ex);
+        }
+    }
+
+    /**
+     * Takes a permit to send a request without waiting for it, which has to be given back by release()
+     *
+     * @throws ThrottledException if no permit is available right away
+     */
+    synchronized void acquireWithoutWaiting() {
+        if (ratePerSecond > 0.0) {
+            refill(System.nanoTime());
+            if (tokens < 1.0) {
+                rejectedCount++;
+                throw new ThrottledException(String.format("Rate limit of [%s] exceeded", endpointUri));
+            }
+        }
+        if (concurrencyLimit > 0 && inFlight >= (int) concurrencyLimit) {
+            rejectedCount++;
+            throw new ThrottledException(String.format("Concurrency limit of [%s] reached", endpointUri));
+        }
+        if (ratePerSecond > 0.0) {
+            tokens -= 1.0;
+        }
+        inFlight++;
+    }
+
+    /**
+     * @param failure failure of the request, or null if it succeeded
+     */
+    synchronized void release(TransmissionException failure) {
+        int used = inFlight--;
+        if (failure != null && policy.isOverload(failure)) {
+            overloadCount++;
+            if (policy.isAdaptiveConcurrency() && concurrencyLimit > 0) {
+                concurrencyLimit = Math.max(policy.getMinConcurrencyLimit(), concurrencyLimit * policy.getBackoffRatio());
+            }
+        } else if (failure == null && policy.isAdaptiveConcurrency() && concurrencyLimit > 0
+                && used * 2 >= concurrencyLimit) {
+            // the limit grows only while it is being used, otherwise it would grow unchecked while the load is low
+            concurrencyLimit = Math.min(policy.getMaxConcurrencyLimit(), concurrencyLimit + 1);
+        }
+        notifyAll();
+    }
+
+    // a token is reserved ahead of time, so that the waiting requests are served in order
+    private synchronized long reserveToken(long maxWaitInNanos) {
+        if (ratePerSecond <= 0.0) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        refill(now);
+        long waitInNanos = tokens >= 1.0 ? 0L : (long) Math.ceil((1.0 - tokens) / ratePerSecond * NANOS_PER_SECOND);
+        if (waitInNanos > maxWaitInNanos) {
+            rejectedCount++;
+            throw new ThrottledException(String.format("Rate limit of [%s] exceeded", endpointUri));
+        }
+        tokens -= 1.0;
+        return waitInNanos;
+    }
+
+    private synchronized void acquireSlot(long deadline) throws InterruptedException {
+        while (concurrencyLimit > 0 && inFlight >= (int) concurrencyLimit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                rejectedCount++;
+                throw new ThrottledException(String.format("Concurrency limit of [%s] reached", endpointUri));
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        inFlight++;
+    }
+
+    private void refill(long now) {
+        if (ratePerSecond > 0.0) {
+            tokens = Math.min(policy.getRateBurst(), tokens + (now - refilledAtInNanos) / NANOS_PER_SECOND * ratePerSecond);
+        }
+        refilledAtInNanos = now;
+    }
+
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.TransmissionException;
+
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static org.reficio.ws.client.core.SoapConstants.*;
+
+/**
+ * Configuration of the throttles of the SoapClient - each endpoint gets a throttle of its own.
+ * The rate of the requests is limited by a token bucket, which refills at the given rate and holds at most the burst
+ * of tokens. The number of the requests in flight is limited by a concurrency limit, which is adapted to the load
+ * the endpoint copes with (AIMD): it grows by one after a successful request that used at least half of it and
+ * shrinks by the backoff ratio after a response signalling an overload - an overload status code or a read timeout.
+ * <p/>
+ * A request that cannot be sent within the limits waits for a permit up to the maximum wait, then it fails with
+ * ThrottledException without being transmitted. With the maximum wait of 0 it fails fast.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class ThrottlingPolicy {
+
+    private final static List<Integer> DEFAULT_OVERLOAD_STATUS_CODES = Arrays.asList(429, 503);
+
+    private double ratePerSecond;
+    private int rateBurst;
+    private int concurrencyLimit;
+    private boolean adaptiveConcurrency;
+    private int minConcurrencyLimit;
+    private int maxConcurrencyLimit;
+    private double backoffRatio;
+    private long maxWaitInMillis;
+    private Set<Integer> overloadStatusCodes;
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+    public double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public int getRateBurst() {
+        return rateBurst;
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public int getMinConcurrencyLimit() {
+        return minConcurrencyLimit;
+    }
+
+    public int getMaxConcurrencyLimit() {
+        return maxConcurrencyLimit;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public long getMaxWaitInMillis() {
+        return maxWaitInMillis;
+    }
+
+    public Set<Integer> getOverloadStatusCodes() {
+        return overloadStatusCodes;
+    }
+
+    // ----------------------------------------------------------------
+    // THROTTLING API
+    // ----------------------------------------------------------------
+    boolean isOverload(TransmissionException failure) {
+        if (failure.getErrorCode() != null) {
+            return overloadStatusCodes.contains(failure.getErrorCode());
+        }
+        return failure.getCause() instanceof SocketTimeoutException;
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+    private ThrottlingPolicy() {
+    }
+
+    /**
+     * Builder to construct a properly populated ThrottlingPolicy
+     */
+    public static class Builder {
+
+        private Double ratePerSecond = 0.0;
+        private Integer rateBurst;
+        private Integer concurrencyLimit = 0;
+        private Boolean adaptiveConcurrency = true;
+        private Integer minConcurrencyLimit = DEFAULT_THROTTLING_MIN_CONCURRENCY_LIMIT;
+        private Integer maxConcurrencyLimit = DEFAULT_THROTTLING_MAX_CONCURRENCY_LIMIT;
+        private Double backoffRatio = DEFAULT_THROTTLING_BACKOFF_RATIO;
+        private Long maxWaitInMillis = 0L;
+        private Set<Integer> overloadStatusCodes;
+
+        /**
+         * @param value Specifies the maximum number of requests per second. Has to be not negative, 0 disables
+         *              the rate limiting (the default).
+         * @return builder
+         */
+        public Builder ratePerSecond(double value) {
+            checkArgument(value >= 0.0);
+            ratePerSecond = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the number of requests that may be sent at once above the rate. Has to be positive.
+         *              By default the requests of one second may.
+         * @return builder
+         */
+        public Builder rateBurst(int value) {
+            checkArgument(value > 0);
+            rateBurst = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the initial limit of the requests in flight. Has to be not negative, 0 disables
+         *              the concurrency limiting (the default).
+         * @return builder
+         */
+        public Builder concurrencyLimit(int value) {
+            checkArgument(value >= 0);
+            concurrencyLimit = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies whether the concurrency limit adapts to the load the endpoint copes with.
+         *              Enabled by default.
+         * @return builder
+         */
+        public Builder adaptiveConcurrency(boolean value) {
+            adaptiveConcurrency = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the lower bound of the adaptive concurrency limit. Has to be positive.
+         * @return builder
+         */
+        public Builder minConcurrencyLimit(int value) {
+            checkArgument(value > 0);
+            minConcurrencyLimit = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the upper bound of the adaptive concurrency limit. Has to be positive.
+         * @return builder
+         */
+        public Builder maxConcurrencyLimit(int value) {
+            checkArgument(value > 0);
+            maxConcurrencyLimit = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the factor the adaptive concurrency limit shrinks by after an overload,
+         *              between 0 and 1 exclusive.
+         * @return builder
+         */
+        public Builder backoffRatio(double value) {
+            checkArgument(value > 0.0 && value < 1.0);
+            backoffRatio = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies how long in milliseconds a request may wait for a permit. Has to be not negative,
+         *              0 makes the requests fail fast (the default).
+         * @return builder
+         */
+        public Builder maxWaitInMillis(long value) {
+            checkArgument(value >= 0);
+            maxWaitInMillis = value;
+            return this;
+        }
+
+        /**
+         * Marks the HTTP status code as a signal of an overload of the endpoint. By default 429 and 503 are.
+         *
+         * @param value HTTP status code
+         * @return builder
+         */
+        public Builder overloadStatusCode(int value) {
+            if (overloadStatusCodes == null) {
+                overloadStatusCodes = new HashSet<Integer>();
+            }
+            overloadStatusCodes.add(value);
+            return this;
+        }
+
+        /**
+         * Constructs properly populated throttling policy
+         *
+         * @return properly populated throttling policy
+         */
+        public ThrottlingPolicy build() {
+            checkState(minConcurrencyLimit <= maxConcurrencyLimit);
+            checkState(concurrencyLimit == 0 || !adaptiveConcurrency
+                    || (concurrencyLimit >= minConcurrencyLimit && concurrencyLimit <= maxConcurrencyLimit));
+            ThrottlingPolicy policy = new ThrottlingPolicy();
+            policy.ratePerSecond = ratePerSecond;
+            policy.rateBurst = rateBurst != null ? rateBurst : Math.max(1, (int) Math.ceil(ratePerSecond));
+            policy.concurrencyLimit = concurrencyLimit;
+            policy.adaptiveConcurrency = adaptiveConcurrency;
+            policy.minConcurrencyLimit = minConcurrencyLimit;
+            policy.maxConcurrencyLimit = maxConcurrencyLimit;
+            policy.backoffRatio = backoffRatio;
+            policy.maxWaitInMillis = maxWaitInMillis;
+            Set<Integer> statusCodes = overloadStatusCodes != null ? overloadStatusCodes
+                    : new HashSet<Integer>(DEFAULT_OVERLOAD_STATUS_CODES);
+            policy.overloadStatusCodes = Collections.unmodifiableSet(new HashSet<Integer>(statusCodes));
+            return policy;
+        }
+    }
+
+    /**
+     * @return a new instance of a ThrottlingPolicy Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+}
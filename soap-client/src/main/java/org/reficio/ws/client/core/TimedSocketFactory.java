@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.HttpInetSocketAddress;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.HttpParams;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+
+import static org.reficio.ws.client.core.SoapConstants.HTTPS;
+import static org.reficio.ws.client.core.SoapConstants.PARAM_CALL_TIMING;
+
+/**
+ * Socket factory that records the connect and the TLS handshake of a connection in the CallTiming of the request
+ * that opens it. The timing is passed in the request parameters; without it the calls are simply delegated.
+ * <p/>
+ * To tell the connect from the handshake, a timed TLS connection is established in two steps - a plain socket is
+ * connected and then layered with TLS by the delegate, which completes the handshake by verifying the hostname.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+class TimedSocketFactory implements SchemeSocketFactory {
+
+    private final SchemeSocketFactory delegate;
+
+    private TimedSocketFactory(SchemeSocketFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param tlsSocketFactory socket factory of the HTTPS scheme; may be null to use the default one
+     * @param tlsPort          default port of the HTTPS scheme
+     * @return the default scheme registry, with the socket factories of all the schemes timed
+     */
+    static SchemeRegistry createSchemeRegistry(SchemeLayeredSocketFactory tlsSocketFactory, int tlsPort) {
+        SchemeRegistry defaults = SchemeRegistryFactory.createDefault();
+        if (tlsSocketFactory != null) {
+            defaults.register(new Scheme(HTTPS, tlsPort, tlsSocketFactory));
+        }
+        SchemeRegistry registry = new SchemeRegistry();
+        for (String name : defaults.getSchemeNames()) {
+            Scheme scheme = defaults.getScheme(name);
+            registry.register(new Scheme(name, scheme.getDefaultPort(), wrap(scheme.getSchemeSocketFactory())));
+        }
+        return registry;
+    }
+
+    private static SchemeSocketFactory wrap(SchemeSocketFactory factory) {
+        if (factory instanceof SchemeLayeredSocketFactory) {
+            return new Layered((SchemeLayeredSocketFactory) factory);
+        }
+        return new TimedSocketFactory(factory);
+    }
+
+    @Override
+    public Socket createSocket(HttpParams params) throws IOException {
+        return delegate.createSocket(params);
+    }
+
+    @Override
+    public Socket connectSocket(Socket socket, InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                                HttpParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+        CallTiming timing = getTiming(params);
+        if (timing == null) {
+            return delegate.connectSocket(socket, remoteAddress, localAddress, params);
+        }
+        timing.connectStarted();
+        Socket connected = delegate.connectSocket(socket, remoteAddress, localAddress, params);
+        timing.connected();
+        return connected;
+    }
+
+    @Override
+    public boolean isSecure(Socket socket) throws IllegalArgumentException {
+        return delegate.isSecure(socket);
+    }
+
+    static CallTiming getTiming(HttpParams params) {
+        return params != null ? (CallTiming) params.getParameter(PARAM_CALL_TIMING) : null;
+    }
+
+    private static final class Layered extends TimedSocketFactory implements SchemeLayeredSocketFactory {
+
+        private final SchemeLayeredSocketFactory delegate;
+
+        private Layered(SchemeLayeredSocketFactory delegate) {
+            super(delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Socket createSocket(HttpParams params) throws IOException {
+            if (getTiming(params) == null) {
+                return delegate.createSocket(params);
+            }
+            return PlainSocketFactory.getSocketFactory().createSocket(params);
+        }
+
+        @Override
+        public Socket connectSocket(Socket socket, InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                                    HttpParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+            CallTiming timing = getTiming(params);
+            if (timing == null) {
+                return delegate.connectSocket(socket, remoteAddress, localAddress, params);
+            }
+            timing.connectStarted();
+            Socket connected = PlainSocketFactory.getSocketFactory().connectSocket(socket, remoteAddress,
+                    localAddress, params);
+            timing.connected();
+            String target = remoteAddress instanceof HttpInetSocketAddress
+                    ? ((HttpInetSocketAddress) remoteAddress).getHttpHost().getHostName()
+                    : remoteAddress.getHostName();
+            try {
+                return createLayeredSocket(connected, target, remoteAddress.getPort(), params);
+            } catch (IOException ex) {
+                connected.close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpParams params)
+                throws IOException, UnknownHostException {
+            CallTiming timing = getTiming(params);
+            if (timing == null) {
+                return delegate.createLayeredSocket(socket, target, port, params);
+            }
+            timing.handshakeStarted();
+            Socket layered = delegate.createLayeredSocket(socket, target, port, params);
+            if (layered instanceof SSLSocket) {
+                // completes the handshake, unless the hostname verification has done it already
+                ((SSLSocket) layered).getSession();
+            }
+            timing.handshakeCompleted();
+            return layered;
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.ssl;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.params.HttpParams;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SSLSocketFactory that records the TLS handshakes of the connections it establishes.
+ * The handshake is completed by the hostname verification, before the connection is handed out.
+ * <p/>
+ * A handshake is resumed if its session has the ID of a session already negotiated through this factory, i.e.
+ * through its SSL context. The IDs of the most recent sessions are remembered only.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+final class MeteredSSLSocketFactory extends SSLSocketFactory {
+
+    private final static int MAX_SESSION_IDS = 10000;
+
+    private final TlsMetrics metrics;
+
+    // guarded by itself; in access order, so that the IDs of the sessions not resumed for the longest are dropped
+    private final Map<String, Boolean> sessionIds = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_SESSION_IDS;
+        }
+    };
+
+    MeteredSSLSocketFactory(SSLContext context, X509HostnameVerifier hostnameVerifier, TlsMetrics metrics) {
+        super(context, hostnameVerifier);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Socket connectSocket(Socket socket, InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                                HttpParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+        Socket connected = super.connectSocket(socket, remoteAddress, localAddress, params);
+        recordHandshake(connected);
+        return connected;
+    }
+
+    @Override
+    public Socket createLayeredSocket(Socket socket, String target, int port, HttpParams params)
+            throws IOException, UnknownHostException {
+        Socket layered = super.createLayeredSocket(socket, target, port, params);
+        recordHandshake(layered);
+        return layered;
+    }
+
+    private void recordHandshake(Socket socket) {
+        if (socket instanceof SSLSocket) {
+            metrics.recordHandshake(isResumed(((SSLSocket) socket).getSession()));
+        }
+    }
+
+    private boolean isResumed(SSLSession session) {
+        byte[] id = session.getId();
+        // a session without an ID cannot be resumed
+        if (id == null || id.length == 0) {
+            return false;
+        }
+        String key = new BigInteger(1, id).toString(16) + "/" + id.length;
+        synchronized (sessionIds) {
+            return sessionIds.put(key, Boolean.TRUE) != null;
+        }
+    }
+
+}
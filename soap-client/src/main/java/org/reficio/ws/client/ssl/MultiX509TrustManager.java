@@ -18,54 +18,94 @@
  */
 package org.reficio.ws.client.ssl;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import org.reficio.ws.annotation.ThreadSafe;
+
 import javax.net.ssl.X509TrustManager;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
+ * Trust manager that trusts a certificate chain if any of its delegates trusts it.
+ * <p/>
+ * The chains that have been validated are cached, keyed by the fingerprint of the leaf certificate and
+ * the auth type, so that the subsequent handshakes with the same peer skip the validation. An entry expires
+ * after the cache TTL, or earlier, when one of the certificates of the chain expires. Rejected chains are not
+ * cached. The delegates are consulted in the order of their recent hits, so that the trust store that validates
+ * most of the chains is tried first.
+ *
  * @author: Tom Bujok (tom.bujok@gmail.com)
  * <p/>
  * Reficio™ - Reestablish your software!
  * www.reficio.org
  */
+@ThreadSafe
 public class MultiX509TrustManager implements X509TrustManager {
 
-    private final List<X509TrustManager> managers;
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+    public static final long DEFAULT_CACHE_TTL_IN_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // the hits are halved every so many validations, so that the order follows the recent ones
+    private static final int HIT_DECAY_INTERVAL = 256;
+
+    private final X509TrustManager[] managers;
+    private final AtomicLongArray hits;
+    private final AtomicInteger validations = new AtomicInteger();
+    private volatile int[] order;
+
+    private final Cache<String, Long> validatedChains;
+    private final long cacheTtlInMillis;
+    private final AtomicLong cacheHitCount = new AtomicLong();
+    private final AtomicLong cacheMissCount = new AtomicLong();
 
     public MultiX509TrustManager(List<X509TrustManager> managers) {
-        this.managers = new ArrayList<X509TrustManager>(managers);
+        this(managers, DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL_IN_MILLIS);
+    }
+
+    /**
+     * @param managers         delegates, at least one
+     * @param cacheSize        maximal number of the validated chains cached, 0 disables the cache
+     * @param cacheTtlInMillis time after which a validated chain is validated again
+     */
+    public MultiX509TrustManager(List<X509TrustManager> managers, int cacheSize, long cacheTtlInMillis) {
+        checkNotNull(managers, "managers cannot be null");
+        checkArgument(!managers.isEmpty(), "managers cannot be empty");
+        checkArgument(cacheSize >= 0, "cacheSize cannot be negative");
+        checkArgument(cacheTtlInMillis >= 0, "cacheTtlInMillis cannot be negative");
+        this.managers = managers.toArray(new X509TrustManager[managers.size()]);
+        this.hits = new AtomicLongArray(this.managers.length);
+        this.order = new int[this.managers.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        this.cacheTtlInMillis = cacheTtlInMillis;
+        this.validatedChains = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtlInMillis, TimeUnit.MILLISECONDS)
+                .build();
     }
 
     @Override
     public void checkClientTrusted(X509Certificate[] x509Certificates, String authType) throws CertificateException {
-        List<CertificateException> exceptions = new ArrayList<CertificateException>();
-        try {
-            for (X509TrustManager manager : managers) {
-                manager.checkClientTrusted(x509Certificates, authType);
-            }
-        } catch (CertificateException ex) {
-            exceptions.add(ex);
-        }
-        if (exceptions.size() >= managers.size()) {
-            throw exceptions.iterator().next();
-        }
+        checkTrusted(x509Certificates, authType, true);
     }
 
     @Override
     public void checkServerTrusted(X509Certificate[] x509Certificates, String authType) throws CertificateException {
-        List<CertificateException> exceptions = new ArrayList<CertificateException>();
-        try {
-            for (X509TrustManager manager : managers) {
-                manager.checkServerTrusted(x509Certificates, authType);
-            }
-        } catch (CertificateException ex) {
-            exceptions.add(ex);
-        }
-        if (exceptions.size() >= managers.size()) {
-            throw exceptions.iterator().next();
-        }
+        checkTrusted(x509Certificates, authType, false);
     }
 
     @Override
@@ -78,4 +118,122 @@ public class MultiX509TrustManager implements X509TrustManager {
         }
         return certs.toArray(new X509Certificate[]{});
     }
-}
\ No newline at end of file
+
+    /**
+     * @return number of the validations answered from the cache
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    /**
+     * @return number of the validations performed by the delegates
+     */
+    public long getCacheMissCount() {
+        return cacheMissCount.get();
+    }
+
+    public long getCacheSize() {
+        return validatedChains.size();
+    }
+
+    public void invalidateCache() {
+        validatedChains.invalidateAll();
+    }
+
+    private void checkTrusted(X509Certificate[] chain, String authType, boolean client) throws CertificateException {
+        if (chain == null || chain.length == 0) {
+            // let the delegates reject it
+            validate(chain, authType, client);
+            return;
+        }
+        String key = getCacheKey(chain[0], authType, client);
+        long now = System.currentTimeMillis();
+        Long expiry = validatedChains.getIfPresent(key);
+        if (expiry != null) {
+            if (now < expiry) {
+                cacheHitCount.incrementAndGet();
+                return;
+            }
+            validatedChains.invalidate(key);
+        }
+        cacheMissCount.incrementAndGet();
+        validate(chain, authType, client);
+        validatedChains.put(key, getExpiry(chain, now));
+    }
+
+    private void validate(X509Certificate[] chain, String authType, boolean client) throws CertificateException {
+        int[] current = order;
+        CertificateException failure = null;
+        for (int position = 0; position < current.length; position++) {
+            int index = current[position];
+            try {
+                if (client) {
+                    managers[index].checkClientTrusted(chain, authType);
+                } else {
+                    managers[index].checkServerTrusted(chain, authType);
+                }
+                recordHit(index, position, current);
+                return;
+            } catch (CertificateException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+        }
+        throw failure;
+    }
+
+    private static String getCacheKey(X509Certificate leaf, String authType, boolean client) throws CertificateException {
+        String fingerprint = Hashing.sha1().hashBytes(leaf.getEncoded()).toString();
+        return String.format("%s:%s:%s", client ? "client" : "server", authType, fingerprint);
+    }
+
+    private long getExpiry(X509Certificate[] chain, long now) {
+        long expiry = now + cacheTtlInMillis;
+        for (X509Certificate cert : chain) {
+            long notAfter = cert.getNotAfter().getTime();
+            // a certificate that had expired before and has been accepted anyway, e.g. a trust anchor,
+            // will not change the outcome of the validation
+            if (notAfter > now) {
+                expiry = Math.min(expiry, notAfter);
+            }
+        }
+        return expiry;
+    }
+
+    private void recordHit(int index, int position, int[] current) {
+        long count = hits.incrementAndGet(index);
+        if (validations.incrementAndGet() % HIT_DECAY_INTERVAL == 0) {
+            for (int i = 0; i < managers.length; i++) {
+                hits.set(i, hits.get(i) / 2);
+            }
+        }
+        if (position > 0 && count > hits.get(current[position - 1])) {
+            reorder();
+        }
+    }
+
+    private synchronized void reorder() {
+        Integer[] indexes = new Integer[managers.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = order[i];
+        }
+        final long[] snapshot = new long[managers.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = hits.get(i);
+        }
+        Arrays.sort(indexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer one, Integer two) {
+                return snapshot[two] < snapshot[one] ? -1 : (snapshot[two] == snapshot[one] ? 0 : 1);
+            }
+        });
+        int[] sorted = new int[indexes.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = indexes[i];
+        }
+        order = sorted;
+    }
+
+}
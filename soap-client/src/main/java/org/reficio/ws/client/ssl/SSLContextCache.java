@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.ssl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.reficio.ws.annotation.ThreadSafe;
+import org.reficio.ws.client.core.Security;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.nio.CharBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Cache of the SSL contexts and socket factories derived from the Security configurations.
+ * Creating an SSL context loads the key and trust managers, and every context has its own cache of TLS sessions,
+ * so SoapClients that share a context skip that work and resume the sessions established by each other instead
+ * of performing full TLS handshakes.
+ * <p/>
+ * The contexts are keyed by the contents of the Security configurations - the certificates of the keystore and
+ * the truststore, the passwords, the protocol and the host verification - so equal configurations built
+ * separately, e.g. from the same keystore URL, share a context. The least recently used contexts are evicted
+ * when the cache is full.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class SSLContextCache {
+
+    private final static int DEFAULT_MAX_CONTEXTS = 32;
+    private final static int DEFAULT_SESSION_CACHE_SIZE = 1024;
+    private final static int DEFAULT_SESSION_TIMEOUT_IN_SECONDS = 3600;
+
+    private final static SSLContextCache shared = builder().build();
+
+    private Cache<HashCode, Entry> entries;
+    private int sessionCacheSize;
+    private int sessionTimeoutInSeconds;
+    private final TlsMetrics metrics = new TlsMetrics();
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+
+    /**
+     * @return cache shared by all the SoapClients that do not specify their own one
+     */
+    public static SSLContextCache getShared() {
+        return shared;
+    }
+
+    public SSLContext getContext(Security security) throws GeneralSecurityException {
+        return getEntry(checkNotNull(security), null).context;
+    }
+
+    public SSLContext getMergedContext(Security securityOne, Security securityTwo) throws GeneralSecurityException {
+        return getEntry(checkNotNull(securityOne), checkNotNull(securityTwo)).context;
+    }
+
+    public SSLSocketFactory getFactory(Security security) throws GeneralSecurityException {
+        return getEntry(checkNotNull(security), null).factory;
+    }
+
+    public SSLSocketFactory getMergedSocketFactory(Security securityOne, Security securityTwo) throws GeneralSecurityException {
+        return getEntry(checkNotNull(securityOne), checkNotNull(securityTwo)).factory;
+    }
+
+    /**
+     * @return metrics of the contexts and of the connections established by the socket factories of this cache
+     */
+    public TlsMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return number of the cached contexts
+     */
+    public long getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Discards all the cached contexts, e.g. after the certificates have changed
+     */
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    // ----------------------------------------------------------------
+    // INTERNALS
+    // ----------------------------------------------------------------
+    private Entry getEntry(final Security securityOne, final Security securityTwo) throws GeneralSecurityException {
+        try {
+            return entries.get(fingerprint(securityOne, securityTwo), new Callable<Entry>() {
+                @Override
+                public Entry call() throws GeneralSecurityException {
+                    return createEntry(securityOne, securityTwo);
+                }
+            });
+        } catch (ExecutionException ex) {
+            throw (GeneralSecurityException) ex.getCause();
+        } catch (UncheckedExecutionException ex) {
+            throw (RuntimeException) ex.getCause();
+        } catch (ExecutionError ex) {
+            throw (Error) ex.getCause();
+        }
+    }
+
+    private Entry createEntry(Security securityOne, Security securityTwo) throws GeneralSecurityException {
+        SSLContext context;
+        X509HostnameVerifier hostnameVerifier;
+        if (securityTwo == null) {
+            context = SSLUtils.getContext(securityOne);
+            hostnameVerifier = SSLUtils.getHostnameVerifier(securityOne);
+        } else {
+            context = SSLUtils.getMergedContext(securityOne, securityTwo);
+            hostnameVerifier = SSLUtils.getMergedHostnameVerifier(securityOne, securityTwo);
+        }
+        SSLSessionContext sessions = context.getClientSessionContext();
+        if (sessions != null) {
+            sessions.setSessionCacheSize(sessionCacheSize);
+            sessions.setSessionTimeout(sessionTimeoutInSeconds);
+        }
+        metrics.recordContext();
+        return new Entry(context, new MeteredSSLSocketFactory(context, hostnameVerifier, metrics));
+    }
+
+    private static HashCode fingerprint(Security securityOne, Security securityTwo) throws GeneralSecurityException {
+        Hasher hasher = Hashing.sha1().newHasher();
+        putSecurity(hasher, securityOne);
+        if (securityTwo != null) {
+            putSecurity(hasher, securityTwo);
+        }
+        return hasher.hash();
+    }
+
+    private static void putSecurity(Hasher hasher, Security security) throws GeneralSecurityException {
+        putString(hasher, security.getSslContextProtocol());
+        hasher.putBoolean(security.isStrictHostVerification());
+        putKeyStore(hasher, security.getKeyStore(), security.getKeyStorePassword());
+        putKeyStore(hasher, security.getTrustStore(), null);
+    }
+
+    private static void putKeyStore(Hasher hasher, KeyStore keyStore, char[] password) throws GeneralSecurityException {
+        if (keyStore == null) {
+            hasher.putBoolean(false);
+            return;
+        }
+        hasher.putBoolean(true);
+        putString(hasher, keyStore.getType());
+        putString(hasher, password != null ? CharBuffer.wrap(password) : "");
+        List<String> aliases = Collections.list(keyStore.aliases());
+        Collections.sort(aliases);
+        for (String alias : aliases) {
+            putString(hasher, alias);
+            Certificate[] chain = keyStore.isKeyEntry(alias) ?
+                    keyStore.getCertificateChain(alias) : new Certificate[]{keyStore.getCertificate(alias)};
+            hasher.putInt(chain != null ? chain.length : 0);
+            if (chain != null) {
+                for (Certificate certificate : chain) {
+                    byte[] encoded = certificate != null ? certificate.getEncoded() : new byte[0];
+                    hasher.putInt(encoded.length).putBytes(encoded);
+                }
+            }
+        }
+    }
+
+    private static void putString(Hasher hasher, CharSequence value) {
+        // the length separates the consecutive values
+        hasher.putInt(value.length()).putString(value);
+    }
+
+    private static class Entry {
+        private final SSLContext context;
+        private final SSLSocketFactory factory;
+
+        private Entry(SSLContext context, SSLSocketFactory factory) {
+            this.context = context;
+            this.factory = factory;
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+    private SSLContextCache() {
+    }
+
+    /**
+     * Builder to construct a properly populated SSLContextCache
+     */
+    public static class Builder {
+
+        private int maxContexts = DEFAULT_MAX_CONTEXTS;
+        private int sessionCacheSize = DEFAULT_SESSION_CACHE_SIZE;
+        private int sessionTimeoutInSeconds = DEFAULT_SESSION_TIMEOUT_IN_SECONDS;
+
+        /**
+         * @param value Specifies the maximum number of the cached SSL contexts. Has to be positive.
+         * @return builder
+         */
+        public Builder maxContexts(int value) {
+            checkArgument(value > 0);
+            maxContexts = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the maximum number of the TLS sessions cached by every context. 0 means no limit.
+         * @return builder
+         */
+        public Builder sessionCacheSize(int value) {
+            checkArgument(value >= 0);
+            sessionCacheSize = value;
+            return this;
+        }
+
+        /**
+         * @param value Specifies the time in seconds after which a cached TLS session may not be resumed anymore.
+         *              Has to be positive.
+         * @return builder
+         */
+        public Builder sessionTimeoutInSeconds(int value) {
+            checkArgument(value > 0);
+            sessionTimeoutInSeconds = value;
+            return this;
+        }
+
+        /**
+         * Constructs properly populated SSL context cache
+         *
+         * @return properly populated SSL context cache
+         */
+        public SSLContextCache build() {
+            SSLContextCache cache = new SSLContextCache();
+            cache.entries = CacheBuilder.newBuilder().maximumSize(maxContexts).build();
+            cache.sessionCacheSize = sessionCacheSize;
+            cache.sessionTimeoutInSeconds = sessionTimeoutInSeconds;
+            return cache;
+        }
+    }
+
+    /**
+     * @return a new instance of a SSLContextCache Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+}
@@ -55,7 +55,7 @@ public class SSLUtils {
         return new MultiX509TrustManager(managersList);
     }
 
-    public static SSLSocketFactory getMergedSocketFactory(org.reficio.ws.client.core.Security securityOne, Security securityTwo) throws GeneralSecurityException {
+    public static SSLContext getMergedContext(Security securityOne, Security securityTwo) throws GeneralSecurityException {
         X509KeyManager keyManagerOne = getKeyManager(securityOne.getKeyStore(), securityOne.getKeyStorePassword());
         X509KeyManager keyManagerTwo = getKeyManager(securityTwo.getKeyStore(), securityTwo.getKeyStorePassword());
 
@@ -65,21 +65,42 @@ public class SSLUtils {
         );
 
         SSLContext context = SSLContext.getInstance(securityOne.getSslContextProtocol());
+        context.init(new KeyManager[]{keyManagerOne, keyManagerTwo}, new TrustManager[]{trustManager}, new SecureRandom());
+        return context;
+    }
+
+    public static SSLContext getContext(Security security) throws GeneralSecurityException {
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(security.getKeyStore(), security.getKeyStorePassword());
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(security.getTrustStore());
+
+        SSLContext context = SSLContext.getInstance(security.getSslContextProtocol());
+        context.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), new SecureRandom());
+        return context;
+    }
+
+    public static X509HostnameVerifier getMergedHostnameVerifier(Security securityOne, Security securityTwo) {
         boolean strictHostVerification = securityOne.isStrictHostVerification() && securityTwo.isStrictHostVerification();
+        return getHostnameVerifier(strictHostVerification);
+    }
 
-        context.init(new KeyManager[]{keyManagerOne, keyManagerTwo}, new TrustManager[]{trustManager}, new SecureRandom());
-        X509HostnameVerifier verifier = strictHostVerification ?
+    public static X509HostnameVerifier getHostnameVerifier(Security security) {
+        return getHostnameVerifier(security.isStrictHostVerification());
+    }
+
+    private static X509HostnameVerifier getHostnameVerifier(boolean strictHostVerification) {
+        return strictHostVerification ?
                 SSLSocketFactory.STRICT_HOSTNAME_VERIFIER : SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
-        return new SSLSocketFactory(context, verifier);
+    }
+
+    public static SSLSocketFactory getMergedSocketFactory(Security securityOne, Security securityTwo) throws GeneralSecurityException {
+        return new SSLSocketFactory(getMergedContext(securityOne, securityTwo),
+                getMergedHostnameVerifier(securityOne, securityTwo));
     }
 
     public static SSLSocketFactory getFactory(Security security) throws GeneralSecurityException {
-        X509HostnameVerifier verifier = security.isStrictHostVerification() ?
-                SSLSocketFactory.STRICT_HOSTNAME_VERIFIER : SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
-        SSLSocketFactory socketFactory = new SSLSocketFactory(security.getSslContextProtocol(),
-                security.getKeyStore(), security.getKeyStorePasswordAsString(),
-                security.getTrustStore(), new SecureRandom(), null, verifier);
-        return socketFactory;
+        return new SSLSocketFactory(getContext(security), getHostnameVerifier(security));
     }
 
 
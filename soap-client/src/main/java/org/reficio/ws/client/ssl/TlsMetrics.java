@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.ssl;
+
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of the TLS layer of the SoapClients - the SSL contexts created and the TLS handshakes performed.
+ * A handshake is resumed if it reused a session established by an earlier connection, which spares the key
+ * exchange and the certificate validation.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class TlsMetrics {
+
+    private final AtomicLong contextCount = new AtomicLong();
+    private final AtomicLong handshakeCount = new AtomicLong();
+    private final AtomicLong resumedHandshakeCount = new AtomicLong();
+
+    TlsMetrics() {
+    }
+
+    /**
+     * @return number of the SSL contexts created, i.e. how many times the key and trust managers were initialized
+     */
+    public long getContextCount() {
+        return contextCount.get();
+    }
+
+    /**
+     * @return number of the TLS handshakes, both full and resumed ones
+     */
+    public long getHandshakeCount() {
+        return handshakeCount.get();
+    }
+
+    /**
+     * @return number of the TLS handshakes that resumed an existing session
+     */
+    public long getResumedHandshakeCount() {
+        return resumedHandshakeCount.get();
+    }
+
+    /**
+     * @return number of the TLS handshakes that established a new session
+     */
+    public long getFullHandshakeCount() {
+        long resumed = resumedHandshakeCount.get();
+        return handshakeCount.get() - resumed;
+    }
+
+    /**
+     * @return fraction of the TLS handshakes that resumed an existing session, 0 if there were no handshakes
+     */
+    public double getResumptionRate() {
+        long resumed = resumedHandshakeCount.get();
+        long handshakes = handshakeCount.get();
+        return handshakes == 0 ? 0.0 : (double) resumed / handshakes;
+    }
+
+    void recordContext() {
+        contextCount.incrementAndGet();
+    }
+
+    /**
+     * @param resumed whether the handshake resumed a session established by an earlier one
+     */
+    void recordHandshake(boolean resumed) {
+        handshakeCount.incrementAndGet();
+        if (resumed) {
+            resumedHandshakeCount.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.fail;
+
+/**
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class ConnectionPoolRegistryTest {
+
+    private final static HttpRoute ROUTE = new HttpRoute(new HttpHost("localhost", 9696));
+
+    private ConnectionPoolRegistry registry;
+    private ClientConnectionManager plainPool;
+    private ClientConnectionManager tlsPool;
+
+    @Before
+    public void createPools() throws Exception {
+        registry = ConnectionPoolRegistry.builder()
+                .maxConnectionsTotal(2)
+                .maxConnectionsPerRoute(2)
+                .build();
+        plainPool = registry.acquire(null, 0);
+        tlsPool = registry.acquire(new SSLSocketFactory(SSLContext.getDefault()), 443);
+        assertEquals(2, registry.getPoolCount());
+    }
+
+    @After
+    public void shutdownRegistry() {
+        registry.close();
+    }
+
+    @Test(timeout = 10000)
+    public void totalLimit_heldAcrossPools() throws Exception {
+        ManagedClientConnection plain = lease(plainPool, 100);
+        ManagedClientConnection tls = lease(tlsPool, 100);
+        assertEquals(2, registry.getLeasedConnectionCount());
+        try {
+            lease(plainPool, 100);
+            fail("ConnectionPoolTimeoutException expected");
+        } catch (ConnectionPoolTimeoutException ex) {
+            // expected - each pool could lease two connections on its own
+        }
+
+        tlsPool.releaseConnection(tls, 0, TimeUnit.MILLISECONDS);
+        assertNotNull(lease(plainPool, 100));
+        assertEquals(2, registry.getLeasedConnectionCount());
+        plainPool.releaseConnection(plain, 0, TimeUnit.MILLISECONDS);
+        assertEquals(1, registry.getLeasedConnectionCount());
+    }
+
+    @Test(timeout = 10000)
+    public void poolReleased_connectionsReturnedToTotalLimit() throws Exception {
+        lease(tlsPool, 100);
+        lease(tlsPool, 100);
+        assertEquals(2, registry.getLeasedConnectionCount());
+
+        registry.release(tlsPool);
+        assertEquals(0, registry.getLeasedConnectionCount());
+        assertNotNull(lease(plainPool, 100));
+    }
+
+    @Test(timeout = 10000)
+    public void abortedRequest_stopsWaitingForTotalLimit() throws Exception {
+        lease(plainPool, 100);
+        lease(tlsPool, 100);
+        final ClientConnectionRequest request = plainPool.requestConnection(ROUTE, null);
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                request.abortRequest();
+            }
+        }.start();
+        try {
+            request.getConnection(0, TimeUnit.MILLISECONDS);
+            fail("InterruptedException expected");
+        } catch (InterruptedException ex) {
+            // expected
+        }
+        assertEquals(2, registry.getLeasedConnectionCount());
+    }
+
+    private static ManagedClientConnection lease(ClientConnectionManager pool, long timeoutInMillis) throws Exception {
+        return pool.requestConnection(ROUTE, null).getConnection(timeoutInMillis, TimeUnit.MILLISECONDS);
+    }
+
+}
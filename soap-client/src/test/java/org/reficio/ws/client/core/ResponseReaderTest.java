@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.client.core;
+
+import org.junit.Test;
+import org.reficio.ws.client.SoapClientException;
+import org.reficio.ws.client.SoapFaultException;
+
+import javax.xml.namespace.QName;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.fail;
+
+/**
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class ResponseReaderTest {
+
+    private final static String SOAP_11_RESPONSE = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Header><s:Session xmlns:s=\"urn:session\"><s:Id>42</s:Id></s:Session></soapenv:Header>"
+            + "<soapenv:Body><q:GetQuoteResponse xmlns:q=\"urn:quotes\" xmlns:o=\"urn:other\">"
+            + "<q:Quote><q:Symbol>ABC</q:Symbol><q:Price>1.5</q:Price></q:Quote>"
+            + "<q:Quote><q:Symbol>XYZ</q:Symbol><q:Price><![CDATA[2.5]]></q:Price></q:Quote>"
+            + "<o:Price>3.5</o:Price>"
+            + "</q:GetQuoteResponse></soapenv:Body></soapenv:Envelope>";
+
+    private final static String SOAP_11_FAULT = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body><soapenv:Fault>"
+            + "<faultcode>soapenv:Server</faultcode>"
+            + "<faultstring> Quote service unavailable </faultstring>"
+            + "<faultactor>urn:quotes</faultactor>"
+            + "<detail><Reason>maintenance</Reason></detail>"
+            + "</soapenv:Fault></soapenv:Body></soapenv:Envelope>";
+
+    private final static String SOAP_12_FAULT = "<env:Envelope xmlns:env=\"http://www.w3.org/2003/05/soap-envelope\">"
+            + "<env:Body><env:Fault>"
+            + "<env:Code><env:Value>env:Sender</env:Value>"
+            + "<env:Subcode><env:Value xmlns:q=\"urn:quotes\">q:UnknownSymbol</env:Value></env:Subcode></env:Code>"
+            + "<env:Reason><env:Text xml:lang=\"en\">Unknown symbol</env:Text><env:Text xml:lang=\"de\">Unbekannt</env:Text></env:Reason>"
+            + "<env:Role>urn:quotes</env:Role>"
+            + "</env:Fault></env:Body></env:Envelope>";
+
+    @Test
+    public void relativePaths_startAtBody() {
+        ResponseReader reader = ResponseReader.builder()
+                .select("GetQuoteResponse/Quote/Symbol")
+                .select("GetQuoteResponse/Quote/Price")
+                .build();
+        ResponseValues values = reader.read(SOAP_11_RESPONSE);
+        assertEquals(Arrays.asList("ABC", "XYZ"), values.getValues("GetQuoteResponse/Quote/Symbol"));
+        assertEquals(Arrays.asList("1.5", "2.5"), values.getValues("GetQuoteResponse/Quote/Price"));
+        assertEquals("ABC", values.getValue("GetQuoteResponse/Quote/Symbol"));
+    }
+
+    @Test
+    public void absolutePaths_startAtEnvelope() {
+        ResponseReader reader = ResponseReader.builder().select("/Envelope/Header/Session/Id").build();
+        assertEquals("42", reader.read(SOAP_11_RESPONSE).getValue("/Envelope/Header/Session/Id"));
+    }
+
+    @Test
+    public void namespacedAndWildcardSteps() {
+        ResponseReader reader = ResponseReader.builder()
+                .select("GetQuoteResponse/{urn:other}Price")
+                .select("*/*/Price")
+                .select("GetQuoteResponse/Quote")
+                .build();
+        ResponseValues values = reader.read(SOAP_11_RESPONSE);
+        assertEquals(Arrays.asList("3.5"), values.getValues("GetQuoteResponse/{urn:other}Price"));
+        assertEquals(Arrays.asList("1.5", "2.5"), values.getValues("*/*/Price"));
+        // the value of an element includes the text of its descendants
+        assertEquals(Arrays.asList("ABC1.5", "XYZ2.5"), values.getValues("GetQuoteResponse/Quote"));
+    }
+
+    @Test
+    public void missingElements_noValues() {
+        ResponseReader reader = ResponseReader.builder().select("GetQuoteResponse/Volume").build();
+        ResponseValues values = reader.read(SOAP_11_RESPONSE);
+        assertNull(values.getValue("GetQuoteResponse/Volume"));
+        assertEquals(0, values.getValues("GetQuoteResponse/Volume").size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unselectedPath_rejected() {
+        ResponseReader.builder().build().read(SOAP_11_RESPONSE).getValue("GetQuoteResponse");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedPath_rejected() {
+        ResponseReader.builder().select("GetQuoteResponse//Price");
+    }
+
+    @Test
+    public void soap11Fault_raised() {
+        try {
+            ResponseReader.builder().select("GetQuoteResponse/Quote").build().read(SOAP_11_FAULT);
+            fail("SoapFaultException expected");
+        } catch (SoapFaultException ex) {
+            assertEquals(new QName("http://schemas.xmlsoap.org/soap/envelope/", "Server"), ex.getFaultCode());
+            assertEquals("Quote service unavailable", ex.getFaultString());
+            assertEquals("urn:quotes", ex.getFaultActor());
+            assertNull(ex.getErrorCode());
+        }
+    }
+
+    @Test
+    public void soap12Fault_raised() {
+        try {
+            ResponseReader.builder().build().read(SOAP_12_FAULT);
+            fail("SoapFaultException expected");
+        } catch (SoapFaultException ex) {
+            assertEquals(new QName("http://www.w3.org/2003/05/soap-envelope", "Sender"), ex.getFaultCode());
+            assertEquals("Unknown symbol", ex.getFaultString());
+            assertEquals("urn:quotes", ex.getFaultActor());
+        }
+    }
+
+    @Test
+    public void faultOutsideBody_notRaised() {
+        String response = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+                + "<soapenv:Body><Result><soapenv:Fault/></Result></soapenv:Body></soapenv:Envelope>";
+        assertEquals(1, ResponseReader.builder().select("Result").build().read(response).getValues("Result").size());
+    }
+
+    @Test(expected = SoapClientException.class)
+    public void malformedResponse_rejected() {
+        ResponseReader.builder().build().read("<soapenv:Envelope");
+    }
+
+}
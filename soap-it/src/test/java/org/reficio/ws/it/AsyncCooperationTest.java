@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Test;
+import org.littleshoot.proxy.DefaultHttpProxyServer;
+import org.littleshoot.proxy.HttpProxyServer;
+import org.reficio.ws.SoapContext;
+import org.reficio.ws.builder.SoapBuilder;
+import org.reficio.ws.builder.SoapOperation;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.client.TransmissionException;
+import org.reficio.ws.client.core.Security;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.common.XmlUtils;
+import org.reficio.ws.it.util.TestUtils;
+import org.reficio.ws.server.core.SoapServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test SoapServer<->SoapClient communication using the asynchronous, non-blocking transport
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class AsyncCooperationTest extends AbstractCooperationTest {
+
+    private final static int TEST_SERVICE_ID = 2;
+    private final static int REQUESTS = 200;
+    private final static int PROXY_PORT = 9797;
+    private final static int CLOSED_PORT = 9595;
+
+    private SoapBuilder builder;
+    private SoapOperation operation;
+    private SoapClient client;
+
+    @After
+    public void destroyServer() {
+        if (client != null) {
+            client.disconnect();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void postAsync_http() throws Exception {
+        String contextPath = startServer(SoapServer.builder().httpPort(HOST_PORT));
+        client = SoapClient.builder()
+                .endpointUri("http://" + HOST_URL + ":" + HOST_PORT + contextPath)
+                .maxConnectionsTotal(8)
+                .maxConnectionsPerRoute(8)
+                .build();
+        verifyAsyncBehavior(client);
+    }
+
+    @Test(timeout = 60000)
+    public void postAsync_https() throws Exception {
+        String contextPath = startServer(SoapServer.builder()
+                .keyStoreUrl(getKeyStoreUrlOne())
+                .keyStorePassword(getKeyStorePassword())
+                .httpsPort(HOST_PORT));
+        Security security = Security.builder()
+                .trustStoreUrl(getKeyStoreUrlOne())
+                .trustStorePassword(getKeyStorePassword())
+                .build();
+        client = SoapClient.builder()
+                .endpointUri("https://" + HOST_URL + ":" + HOST_PORT + contextPath)
+                .endpointSecurity(security)
+                .build();
+        verifyAsyncBehavior(client);
+    }
+
+    @Test(timeout = 60000)
+    public void postAsync_httpProxy() throws Exception {
+        String contextPath = startServer(SoapServer.builder().httpPort(HOST_PORT));
+        HttpProxyServer proxyServer = new DefaultHttpProxyServer(PROXY_PORT);
+        proxyServer.start(true, true);
+        try {
+            client = SoapClient.builder()
+                    .endpointUri("http://" + HOST_URL + ":" + HOST_PORT + contextPath)
+                    .proxyUri("http://127.0.0.1:" + PROXY_PORT)
+                    .build();
+            verifyAsyncBehavior(client);
+        } finally {
+            proxyServer.stop();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void postAsync_connectionRefused_failure() throws Exception {
+        client = SoapClient.builder()
+                .endpointUri("http://" + HOST_URL + ":" + CLOSED_PORT + "/service")
+                .build();
+        ListenableFuture<String> result = client.postAsync("<xml/>");
+        try {
+            result.get();
+            fail("Transmission should have failed");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof TransmissionException);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void postAsync_cancelled() throws Exception {
+        String contextPath = startServer(SoapServer.builder().httpPort(HOST_PORT));
+        client = SoapClient.builder()
+                .endpointUri("http://" + HOST_URL + ":" + HOST_PORT + contextPath)
+                .build();
+        ListenableFuture<String> result = client.postAsync(builder.buildInputMessage(operation));
+        if (result.cancel(true)) {
+            assertTrue(result.isCancelled());
+        }
+        // the transport has to remain usable after an exchange has been cancelled
+        verifyAsyncBehavior(client);
+    }
+
+    private String startServer(SoapServer.Builder serverBuilder) throws Exception {
+        server = serverBuilder.build();
+        server.start();
+        Wsdl parser = TestUtils.createParserForService(TEST_SERVICE_ID);
+        TestUtils.registerService(server, TEST_SERVICE_ID, parser);
+        builder = parser.binding().name(parser.getBindings().get(0)).find();
+        operation = builder.getOperations().get(0);
+        return TestUtils.formatContextPath(TEST_SERVICE_ID, builder.getBindingName());
+    }
+
+    private void verifyAsyncBehavior(SoapClient client) throws Exception {
+        String request = builder.buildInputMessage(operation);
+        String expectedResponse = builder.buildOutputMessage(operation, SoapContext.builder().exampleContent(true).build());
+
+        List<ListenableFuture<String>> results = new ArrayList<ListenableFuture<String>>();
+        for (int i = 0; i < REQUESTS; i++) {
+            results.add(client.postAsync(request));
+        }
+        for (ListenableFuture<String> result : results) {
+            String response = result.get(30, TimeUnit.SECONDS);
+            assertTrue(XmlUtils.isIdenticalNormalizedWithoutValues(expectedResponse, response));
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.SoapContext;
+import org.reficio.ws.builder.SoapBuilder;
+import org.reficio.ws.builder.SoapOperation;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.client.SoapClientException;
+import org.reficio.ws.client.TransmissionException;
+import org.reficio.ws.client.core.BatchCallback;
+import org.reficio.ws.client.core.BatchResult;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.client.core.SoapRequest;
+import org.reficio.ws.common.XmlUtils;
+import org.reficio.ws.it.util.TestUtils;
+import org.reficio.ws.server.core.SoapServer;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test SoapServer<->SoapClient communication posting batches of requests with bounded concurrency
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class BatchCooperationTest extends AbstractCooperationTest {
+
+    private final static int TEST_SERVICE_ID = 2;
+    private final static int MAX_IN_FLIGHT = 4;
+    private final static int REQUESTS = 200;
+    private final static String MALFORMED_REQUEST = "<malformed";
+
+    private SoapClient client;
+    private String request;
+    private String expectedResponse;
+
+    @Before
+    public void initializeServer() throws Exception {
+        server = SoapServer.builder()
+                .httpPort(HOST_PORT)
+                .build();
+        server.start();
+
+        Wsdl parser = TestUtils.createParserForService(TEST_SERVICE_ID);
+        TestUtils.registerService(server, TEST_SERVICE_ID, parser);
+        SoapBuilder builder = parser.binding().name(parser.getBindings().get(0)).find();
+        SoapOperation operation = builder.getOperations().get(0);
+        request = builder.buildInputMessage(operation);
+        expectedResponse = builder.buildOutputMessage(operation, SoapContext.builder().exampleContent(true).build());
+
+        String contextPath = TestUtils.formatContextPath(TEST_SERVICE_ID, builder.getBindingName());
+        client = SoapClient.builder()
+                .endpointUri("http://" + HOST_URL + ":" + HOST_PORT + contextPath)
+                .connectionPooling(true)
+                .maxConnectionsPerRoute(MAX_IN_FLIGHT)
+                .build();
+    }
+
+    @After
+    public void destroyServer() {
+        client.disconnect();
+        server.stop();
+    }
+
+    @Test(timeout = 60000)
+    public void postAll_resultsInOrder() {
+        List<BatchResult> results = client.postAll(new LazyRequests(REQUESTS, false), MAX_IN_FLIGHT);
+        assertEquals(REQUESTS, results.size());
+        for (int i = 0; i < REQUESTS; i++) {
+            BatchResult result = results.get(i);
+            assertEquals(i, result.getIndex());
+            assertTrue(result.isSuccessful());
+            assertTrue(XmlUtils.isIdenticalNormalizedWithoutValues(expectedResponse, result.getResponse()));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void postAll_errorsInOrder() {
+        List<BatchResult> results = client.postAll(new LazyRequests(REQUESTS, true), MAX_IN_FLIGHT);
+        assertEquals(REQUESTS, results.size());
+        for (int i = 0; i < REQUESTS; i++) {
+            BatchResult result = results.get(i);
+            if (i % 2 == 0) {
+                assertTrue(result.isSuccessful());
+            } else {
+                assertFalse(result.isSuccessful());
+                assertTrue(result.getError() instanceof TransmissionException);
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void postAll_streamedWithBoundedRequestsInMemory() {
+        final LazyRequests requests = new LazyRequests(REQUESTS, false);
+        final AtomicInteger completed = new AtomicInteger();
+        client.postAll(requests, MAX_IN_FLIGHT, new BatchCallback() {
+            @Override
+            public void completed(BatchResult result) {
+                assertTrue(result.isSuccessful());
+                // the requests pulled from the iterable, but not completed yet, are the ones held in memory
+                assertTrue(requests.pulled.get() - completed.get() <= MAX_IN_FLIGHT);
+                completed.incrementAndGet();
+            }
+        });
+        assertEquals(REQUESTS, completed.get());
+        assertEquals(REQUESTS, requests.pulled.get());
+    }
+
+    @Test(expected = SoapClientException.class)
+    public void postAll_concurrentWithoutPooling() {
+        SoapClient unpooled = SoapClient.builder().endpointUri("http://" + HOST_URL + ":" + HOST_PORT).build();
+        unpooled.postAll(Collections.<SoapRequest>emptyList(), MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Creates the requests only when they are pulled, the way a lazy source of requests does
+     */
+    private class LazyRequests implements Iterable<SoapRequest> {
+
+        private final int count;
+        private final boolean malformedOdd;
+        private final AtomicInteger pulled = new AtomicInteger();
+
+        private LazyRequests(int count, boolean malformedOdd) {
+            this.count = count;
+            this.malformedOdd = malformedOdd;
+        }
+
+        @Override
+        public Iterator<SoapRequest> iterator() {
+            return new Iterator<SoapRequest>() {
+                @Override
+                public boolean hasNext() {
+                    return pulled.get() < count;
+                }
+
+                @Override
+                public SoapRequest next() {
+                    int index = pulled.getAndIncrement();
+                    String envelope = malformedOdd && index % 2 == 1 ? MALFORMED_REQUEST : request;
+                    return SoapRequest.builder().envelope(envelope).build();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.client.core.Compression;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.client.core.SoapRequest;
+import org.reficio.ws.it.util.StubServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+/**
+ * Test the compression of the SoapClient requests and the decoding of compressed responses.
+ * An echo server is used - the SoapServer does not accept compressed requests.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class CompressionTest {
+
+
+    private StubServer server;
+    private EchoHandler handler;
+    private String endpoint;
+    private SoapClient client;
+
+    @Before
+    public void initializeServer() throws IOException {
+        handler = new EchoHandler();
+        server = StubServer.start("/echo", handler);
+        endpoint = server.getEndpoint();
+    }
+
+    @After
+    public void destroyServer() {
+        if (client != null) {
+            client.disconnect();
+        }
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void post_gzip() {
+        client = SoapClient.builder().endpointUri(endpoint).compression(Compression.GZIP).build();
+        String request = envelope(5000);
+        assertEquals(request, client.post(request));
+        assertEquals("gzip", handler.requestEncoding);
+        assertEquals("gzip", handler.responseEncoding);
+        assertEquals(request, handler.request);
+    }
+
+    @Test(timeout = 30000)
+    public void post_deflate() {
+        client = SoapClient.builder().endpointUri(endpoint).compression(Compression.DEFLATE).build();
+        String request = envelope(5000);
+        assertEquals(request, client.post(request));
+        assertEquals("deflate", handler.requestEncoding);
+        assertEquals("gzip", handler.responseEncoding);
+        assertEquals(request, handler.request);
+    }
+
+    @Test(timeout = 30000)
+    public void post_belowThreshold() {
+        client = SoapClient.builder().endpointUri(endpoint).compression(Compression.GZIP)
+                .compressionThresholdInBytes(10000).build();
+        String request = envelope(100);
+        assertEquals(request, client.post(request));
+        assertNull(handler.requestEncoding);
+        assertEquals("gzip", handler.responseEncoding);
+    }
+
+    @Test(timeout = 30000)
+    public void post_compressionDisabled() {
+        client = SoapClient.builder().endpointUri(endpoint).build();
+        String request = envelope(5000);
+        assertEquals(request, client.post(request));
+        assertNull(handler.requestEncoding);
+        assertNull(handler.responseEncoding);
+    }
+
+    @Test(timeout = 30000)
+    public void post_streamedRequest() throws Exception {
+        client = SoapClient.builder().endpointUri(endpoint).compression(Compression.GZIP).build();
+        String request = envelope(10);
+        InputStream envelope = new ByteArrayInputStream(request.getBytes("UTF-8"));
+        InputStream response = client.postForStream(SoapRequest.builder().envelope(envelope).build());
+        assertEquals(request, IOUtils.toString(response, "UTF-8"));
+        response.close();
+        assertEquals("gzip", handler.requestEncoding);
+    }
+
+    @Test(timeout = 30000)
+    public void postAsync_gzip() throws Exception {
+        client = SoapClient.builder().endpointUri(endpoint).compression(Compression.GZIP).build();
+        String request = envelope(5000);
+        assertEquals(request, client.postAsync(request).get());
+        assertEquals("gzip", handler.requestEncoding);
+        assertEquals("gzip", handler.responseEncoding);
+        assertEquals(request, handler.request);
+    }
+
+    private static String envelope(int items) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < items; i++) {
+            body.append("<item>").append(i).append("</item>");
+        }
+        return "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"><soapenv:Body>"
+                + body + "</soapenv:Body></soapenv:Envelope>";
+    }
+
+    /**
+     * Decodes the request and sends it back - gzipped, if the client accepts it
+     */
+    private static class EchoHandler implements HttpHandler {
+
+        private volatile String requestEncoding;
+        private volatile String responseEncoding;
+        private volatile String request;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(requestEncoding)) {
+                in = new GZIPInputStream(in);
+            } else if ("deflate".equals(requestEncoding)) {
+                in = new InflaterInputStream(in);
+            }
+            request = IOUtils.toString(in, "UTF-8");
+
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            responseEncoding = acceptEncoding != null && acceptEncoding.contains("gzip") ? "gzip" : null;
+            if (responseEncoding != null) {
+                exchange.getResponseHeaders().add("Content-Encoding", responseEncoding);
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            if (responseEncoding != null) {
+                out = new GZIPOutputStream(out);
+            }
+            out.write(request.getBytes("UTF-8"));
+            out.close();
+            exchange.close();
+        }
+    }
+
+}
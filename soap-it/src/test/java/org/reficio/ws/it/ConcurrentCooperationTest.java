@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.SoapContext;
+import org.reficio.ws.builder.SoapBuilder;
+import org.reficio.ws.builder.SoapOperation;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.common.XmlUtils;
+import org.reficio.ws.it.util.TestUtils;
+import org.reficio.ws.server.core.SoapServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test SoapServer<->SoapClient communication with one pooled SoapClient shared by many threads
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class ConcurrentCooperationTest extends AbstractCooperationTest {
+
+    private final static int TEST_SERVICE_ID = 2;
+    private final static int THREADS = 64;
+    private final static int REQUESTS_PER_THREAD = 20;
+
+    private SoapBuilder builder;
+    private SoapOperation operation;
+    private String endpointUrl;
+
+    @Before
+    public void initializeServer() throws Exception {
+        server = SoapServer.builder()
+                .httpPort(HOST_PORT)
+                .coreThreads(THREADS)
+                .maxThreads(THREADS)
+                .build();
+        server.start();
+
+        Wsdl parser = TestUtils.createParserForService(TEST_SERVICE_ID);
+        TestUtils.registerService(server, TEST_SERVICE_ID, parser);
+        builder = parser.binding().name(parser.getBindings().get(0)).find();
+        operation = builder.getOperations().get(0);
+        endpointUrl = "http://" + HOST_URL + ":" + HOST_PORT + TestUtils.formatContextPath(TEST_SERVICE_ID, builder.getBindingName());
+    }
+
+    @After
+    public void destroyServer() {
+        server.stop();
+    }
+
+    @Test(timeout = 60000)
+    public void sharedClient_poolLargerThanThreadCount() throws Exception {
+        SoapClient client = SoapClient.builder()
+                .endpointUri(endpointUrl)
+                .connectionPooling(true)
+                .maxConnectionsTotal(THREADS)
+                .maxConnectionsPerRoute(THREADS)
+                .build();
+        try {
+            verifyConcurrentBehavior(client);
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void sharedClient_poolSmallerThanThreadCount() throws Exception {
+        SoapClient client = SoapClient.builder()
+                .endpointUri(endpointUrl)
+                .connectionPooling(true)
+                .maxConnectionsTotal(4)
+                .maxConnectionsPerRoute(4)
+                .connectionLeaseTimeoutInMillis(30000)
+                .build();
+        try {
+            verifyConcurrentBehavior(client);
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    private void verifyConcurrentBehavior(final SoapClient client) throws Exception {
+        final String request = builder.buildInputMessage(operation);
+        final String expectedResponse = builder.buildOutputMessage(operation, SoapContext.builder().exampleContent(true).build());
+        final CountDownLatch startSignal = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    startSignal.await();
+                    int identicalResponses = 0;
+                    for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+                        String response = client.post(request);
+                        if (XmlUtils.isIdenticalNormalizedWithoutValues(expectedResponse, response)) {
+                            identicalResponses++;
+                        }
+                    }
+                    return identicalResponses;
+                }
+            }));
+        }
+        startSignal.countDown();
+        executor.shutdown();
+        assertTrue("Requests did not complete in time", executor.awaitTermination(50, TimeUnit.SECONDS));
+
+        for (Future<Integer> result : results) {
+            assertEquals(REQUESTS_PER_THREAD, result.get().intValue());
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.builder.SoapBuilder;
+import org.reficio.ws.builder.SoapOperation;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.it.util.TestUtils;
+import org.reficio.ws.server.core.SoapServer;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Test the keep-alive, eviction and warm-up of the pooled connections in SoapServer<->SoapClient communication
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class ConnectionEvictionTest extends AbstractCooperationTest {
+
+    private final static int TEST_SERVICE_ID = 2;
+
+    private String endpointUrl;
+    private String soapAction;
+    private String request;
+
+    @Before
+    public void initializeServer() throws Exception {
+        server = SoapServer.builder()
+                .httpPort(HOST_PORT)
+                .build();
+        server.start();
+
+        Wsdl parser = TestUtils.createParserForService(TEST_SERVICE_ID);
+        TestUtils.registerService(server, TEST_SERVICE_ID, parser);
+        SoapBuilder builder = parser.binding().name(parser.getBindings().get(0)).find();
+        SoapOperation operation = builder.getOperations().get(0);
+        soapAction = operation.getSoapAction();
+        request = builder.buildInputMessage(operation);
+        endpointUrl = "http://" + HOST_URL + ":" + HOST_PORT + TestUtils.formatContextPath(TEST_SERVICE_ID, builder.getBindingName());
+    }
+
+    @After
+    public void destroyServer() {
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void connectionReused_withinKeepAlive() throws Exception {
+        SoapClient client = SoapClient.builder().endpointUri(endpointUrl).metricsEnabled(true)
+                .connectionPooling(true).keepAliveInMillis(5000).build();
+        try {
+            client.post(soapAction, request);
+            Thread.sleep(300);
+            client.post(soapAction, request);
+            assertEquals(1, client.getMetrics().getRoutes().get(0).getConnectionCount());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void connectionReopened_afterKeepAliveExpired() throws Exception {
+        SoapClient client = SoapClient.builder().endpointUri(endpointUrl).metricsEnabled(true)
+                .connectionPooling(true).keepAliveInMillis(100).build();
+        try {
+            client.post(soapAction, request);
+            Thread.sleep(300);
+            client.post(soapAction, request);
+            assertEquals(2, client.getMetrics().getRoutes().get(0).getConnectionCount());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void idleConnectionsEvicted() throws Exception {
+        SoapClient client = SoapClient.builder().endpointUri(endpointUrl).metricsEnabled(true)
+                .connectionPooling(true).idleConnectionTimeoutInMillis(100).connectionEvictionIntervalInMillis(50)
+                .build();
+        try {
+            client.post(soapAction, request);
+            assertEquals(1, client.getMetrics().getAvailableConnections());
+            Thread.sleep(500);
+            assertEquals(0, client.getMetrics().getAvailableConnections());
+            // the client keeps working after the eviction
+            client.post(soapAction, request);
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void connectionsWarmedUp_whenClientBuilt() {
+        SoapClient client = SoapClient.builder().endpointUri(endpointUrl).metricsEnabled(true)
+                .connectionPooling(true).maxConnectionsPerRoute(4).warmUpConnections(3).build();
+        try {
+            assertEquals(3, client.getMetrics().getAvailableConnections());
+            assertEquals(0, client.getMetrics().getLeasedConnections());
+            for (int i = 0; i < 5; i++) {
+                client.post(soapAction, request);
+            }
+            // the requests are sent over the warmed-up connections
+            assertEquals(3, client.getMetrics().getAvailableConnections());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void warmUp_limitedByMaxConnectionsPerRoute() {
+        SoapClient client = SoapClient.builder().endpointUri(endpointUrl).metricsEnabled(true)
+                .connectionPooling(true).maxConnectionsPerRoute(2).warmUpConnections(10).build();
+        try {
+            assertEquals(2, client.getMetrics().getAvailableConnections());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.client.DeadlineExceededException;
+import org.reficio.ws.client.TransmissionException;
+import org.reficio.ws.client.core.CallTiming;
+import org.reficio.ws.client.core.RetryPolicy;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.client.core.SoapRequest;
+import org.reficio.ws.it.util.StubServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test the per-request timeouts, the overall deadlines and the timing records of the calls of the SoapClient.
+ * The endpoint is served by a server which may delay the response headers and trickle the response body.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class DeadlineTest {
+
+    private final static String ACTION = "urn:lookup";
+    private final static String REQUEST = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body/></soapenv:Envelope>";
+
+    private StubServer server;
+    private SlowHandler handler;
+    private String endpoint;
+
+    @Before
+    public void initializeServer() throws IOException {
+        handler = new SlowHandler();
+        server = StubServer.start("/slow", handler);
+        endpoint = server.getEndpoint();
+    }
+
+    @After
+    public void destroyServer() {
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void requestReadTimeout_overridesClientTimeout() {
+        SoapClient client = SoapClient.builder().endpointUri(endpoint).readTimeoutInMillis(5000).build();
+        handler.headerDelayInMillis = 1000;
+        long started = System.currentTimeMillis();
+        try {
+            client.post(request().readTimeoutInMillis(200).build());
+            fail("TransmissionException expected");
+        } catch (DeadlineExceededException ex) {
+            fail("TransmissionException expected");
+        } catch (TransmissionException ex) {
+            assertTrue(System.currentTimeMillis() - started < 900);
+        }
+        handler.headerDelayInMillis = 0;
+        assertEquals(REQUEST, client.post(request().build()));
+        client.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void deadlineExceeded_slowResponseAborted() {
+        SoapClient client = SoapClient.builder().endpointUri(endpoint).deadlineInMillis(300).build();
+        handler.headerDelayInMillis = 2000;
+        long started = System.currentTimeMillis();
+        try {
+            client.post(ACTION, REQUEST);
+            fail("DeadlineExceededException expected");
+        } catch (DeadlineExceededException ex) {
+            assertTrue(System.currentTimeMillis() - started < 1500);
+        }
+        client.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void deadlineExceeded_trickledBodyAborted() {
+        // the read timeout is never reached, as a byte arrives every 100 ms
+        SoapClient client = SoapClient.builder().endpointUri(endpoint).readTimeoutInMillis(500).build();
+        handler.trickleDelayInMillis = 100;
+        long started = System.currentTimeMillis();
+        try {
+            client.post(request().deadlineInMillis(1000).build());
+            fail("DeadlineExceededException expected");
+        } catch (DeadlineExceededException ex) {
+            assertTrue(System.currentTimeMillis() - started < 2000);
+        }
+        client.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void deadlineExceeded_retriesStopped() {
+        SoapClient client = SoapClient.builder().endpointUri(endpoint)
+                .retryPolicy(RetryPolicy.builder().maxAttempts(5).initialBackoffInMillis(500).jitter(0)
+                        .idempotentSoapAction(ACTION).build())
+                .deadlineInMillis(300)
+                .build();
+        handler.statusCode = 503;
+        try {
+            client.post(ACTION, REQUEST);
+            fail("DeadlineExceededException expected");
+        } catch (DeadlineExceededException ex) {
+            assertEquals(1, handler.requests.get());
+        }
+        client.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void timing_phasesRecorded() throws IOException {
+        SoapClient client = SoapClient.builder().endpointUri(endpoint).connectionPooling(true).build();
+        handler.headerDelayInMillis = 200;
+        CallTiming timing = new CallTiming();
+        assertEquals(REQUEST, client.post(request().timing(timing).build()));
+        assertEquals(1, timing.getAttempts());
+        assertFalse(timing.isConnectionReused());
+        assertTrue(timing.getConnectInMillis() > 0);
+        assertEquals(0.0, timing.getTlsHandshakeInMillis());
+        assertTrue(timing.getTimeToFirstByteInMillis() >= 190);
+        assertTrue(timing.getTotalInMillis() >= timing.getPoolWaitInMillis() + timing.getConnectInMillis()
+                + timing.getTimeToFirstByteInMillis() + timing.getBodyReadInMillis());
+
+        handler.headerDelayInMillis = 0;
+        handler.trickleDelayInMillis = 20;
+        InputStream response = client.postForStream(request().timing(timing).build());
+        try {
+            assertEquals(REQUEST, IOUtils.toString(response));
+        } finally {
+            response.close();
+        }
+        assertTrue(timing.isConnectionReused());
+        assertEquals(0.0, timing.getConnectInMillis());
+        assertTrue(timing.getBodyReadInMillis() >= 20 * (REQUEST.length() - 1) * 0.9);
+        client.disconnect();
+    }
+
+    private static SoapRequest.Builder request() {
+        return SoapRequest.builder().soapAction(ACTION).envelope(REQUEST);
+    }
+
+    /**
+     * Echoes the requests after the given delay, writing the response body byte by byte with the given delay
+     * in between, or responds with the given status code
+     */
+    private static class SlowHandler implements HttpHandler {
+
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile long headerDelayInMillis;
+        private volatile long trickleDelayInMillis;
+        private volatile int statusCode = 200;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            byte[] request = IOUtils.toByteArray(exchange.getRequestBody());
+            try {
+                sleep(headerDelayInMillis);
+                exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+                if (statusCode != 200) {
+                    exchange.sendResponseHeaders(statusCode, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, request.length);
+                OutputStream out = exchange.getResponseBody();
+                for (byte b : request) {
+                    out.write(b);
+                    out.flush();
+                    sleep(trickleDelayInMillis);
+                }
+                out.close();
+            } catch (IOException ex) {
+                // the client has aborted the exchange
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private static void sleep(long millis) {
+            if (millis > 0) {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+}
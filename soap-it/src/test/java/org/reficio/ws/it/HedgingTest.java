@@ -0,0 +1,204 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.client.core.HedgingPolicy;
+import org.reficio.ws.client.core.LoadBalancing;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.client.core.SoapClientMetrics;
+import org.reficio.ws.it.util.StubServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test the hedging of the requests of the SoapClient.
+ * Every endpoint is served by a separate server, which counts the requests and may delay them.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class HedgingTest {
+
+    private final static int ENDPOINTS = 2;
+    private final static String ACTION = "urn:lookup";
+    private final static String REQUEST = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body/></soapenv:Envelope>";
+
+    private final List<StubServer> servers = new ArrayList<StubServer>();
+    private final List<DelayingHandler> handlers = new ArrayList<DelayingHandler>();
+    private final List<String> endpoints = new ArrayList<String>();
+
+    @Before
+    public void initializeServers() throws IOException {
+        for (int i = 0; i < ENDPOINTS; i++) {
+            DelayingHandler handler = new DelayingHandler();
+            StubServer server = StubServer.start(StubServer.HOST_PORT + i, "/hedged", handler);
+            servers.add(server);
+            handlers.add(handler);
+            endpoints.add(server.getEndpoint());
+        }
+    }
+
+    @After
+    public void destroyServers() {
+        for (StubServer server : servers) {
+            server.stop();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void slowEndpoint_hedgeWins() {
+        SoapClient client = client(HedgingPolicy.builder().hedgeableSoapAction(ACTION).initialDelayInMillis(200));
+        handlers.get(0).delayInMillis = 5000;
+        try {
+            for (int i = 0; i < 4; i++) {
+                long started = System.currentTimeMillis();
+                assertEquals(REQUEST, client.post(ACTION, REQUEST));
+                assertTrue(System.currentTimeMillis() - started < 2000);
+            }
+            // the requests sent to the slow endpoint are hedged to the other one, which wins
+            SoapClientMetrics metrics = client.getMetrics();
+            int slowRequests = handlers.get(0).requests.get();
+            assertTrue(slowRequests > 0);
+            assertEquals(4, handlers.get(1).requests.get());
+            assertEquals(slowRequests, metrics.getHedgeCount());
+            assertEquals(slowRequests, metrics.getHedgeWinCount());
+            assertEquals(slowRequests / 4.0, metrics.getHedgeRate());
+            // the losing requests have been aborted
+            assertEquals(0, metrics.getLeasedConnections());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void fastResponses_notHedged() {
+        SoapClient client = client(HedgingPolicy.builder().hedgeableSoapAction(ACTION).initialDelayInMillis(1000));
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(REQUEST, client.post(ACTION, REQUEST));
+            }
+            assertEquals(0, client.getMetrics().getHedgeCount());
+            assertEquals(10, handlers.get(0).requests.get() + handlers.get(1).requests.get());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void otherActions_notHedged() {
+        SoapClient client = client(HedgingPolicy.builder().hedgeableSoapAction(ACTION).initialDelayInMillis(50));
+        handlers.get(0).delayInMillis = 300;
+        handlers.get(1).delayInMillis = 300;
+        try {
+            assertEquals(REQUEST, client.post("urn:update", REQUEST));
+            assertEquals(0, client.getMetrics().getHedgeCount());
+            assertEquals(1, handlers.get(0).requests.get() + handlers.get(1).requests.get());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void hedges_limitedByBudget() {
+        SoapClient client = client(HedgingPolicy.builder().hedgeableSoapAction(ACTION).initialDelayInMillis(50)
+                .budgetRatio(0.0).budgetBurst(1));
+        handlers.get(0).delayInMillis = 300;
+        handlers.get(1).delayInMillis = 300;
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(REQUEST, client.post(ACTION, REQUEST));
+            }
+            assertEquals(1, client.getMetrics().getHedgeCount());
+            assertEquals(2, client.getMetrics().getHedgeBudgetExhaustedCount());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void delay_derivedFromObservedLatencies() {
+        SoapClient client = client(HedgingPolicy.builder().hedgeableSoapAction(ACTION).initialDelayInMillis(10000)
+                .minSamples(10).delayPercentile(90.0));
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(REQUEST, client.post(ACTION, REQUEST));
+            }
+            assertEquals(0, client.getMetrics().getHedgeCount());
+            // the fast responses observed so far bring the hedge delay far below the initial one
+            handlers.get(0).delayInMillis = 1000;
+            handlers.get(1).delayInMillis = 1000;
+            assertEquals(REQUEST, client.post(ACTION, REQUEST));
+            assertEquals(1, client.getMetrics().getHedgeCount());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    private SoapClient client(HedgingPolicy.Builder policy) {
+        return SoapClient.builder()
+                .endpointUris(endpoints.toArray(new String[endpoints.size()]))
+                .loadBalancing(LoadBalancing.ROUND_ROBIN)
+                .hedgingPolicy(policy.build())
+                .metricsEnabled(true)
+                .build();
+    }
+
+    /**
+     * Counts the requests and echoes them after the given delay
+     */
+    private static class DelayingHandler implements HttpHandler {
+
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile long delayInMillis;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            byte[] request = IOUtils.toByteArray(exchange.getRequestBody());
+            if (delayInMillis > 0) {
+                try {
+                    Thread.sleep(delayInMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, request.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(request);
+            out.close();
+            exchange.close();
+        }
+    }
+
+}
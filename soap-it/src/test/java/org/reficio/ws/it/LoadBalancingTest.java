@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.client.TransmissionException;
+import org.reficio.ws.client.core.CircuitBreaker;
+import org.reficio.ws.client.core.CircuitBreakerPolicy;
+import org.reficio.ws.client.core.LoadBalancing;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.it.util.StubServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test the load balancing of the SoapClient among several endpoints.
+ * Every endpoint is served by a separate server, which counts the requests and may delay or refuse them.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class LoadBalancingTest {
+
+    private final static int ENDPOINTS = 3;
+    private final static String ACTION = "urn:lookup";
+    private final static String REQUEST = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body/></soapenv:Envelope>";
+
+    private final List<StubServer> servers = new ArrayList<StubServer>();
+    private final List<CountingHandler> handlers = new ArrayList<CountingHandler>();
+    private final List<String> endpoints = new ArrayList<String>();
+
+    @Before
+    public void initializeServers() throws IOException {
+        for (int i = 0; i < ENDPOINTS; i++) {
+            CountingHandler handler = new CountingHandler();
+            StubServer server = StubServer.start(StubServer.HOST_PORT + i, "/balanced", handler);
+            servers.add(server);
+            handlers.add(handler);
+            endpoints.add(server.getEndpoint());
+        }
+    }
+
+    @After
+    public void destroyServers() {
+        for (StubServer server : servers) {
+            server.stop();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void roundRobin_requestsSpreadEvenly() {
+        SoapClient client = client(LoadBalancing.ROUND_ROBIN).build();
+        for (int i = 0; i < 30; i++) {
+            assertEquals(REQUEST, client.post(ACTION, REQUEST));
+        }
+        for (CountingHandler handler : handlers) {
+            assertEquals(10, handler.requests.get());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void leastOutstanding_slowEndpointAvoided() throws Exception {
+        SoapClient client = client(LoadBalancing.LEAST_OUTSTANDING)
+                .connectionPooling(true)
+                .maxConnectionsPerRoute(10)
+                .build();
+        handlers.get(0).delayInMillis = 500;
+        postConcurrently(client, 4, 40);
+        // the slow endpoint holds a request for the whole time, so the others serve nearly all the remaining ones
+        assertTrue(handlers.get(0).requests.get() < 10);
+        assertEquals(40, totalRequests());
+    }
+
+    @Test(timeout = 30000)
+    public void latencyWeighted_fasterEndpointPreferred() {
+        SoapClient client = client(LoadBalancing.LATENCY_WEIGHTED).build();
+        handlers.get(0).delayInMillis = 100;
+        for (int i = 0; i < 60; i++) {
+            assertEquals(REQUEST, client.post(ACTION, REQUEST));
+        }
+        assertTrue(handlers.get(0).requests.get() < handlers.get(1).requests.get());
+        assertTrue(handlers.get(0).requests.get() < handlers.get(2).requests.get());
+    }
+
+    @Test(timeout = 30000)
+    public void failingEndpoint_ejected() {
+        CircuitBreakerPolicy policy = CircuitBreakerPolicy.builder().failureThreshold(1).openDurationInMillis(60000).build();
+        SoapClient client = client(LoadBalancing.ROUND_ROBIN).circuitBreaker(policy).build();
+        handlers.get(0).statusCode = 503;
+        int failures = 0;
+        for (int i = 0; i < 30; i++) {
+            try {
+                client.post(ACTION, REQUEST);
+            } catch (TransmissionException ex) {
+                failures++;
+            }
+        }
+        assertEquals(1, failures);
+        assertEquals(1, handlers.get(0).requests.get());
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreakers().get(0).getState());
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreakers().get(1).getState());
+    }
+
+    @Test(timeout = 30000)
+    public void stoppedEndpoint_requestsFailOver() {
+        SoapClient client = client(LoadBalancing.ROUND_ROBIN).build();
+        servers.get(2).stop();
+        for (int i = 0; i < 30; i++) {
+            assertEquals(REQUEST, client.post(ACTION, REQUEST));
+        }
+        assertEquals(30, totalRequests());
+        assertEquals(CircuitBreaker.State.OPEN, client.getCircuitBreakers().get(2).getState());
+    }
+
+    @Test(timeout = 30000)
+    public void singleEndpoint_notEjectedByDefault() {
+        SoapClient client = SoapClient.builder().endpointUri(endpoints.get(0)).build();
+        assertTrue(client.getCircuitBreakers().isEmpty());
+    }
+
+    @Test
+    public void endpointsWithDifferentSchemes_rejected() {
+        try {
+            SoapClient.builder().endpointUris("http://localhost:9696/", "https://localhost:9697/");
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private SoapClient.Builder client(LoadBalancing loadBalancing) {
+        return SoapClient.builder()
+                .endpointUris(endpoints.toArray(new String[endpoints.size()]))
+                .loadBalancing(loadBalancing);
+    }
+
+    private int totalRequests() {
+        int total = 0;
+        for (CountingHandler handler : handlers) {
+            total += handler.requests.get();
+        }
+        return total;
+    }
+
+    private static void postConcurrently(final SoapClient client, int threads, int requests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> responses = new ArrayList<Future<String>>();
+            for (int i = 0; i < requests; i++) {
+                responses.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return client.post(ACTION, REQUEST);
+                    }
+                }));
+            }
+            for (Future<String> response : responses) {
+                assertEquals(REQUEST, response.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Counts the requests and echoes them, after the given delay or with the given status code
+     */
+    private static class CountingHandler implements HttpHandler {
+
+        private final AtomicInteger requests = new AtomicInteger();
+        private volatile long delayInMillis;
+        private volatile int statusCode = 200;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            byte[] request = IOUtils.toByteArray(exchange.getRequestBody());
+            if (delayInMillis > 0) {
+                try {
+                    Thread.sleep(delayInMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            if (statusCode != 200) {
+                exchange.sendResponseHeaders(statusCode, -1);
+            } else {
+                exchange.sendResponseHeaders(200, request.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(request);
+                out.close();
+            }
+            exchange.close();
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.builder.SoapBuilder;
+import org.reficio.ws.builder.SoapOperation;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.client.TransmissionException;
+import org.reficio.ws.client.core.OperationMetrics;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.client.core.SoapClientMetrics;
+import org.reficio.ws.it.util.TestUtils;
+import org.reficio.ws.server.core.SoapServer;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test the metrics collected by the SoapClient in SoapServer<->SoapClient communication
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class MetricsCooperationTest extends AbstractCooperationTest {
+
+    private final static int TEST_SERVICE_ID = 2;
+    private final static int REQUESTS = 20;
+    private final static String JMX_NAME = "metrics-test";
+
+    private String endpointUrl;
+    private String soapAction;
+    private String request;
+
+    @Before
+    public void initializeServer() throws Exception {
+        server = SoapServer.builder()
+                .httpPort(HOST_PORT)
+                .build();
+        server.start();
+
+        Wsdl parser = TestUtils.createParserForService(TEST_SERVICE_ID);
+        TestUtils.registerService(server, TEST_SERVICE_ID, parser);
+        SoapBuilder builder = parser.binding().name(parser.getBindings().get(0)).find();
+        SoapOperation operation = builder.getOperations().get(0);
+        soapAction = operation.getSoapAction();
+        request = builder.buildInputMessage(operation);
+        endpointUrl = "http://" + HOST_URL + ":" + HOST_PORT + TestUtils.formatContextPath(TEST_SERVICE_ID, builder.getBindingName());
+    }
+
+    @After
+    public void destroyServer() {
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void post_operationMetricsCollected() {
+        SoapClient client = SoapClient.builder().endpointUri(endpointUrl).metricsEnabled(true).build();
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                client.post(soapAction, request);
+            }
+            client.post(request);
+            SoapClientMetrics metrics = client.getMetrics();
+            OperationMetrics operation = metrics.getOperation(soapAction);
+            assertEquals(REQUESTS, operation.getRequestCount());
+            assertEquals(0, operation.getErrorCount());
+            assertTrue(operation.getRequestBytes() >= REQUESTS * request.length());
+            assertTrue(operation.getResponseBytes() > 0);
+            assertTrue(operation.getLatency50thPercentileInMillis() > 0);
+            assertTrue(operation.getLatency50thPercentileInMillis() <= operation.getLatency99thPercentileInMillis());
+            assertTrue(operation.getLatency99thPercentileInMillis() <= operation.getLatencyMaxInMillis());
+            assertEquals(1, metrics.getOperation(null).getRequestCount());
+            assertEquals(REQUESTS + 1, metrics.getRequestCount());
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void post_errorsCountedByStatus() {
+        SoapClient client = SoapClient.builder().endpointUri(endpointUrl).metricsEnabled(true).build();
+        try {
+            try {
+                client.post(soapAction, "<malformed");
+                fail("TransmissionException expected");
+            } catch (TransmissionException ex) {
+                SoapClientMetrics metrics = client.getMetrics();
+                assertEquals(1, metrics.getOperation(soapAction).getErrorCount());
+                assertEquals(Long.valueOf(1), metrics.getErrorCountsByStatus().get(ex.getErrorCode()));
+                assertEquals(0, metrics.getErrorCountWithoutStatus());
+            }
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void post_metricsExposedThroughJmx() throws Exception {
+        SoapClient client = SoapClient.builder().endpointUri(endpointUrl).metricsJmxName(JMX_NAME)
+                .connectionPooling(true).maxConnectionsTotal(8).build();
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.reficio.ws:type=SoapClient,name=" + ObjectName.quote(JMX_NAME));
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                client.post(soapAction, request);
+            }
+            assertEquals(Long.valueOf(REQUESTS), mbeanServer.getAttribute(name, "RequestCount"));
+            assertEquals(Integer.valueOf(8), mbeanServer.getAttribute(name, "MaxConnections"));
+            assertEquals(Integer.valueOf(0), mbeanServer.getAttribute(name, "LeasedConnections"));
+            assertEquals(Integer.valueOf(1), mbeanServer.getAttribute(name, "AvailableConnections"));
+            CompositeData[] operations = (CompositeData[]) mbeanServer.getAttribute(name, "Operations");
+            assertEquals(1, operations.length);
+            assertEquals(Long.valueOf(REQUESTS), operations[0].get("requestCount"));
+        } finally {
+            client.disconnect();
+        }
+        assertFalse(mbeanServer.isRegistered(name));
+    }
+
+    @Test
+    public void metricsDisabledByDefault() {
+        SoapClient client = SoapClient.builder().endpointUri(endpointUrl).build();
+        assertNull(client.getMetrics());
+        client.disconnect();
+    }
+
+}
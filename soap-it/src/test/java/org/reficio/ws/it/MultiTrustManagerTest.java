@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.client.ssl.MultiX509TrustManager;
+import org.reficio.ws.client.ssl.SSLUtils;
+
+import javax.net.ssl.X509TrustManager;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test the validation, the caching of the validated chains and the ordering of the delegates
+ * in the MultiX509TrustManager
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class MultiTrustManagerTest extends AbstractCooperationTest {
+
+    private final static String AUTH_TYPE = "DHE_DSS";
+    private final static int VALIDATIONS = 10;
+
+    private CountingTrustManager trustOne;
+    private CountingTrustManager trustTwo;
+    private X509Certificate[] chainOne;
+    private X509Certificate[] chainTwo;
+
+    @Before
+    public void initializeTrustManagers() throws Exception {
+        KeyStore keyStoreOne = readKeyStore(getKeyStoreUrlOne(), getKeyStorePassword(), "JKS");
+        KeyStore keyStoreTwo = readKeyStore(getKeyStoreUrlTwo(), getKeyStorePassword(), "JKS");
+        trustOne = new CountingTrustManager(SSLUtils.getTrustManager(keyStoreOne));
+        trustTwo = new CountingTrustManager(SSLUtils.getTrustManager(keyStoreTwo));
+        chainOne = getChain(keyStoreOne);
+        chainTwo = getChain(keyStoreTwo);
+    }
+
+    @Test
+    public void chainTrustedByAnyDelegate() throws Exception {
+        MultiX509TrustManager manager = new MultiX509TrustManager(Arrays.<X509TrustManager>asList(trustTwo, trustOne));
+        manager.checkServerTrusted(chainOne, AUTH_TYPE);
+        manager.checkServerTrusted(chainTwo, AUTH_TYPE);
+        manager.checkClientTrusted(chainOne, AUTH_TYPE);
+    }
+
+    @Test
+    public void chainTrustedByNoDelegate_rejected() throws Exception {
+        MultiX509TrustManager manager = new MultiX509TrustManager(Arrays.<X509TrustManager>asList(trustOne, trustOne));
+        for (int i = 0; i < VALIDATIONS; i++) {
+            try {
+                manager.checkServerTrusted(chainTwo, AUTH_TYPE);
+                fail("CertificateException expected");
+            } catch (CertificateException ex) {
+                // expected, rejected chains are not cached
+            }
+        }
+        assertEquals(2 * VALIDATIONS, trustOne.getCount());
+        assertEquals(0, manager.getCacheSize());
+    }
+
+    @Test
+    public void validatedChainCached() throws Exception {
+        MultiX509TrustManager manager = new MultiX509TrustManager(Arrays.<X509TrustManager>asList(trustOne, trustTwo));
+        for (int i = 0; i < VALIDATIONS; i++) {
+            manager.checkServerTrusted(chainOne, AUTH_TYPE);
+        }
+        assertEquals(1, trustOne.getCount());
+        assertEquals(0, trustTwo.getCount());
+        assertEquals(1, manager.getCacheMissCount());
+        assertEquals(VALIDATIONS - 1, manager.getCacheHitCount());
+
+        // the auth type and the side of the connection are a part of the key
+        manager.checkServerTrusted(chainOne, "RSA");
+        manager.checkClientTrusted(chainOne, AUTH_TYPE);
+        assertEquals(3, trustOne.getCount());
+        assertEquals(3, manager.getCacheSize());
+
+        manager.invalidateCache();
+        manager.checkServerTrusted(chainOne, AUTH_TYPE);
+        assertEquals(4, trustOne.getCount());
+    }
+
+    @Test
+    public void validatedChainExpiresAfterTtl() throws Exception {
+        MultiX509TrustManager manager = new MultiX509TrustManager(Arrays.<X509TrustManager>asList(trustOne), 16, 100);
+        manager.checkServerTrusted(chainOne, AUTH_TYPE);
+        manager.checkServerTrusted(chainOne, AUTH_TYPE);
+        assertEquals(1, trustOne.getCount());
+        Thread.sleep(200);
+        manager.checkServerTrusted(chainOne, AUTH_TYPE);
+        assertEquals(2, trustOne.getCount());
+    }
+
+    @Test
+    public void delegatesOrderedByHits() throws Exception {
+        MultiX509TrustManager manager = new MultiX509TrustManager(Arrays.<X509TrustManager>asList(trustTwo, trustOne), 0, 0);
+        for (int i = 0; i < VALIDATIONS; i++) {
+            manager.checkServerTrusted(chainOne, AUTH_TYPE);
+        }
+        // the first validation falls back to the second delegate, the following ones try it first
+        assertEquals(1, trustTwo.getCount());
+        assertEquals(VALIDATIONS, trustOne.getCount());
+    }
+
+    private static X509Certificate[] getChain(KeyStore keyStore) throws Exception {
+        String alias = keyStore.aliases().nextElement();
+        return Arrays.asList(keyStore.getCertificateChain(alias)).toArray(new X509Certificate[]{});
+    }
+
+    private static class CountingTrustManager implements X509TrustManager {
+
+        private final X509TrustManager delegate;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private CountingTrustManager(X509TrustManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            count.incrementAndGet();
+            delegate.checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+            count.incrementAndGet();
+            delegate.checkServerTrusted(chain, authType);
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return delegate.getAcceptedIssuers();
+        }
+
+        private int getCount() {
+            return count.get();
+        }
+    }
+
+}
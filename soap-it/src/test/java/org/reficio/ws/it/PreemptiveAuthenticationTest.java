@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.client.core.Security;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.it.util.StubServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Test the preemptive authentication of the SoapClient.
+ * An authenticating server is used, which counts the requests and challenges the ones without valid credentials.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class PreemptiveAuthenticationTest {
+
+    private final static String USER = "john";
+    private final static String PASSWORD = "changeit";
+    private final static int CALLS = 5;
+    private final static String ACTION = "urn:lookup";
+    private final static String REQUEST = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body/></soapenv:Envelope>";
+
+    private StubServer server;
+    private AuthenticatingHandler handler;
+    private String endpoint;
+
+    @Before
+    public void initializeServer() throws IOException {
+        handler = new AuthenticatingHandler();
+        server = StubServer.start("/authenticated", handler);
+        endpoint = server.getEndpoint();
+    }
+
+    @After
+    public void destroyServer() {
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void basic_challengedOnEveryCall() {
+        handler.digest = false;
+        SoapClient client = client(Security.builder().authBasic(USER, PASSWORD).build(), false);
+        post(client, CALLS);
+        assertEquals(2 * CALLS, handler.requests.get());
+    }
+
+    @Test(timeout = 30000)
+    public void basicPreemptive_neverChallenged() {
+        handler.digest = false;
+        SoapClient client = client(Security.builder().authBasic(USER, PASSWORD).build(), true);
+        post(client, CALLS);
+        assertEquals(CALLS, handler.requests.get());
+        assertEquals(0, handler.challenges.get());
+    }
+
+    @Test(timeout = 30000)
+    public void digest_challengedOnEveryCall() {
+        SoapClient client = client(Security.builder().authDigest(USER, PASSWORD).build(), false);
+        post(client, CALLS);
+        assertEquals(2 * CALLS, handler.requests.get());
+    }
+
+    @Test(timeout = 30000)
+    public void digestPreemptive_challengeReused() {
+        SoapClient client = client(Security.builder().authDigest(USER, PASSWORD).build(), true);
+        post(client, CALLS);
+        assertEquals(CALLS + 1, handler.requests.get());
+        assertEquals(1, handler.challenges.get());
+        assertEquals(CALLS, handler.nonceCounts.size());
+    }
+
+    @Test(timeout = 30000)
+    public void digestPreemptive_staleNonceChallengedAgain() {
+        SoapClient client = client(Security.builder().authDigest(USER, PASSWORD).build(), true);
+        post(client, CALLS);
+        handler.expireNonces();
+        post(client, CALLS);
+        assertEquals(2 * CALLS + 2, handler.requests.get());
+        assertEquals(2, handler.challenges.get());
+    }
+
+    @Test(timeout = 30000)
+    public void digestPreemptive_concurrentCallsCountedSeparately() throws Exception {
+        final SoapClient client = SoapClient.builder()
+                .endpointUri(endpoint)
+                .endpointSecurity(Security.builder().authDigest(USER, PASSWORD).build())
+                .preemptiveAuthentication(true)
+                .connectionPooling(true)
+                .build();
+        post(client, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> responses = new ArrayList<Future<String>>();
+            for (int i = 0; i < 40; i++) {
+                responses.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return client.post(ACTION, REQUEST);
+                    }
+                }));
+            }
+            for (Future<String> response : responses) {
+                assertEquals(REQUEST, response.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, handler.challenges.get());
+        assertEquals(41, handler.nonceCounts.size());
+    }
+
+    private SoapClient client(Security security, boolean preemptive) {
+        return SoapClient.builder()
+                .endpointUri(endpoint)
+                .endpointSecurity(security)
+                .preemptiveAuthentication(preemptive)
+                .build();
+    }
+
+    private static void post(SoapClient client, int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertEquals(REQUEST, client.post(ACTION, REQUEST));
+        }
+    }
+
+    /**
+     * Echoes the requests with valid credentials and challenges the other ones.
+     * Digest responses are not verified, only the username, the nonce and the nonce count are.
+     */
+    private static class AuthenticatingHandler implements HttpHandler {
+
+        private final static Pattern NONCE = Pattern.compile("nonce=\"([^\"]*)\"");
+        private final static Pattern NONCE_COUNT = Pattern.compile("nc=([0-9a-fA-F]+)");
+
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger challenges = new AtomicInteger();
+        private final Set<String> nonceCounts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final Set<String> nonces = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private volatile boolean digest = true;
+
+        private void expireNonces() {
+            nonces.clear();
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            byte[] request = IOUtils.toByteArray(exchange.getRequestBody());
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            if (!isAuthenticated(authorization)) {
+                // every challenge issues a new nonce
+                String nonce = "nonce-" + challenges.incrementAndGet();
+                nonces.add(nonce);
+                String challenge = digest ?
+                        "Digest realm=\"soap\", qop=\"auth\", nonce=\"" + nonce + "\"" + (authorization != null ? ", stale=true" : "")
+                        : "Basic realm=\"soap\"";
+                exchange.getResponseHeaders().add("WWW-Authenticate", challenge);
+                exchange.sendResponseHeaders(401, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, request.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(request);
+            out.close();
+        }
+
+        private boolean isAuthenticated(String authorization) {
+            if (authorization == null) {
+                return false;
+            }
+            if (!digest) {
+                String credentials = new String(Base64.encodeBase64((USER + ":" + PASSWORD).getBytes()));
+                return authorization.equals("Basic " + credentials);
+            }
+            Matcher nonceMatcher = NONCE.matcher(authorization);
+            if (!authorization.startsWith("Digest ") || !authorization.contains("username=\"" + USER + "\"")
+                    || !nonceMatcher.find() || !nonces.contains(nonceMatcher.group(1))) {
+                return false;
+            }
+            Matcher nonceCountMatcher = NONCE_COUNT.matcher(authorization);
+            // a replayed nonce count is rejected
+            return nonceCountMatcher.find() && nonceCounts.add(nonceMatcher.group(1) + ":" + nonceCountMatcher.group(1));
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.littleshoot.proxy.DefaultHttpProxyServer;
+import org.littleshoot.proxy.HttpProxyServer;
+import org.reficio.ws.builder.SoapBuilder;
+import org.reficio.ws.builder.SoapOperation;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.client.core.RouteMetrics;
+import org.reficio.ws.client.core.Security;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.it.util.SslTunnel;
+import org.reficio.ws.it.util.TestUtils;
+import org.reficio.ws.server.core.SoapServer;
+
+import java.security.KeyStore;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test the persistence of the connections and the CONNECT tunnels of the SoapClient in all the combinations
+ * of HTTP and HTTPS proxies and endpoints
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class ProxyTunnelCooperationTest extends AbstractCooperationTest {
+
+    private final static int TEST_SERVICE_ID = 2;
+    private final static int HOST_SSL_PORT = 9697;
+    private final static int PROXY_PORT = 9797;
+    private final static int PROXY_SSL_PORT = 9898;
+    private final static int REQUESTS = 10;
+
+    private HttpProxyServer proxyServer;
+    private SslTunnel tunnel;
+    private String contextPath;
+    private String soapAction;
+    private String request;
+
+    @Before
+    public void initializeServer() throws Exception {
+        // both connectors share the thread pool, so their acceptors must leave some threads to the requests
+        server = SoapServer.builder()
+                .acceptorThreads(1)
+                .httpPort(HOST_PORT)
+                .httpsPort(HOST_SSL_PORT)
+                .keyStoreUrl(getKeyStoreUrlOne())
+                .keyStorePassword(getKeyStorePassword())
+                .build();
+        server.start();
+
+        Wsdl parser = TestUtils.createParserForService(TEST_SERVICE_ID);
+        TestUtils.registerService(server, TEST_SERVICE_ID, parser);
+        SoapBuilder builder = parser.binding().name(parser.getBindings().get(0)).find();
+        SoapOperation operation = builder.getOperations().get(0);
+        soapAction = operation.getSoapAction();
+        request = builder.buildInputMessage(operation);
+        contextPath = TestUtils.formatContextPath(TEST_SERVICE_ID, builder.getBindingName());
+
+        proxyServer = new DefaultHttpProxyServer(PROXY_PORT);
+        proxyServer.start(true, true);
+    }
+
+    @After
+    public void destroyServer() {
+        if (tunnel != null) {
+            tunnel.stop();
+        }
+        proxyServer.stop();
+        server.stop();
+    }
+
+    @Test(timeout = 60000)
+    public void httpProxy_httpEndpoint_connectionReused() {
+        SoapClient client = clientBuilder(false)
+                .proxyUri("http://127.0.0.1:" + PROXY_PORT)
+                .build();
+        RouteMetrics route = postAll(client);
+        assertFalse(route.isTunnelled());
+        assertEquals(1, route.getConnectionCount());
+        assertEquals(0, route.getTunnelCount());
+    }
+
+    @Test(timeout = 60000)
+    public void httpProxy_httpsEndpoint_tunnelReused() {
+        SoapClient client = clientBuilder(true)
+                .proxyUri("http://127.0.0.1:" + PROXY_PORT)
+                .build();
+        RouteMetrics route = postAll(client);
+        assertTrue(route.isTunnelled());
+        assertEquals(1, route.getConnectionCount());
+        assertEquals(1, route.getTunnelCount());
+    }
+
+    @Test(timeout = 60000)
+    public void httpsProxy_httpEndpoint_connectionReused() {
+        startProxyTunnel();
+        SoapClient client = clientBuilder(false)
+                .proxyUri("https://127.0.0.1:" + PROXY_SSL_PORT)
+                .proxySecurity(proxySecurity())
+                .build();
+        RouteMetrics route = postAll(client);
+        assertFalse(route.isTunnelled());
+        assertEquals(1, route.getConnectionCount());
+        assertEquals(0, route.getTunnelCount());
+    }
+
+    @Test(timeout = 60000)
+    public void httpsProxy_httpsEndpoint_tunnelReused() {
+        startProxyTunnel();
+        SoapClient client = clientBuilder(true)
+                .proxyUri("https://127.0.0.1:" + PROXY_SSL_PORT)
+                .proxySecurity(proxySecurity())
+                .build();
+        RouteMetrics route = postAll(client);
+        assertTrue(route.isTunnelled());
+        assertEquals(1, route.getConnectionCount());
+        assertEquals(1, route.getTunnelCount());
+    }
+
+    private SoapClient.Builder clientBuilder(boolean https) {
+        SoapClient.Builder builder = SoapClient.builder()
+                .connectionPooling(true)
+                .metricsEnabled(true);
+        if (https) {
+            builder.endpointUri("https://127.0.0.1:" + HOST_SSL_PORT + contextPath)
+                    .endpointSecurity(Security.builder()
+                            .trustStoreUrl(getKeyStoreUrlOne())
+                            .trustStorePassword(getKeyStorePassword())
+                            .build());
+        } else {
+            builder.endpointUri("http://127.0.0.1:" + HOST_PORT + contextPath);
+        }
+        return builder;
+    }
+
+    private RouteMetrics postAll(SoapClient client) {
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                client.post(soapAction, request);
+            }
+            List<RouteMetrics> routes = client.getMetrics().getRoutes();
+            assertEquals(1, routes.size());
+            RouteMetrics route = routes.get(0);
+            assertEquals(REQUESTS, route.getRequestCount());
+            return route;
+        } finally {
+            client.disconnect();
+        }
+    }
+
+    private void startProxyTunnel() {
+        KeyStore keyStore = readKeyStore(getKeyStoreUrlOne(), getKeyStorePassword(), "JKS");
+        tunnel = new SslTunnel(keyStore, getKeyStorePassword(), PROXY_SSL_PORT, "localhost", PROXY_PORT);
+        tunnel.start();
+    }
+
+    private Security proxySecurity() {
+        return Security.builder()
+                .trustStoreUrl(getKeyStoreUrlOne())
+                .trustStorePassword(getKeyStorePassword())
+                .build();
+    }
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.SoapContext;
+import org.reficio.ws.builder.SoapBuilder;
+import org.reficio.ws.builder.SoapOperation;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.client.core.ResponseCache;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.common.XmlUtils;
+import org.reficio.ws.it.util.TestUtils;
+import org.reficio.ws.server.core.SoapServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test SoapServer<->SoapClient communication with the response cache enabled
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class ResponseCacheCooperationTest extends AbstractCooperationTest {
+
+    private final static int TEST_SERVICE_ID = 2;
+    private final static int REQUESTS = 10;
+    private final static int THREADS = 16;
+
+    private String endpointUrl;
+    private String soapAction;
+    private String request;
+    private String expectedResponse;
+    private SoapClient client;
+
+    @Before
+    public void initializeServer() throws Exception {
+        server = SoapServer.builder()
+                .httpPort(HOST_PORT)
+                .build();
+        server.start();
+
+        Wsdl parser = TestUtils.createParserForService(TEST_SERVICE_ID);
+        TestUtils.registerService(server, TEST_SERVICE_ID, parser);
+        SoapBuilder builder = parser.binding().name(parser.getBindings().get(0)).find();
+        SoapOperation operation = builder.getOperations().get(0);
+        soapAction = operation.getSoapAction();
+        request = builder.buildInputMessage(operation);
+        expectedResponse = builder.buildOutputMessage(operation, SoapContext.builder().exampleContent(true).build());
+        endpointUrl = "http://" + HOST_URL + ":" + HOST_PORT + TestUtils.formatContextPath(TEST_SERVICE_ID, builder.getBindingName());
+    }
+
+    @After
+    public void destroyServer() {
+        if (client != null) {
+            client.disconnect();
+        }
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void post_repeatedRequestServedFromCache() {
+        ResponseCache cache = ResponseCache.builder().soapAction(soapAction).build();
+        client = SoapClient.builder().endpointUri(endpointUrl).responseCache(cache).build();
+        for (int i = 0; i < REQUESTS; i++) {
+            assertTrue(XmlUtils.isIdenticalNormalizedWithoutValues(expectedResponse, client.post(soapAction, request)));
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(REQUESTS - 1, cache.getHitCount());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test(timeout = 30000)
+    public void post_actionNotEnabled() {
+        ResponseCache cache = ResponseCache.builder().soapAction("urn:another").build();
+        client = SoapClient.builder().endpointUri(endpointUrl).responseCache(cache).build();
+        for (int i = 0; i < REQUESTS; i++) {
+            client.post(soapAction, request);
+        }
+        client.post(request);
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test(timeout = 30000)
+    public void post_expiredResponseTransmittedAgain() throws Exception {
+        ResponseCache cache = ResponseCache.builder().soapAction(soapAction).timeToLiveInMillis(200).build();
+        client = SoapClient.builder().endpointUri(endpointUrl).responseCache(cache).build();
+        client.post(soapAction, request);
+        Thread.sleep(400);
+        client.post(soapAction, request);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test(timeout = 30000)
+    public void post_invalidatedResponseTransmittedAgain() {
+        ResponseCache cache = ResponseCache.builder().soapAction(soapAction).build();
+        client = SoapClient.builder().endpointUri(endpointUrl).responseCache(cache).build();
+        client.post(soapAction, request);
+        cache.invalidateAll();
+        client.post(soapAction, request);
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test(timeout = 30000)
+    public void post_concurrentMissesCollapsed() throws Exception {
+        final ResponseCache cache = ResponseCache.builder().soapAction(soapAction).build();
+        client = SoapClient.builder().endpointUri(endpointUrl).responseCache(cache)
+                .connectionPooling(true).build();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> responses = new ArrayList<Future<String>>();
+            for (int i = 0; i < THREADS; i++) {
+                responses.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        start.await();
+                        return client.post(soapAction, request);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<String> response : responses) {
+                assertTrue(XmlUtils.isIdenticalNormalizedWithoutValues(expectedResponse, response.get()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(THREADS - 1, cache.getHitCount());
+    }
+
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.client.CircuitBreakerOpenException;
+import org.reficio.ws.client.TransmissionException;
+import org.reficio.ws.client.core.CircuitBreaker;
+import org.reficio.ws.client.core.CircuitBreakerPolicy;
+import org.reficio.ws.client.core.RetryPolicy;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.it.util.StubServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test the retry policy and the circuit breaker of the SoapClient.
+ * A scripted server is used, which answers with the given sequence of HTTP status codes.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class RetryTest {
+
+    private final static String IDEMPOTENT_ACTION = "urn:lookup";
+    private final static String OTHER_ACTION = "urn:update";
+    private final static String REQUEST = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body/></soapenv:Envelope>";
+
+    private StubServer server;
+    private ScriptedHandler handler;
+    private String endpoint;
+
+    @Before
+    public void initializeServer() throws IOException {
+        handler = new ScriptedHandler();
+        server = StubServer.start("/scripted", handler);
+        endpoint = server.getEndpoint();
+    }
+
+    @After
+    public void destroyServer() {
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void post_idempotentActionRetried() {
+        SoapClient client = SoapClient.builder().endpointUri(endpoint).retryPolicy(retryPolicy()).build();
+        handler.script(503, 503);
+        assertEquals(REQUEST, client.post(IDEMPOTENT_ACTION, REQUEST));
+        assertEquals(3, handler.requests.get());
+    }
+
+    @Test(timeout = 30000)
+    public void post_otherActionNotRetried() {
+        SoapClient client = SoapClient.builder().endpointUri(endpoint).retryPolicy(retryPolicy()).build();
+        handler.script(503);
+        try {
+            client.post(OTHER_ACTION, REQUEST);
+            fail("TransmissionException expected");
+        } catch (TransmissionException ex) {
+            assertEquals(Integer.valueOf(503), ex.getErrorCode());
+        }
+        assertEquals(1, handler.requests.get());
+    }
+
+    @Test(timeout = 30000)
+    public void post_nonRetryableStatusNotRetried() {
+        SoapClient client = SoapClient.builder().endpointUri(endpoint).retryPolicy(retryPolicy()).build();
+        handler.script(500);
+        try {
+            client.post(IDEMPOTENT_ACTION, REQUEST);
+            fail("TransmissionException expected");
+        } catch (TransmissionException ex) {
+            assertEquals(Integer.valueOf(500), ex.getErrorCode());
+        }
+        assertEquals(1, handler.requests.get());
+    }
+
+    @Test(timeout = 30000)
+    public void post_maxAttemptsExhausted() {
+        SoapClient client = SoapClient.builder().endpointUri(endpoint).retryPolicy(retryPolicy()).build();
+        handler.script(503, 503, 503, 503);
+        try {
+            client.post(IDEMPOTENT_ACTION, REQUEST);
+            fail("TransmissionException expected");
+        } catch (TransmissionException ex) {
+            assertEquals(Integer.valueOf(503), ex.getErrorCode());
+        }
+        assertEquals(3, handler.requests.get());
+    }
+
+    @Test(timeout = 30000)
+    public void post_circuitBreakerOpensAndCloses() throws Exception {
+        CircuitBreakerPolicy policy = CircuitBreakerPolicy.builder().failureThreshold(2).openDurationInMillis(300).build();
+        SoapClient client = SoapClient.builder().endpointUri(endpoint).circuitBreaker(policy).build();
+        CircuitBreaker breaker = client.getCircuitBreaker();
+        handler.script(503, 503);
+        postAndExpectFailure(client);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        postAndExpectFailure(client);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        try {
+            client.post(OTHER_ACTION, REQUEST);
+            fail("CircuitBreakerOpenException expected");
+        } catch (CircuitBreakerOpenException ex) {
+            // the request has not been sent
+            assertEquals(2, handler.requests.get());
+        }
+        Thread.sleep(500);
+        assertEquals(REQUEST, client.post(OTHER_ACTION, REQUEST));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getConsecutiveFailures());
+    }
+
+    @Test(timeout = 30000)
+    public void post_soapFaultDoesNotOpenCircuitBreaker() {
+        CircuitBreakerPolicy policy = CircuitBreakerPolicy.builder().failureThreshold(1).build();
+        SoapClient client = SoapClient.builder().endpointUri(endpoint).circuitBreaker(policy).build();
+        handler.script(500);
+        postAndExpectFailure(client);
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker().getState());
+    }
+
+    private static void postAndExpectFailure(SoapClient client) {
+        try {
+            client.post(OTHER_ACTION, REQUEST);
+            fail("TransmissionException expected");
+        } catch (TransmissionException ex) {
+            // expected
+        }
+    }
+
+    private static RetryPolicy retryPolicy() {
+        return RetryPolicy.builder()
+                .maxAttempts(3)
+                .initialBackoffInMillis(10)
+                .idempotentSoapAction(IDEMPOTENT_ACTION)
+                .build();
+    }
+
+    /**
+     * Answers with the scripted status codes first, then echoes the requests
+     */
+    private static class ScriptedHandler implements HttpHandler {
+
+        private final Queue<Integer> statusCodes = new ConcurrentLinkedQueue<Integer>();
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private void script(Integer... codes) {
+            statusCodes.addAll(Arrays.asList(codes));
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            byte[] request = IOUtils.toByteArray(exchange.getRequestBody());
+            Integer statusCode = statusCodes.poll();
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            if (statusCode != null) {
+                exchange.sendResponseHeaders(statusCode, -1);
+            } else {
+                exchange.sendResponseHeaders(200, request.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(request);
+                out.close();
+            }
+            exchange.close();
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.builder.SoapBuilder;
+import org.reficio.ws.builder.SoapOperation;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.client.core.ConnectionPoolRegistry;
+import org.reficio.ws.client.core.Security;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.client.core.SoapClientFactory;
+import org.reficio.ws.it.util.TestUtils;
+import org.reficio.ws.server.core.SoapServer;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test the connection pools shared by the SoapClients in SoapServer<->SoapClient communication
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class SharedConnectionPoolTest extends AbstractCooperationTest {
+
+    private final static int TEST_SERVICE_ID = 2;
+    private final static int MAX_CONNECTIONS_PER_POOL = 8;
+
+    private ConnectionPoolRegistry registry;
+    private SoapClientFactory factory;
+    private String endpointUrl;
+    private String soapAction;
+    private String request;
+
+    @Before
+    public void initializeServer() throws Exception {
+        server = SoapServer.builder()
+                .httpPort(HOST_PORT)
+                .build();
+        server.start();
+
+        Wsdl parser = TestUtils.createParserForService(TEST_SERVICE_ID);
+        TestUtils.registerService(server, TEST_SERVICE_ID, parser);
+        SoapBuilder builder = parser.binding().name(parser.getBindings().get(0)).find();
+        SoapOperation operation = builder.getOperations().get(0);
+        soapAction = operation.getSoapAction();
+        request = builder.buildInputMessage(operation);
+        endpointUrl = "http://" + HOST_URL + ":" + HOST_PORT + TestUtils.formatContextPath(TEST_SERVICE_ID, builder.getBindingName());
+
+        registry = ConnectionPoolRegistry.builder()
+                .maxConnectionsPerPool(MAX_CONNECTIONS_PER_POOL)
+                .maxConnectionsPerRoute(4)
+                .build();
+        factory = new SoapClientFactory();
+        factory.setEndpointUri(endpointUrl);
+        factory.setMetricsEnabled(true);
+        factory.setConnectionPoolRegistry(registry);
+    }
+
+    @After
+    public void destroyServer() {
+        registry.shutdown();
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void compatibleClients_shareConnections() {
+        SoapClient clientOne = factory.create();
+        SoapClient clientTwo = factory.create();
+        assertEquals(1, registry.getPoolCount());
+        assertEquals(2, registry.getClientCount());
+
+        clientOne.post(soapAction, request);
+        clientTwo.post(soapAction, request);
+        clientTwo.post(soapAction, request);
+
+        // the second client reuses the connection opened by the first one
+        assertEquals(1, clientOne.getMetrics().getRoutes().get(0).getConnectionCount());
+        assertEquals(0, clientTwo.getMetrics().getRoutes().get(0).getConnectionCount());
+        assertEquals(MAX_CONNECTIONS_PER_POOL, clientTwo.getMetrics().getMaxConnections());
+        assertEquals(1, clientTwo.getMetrics().getAvailableConnections());
+        assertEquals(0, registry.getLeasedConnectionCount());
+
+        clientOne.disconnect();
+        clientTwo.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void clientsWithDifferentTlsSettings_useSeparatePools() {
+        SoapClient plainClient = factory.create();
+        SoapClient tlsClient = SoapClient.builder()
+                .endpointUri("https://" + HOST_URL + ":" + HOST_PORT)
+                .endpointSecurity(Security.builder()
+                        .trustStoreUrl(getKeyStoreUrlOne())
+                        .trustStorePassword(getKeyStorePassword())
+                        .build())
+                .connectionPoolRegistry(registry)
+                .build();
+        SoapClient otherTlsClient = SoapClient.builder()
+                .endpointUri("https://" + HOST_URL + ":" + HOST_PORT)
+                .endpointSecurity(Security.builder()
+                        .trustStoreUrl(getKeyStoreUrlOne())
+                        .trustStorePassword(getKeyStorePassword())
+                        .build())
+                .connectionPoolRegistry(registry)
+                .build();
+        assertEquals(2, registry.getPoolCount());
+        assertEquals(3, registry.getClientCount());
+
+        plainClient.disconnect();
+        tlsClient.disconnect();
+        otherTlsClient.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void poolShutDown_whenLastClientDisconnects() {
+        SoapClient clientOne = factory.create();
+        SoapClient clientTwo = factory.create();
+
+        clientOne.disconnect();
+        clientOne.disconnect();
+        assertEquals(1, registry.getPoolCount());
+        assertEquals(1, registry.getClientCount());
+        clientTwo.post(soapAction, request);
+
+        clientTwo.disconnect();
+        assertEquals(0, registry.getPoolCount());
+        assertEquals(0, registry.getClientCount());
+
+        // a new pool is created on demand
+        SoapClient clientThree = factory.create();
+        clientThree.post(soapAction, request);
+        assertEquals(1, registry.getPoolCount());
+        clientThree.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void registryShutdown_closesAllPools() {
+        factory.create();
+        factory.create();
+        registry.shutdown();
+        assertTrue(registry.isShutdown());
+        assertEquals(0, registry.getPoolCount());
+        try {
+            factory.create();
+            fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+}
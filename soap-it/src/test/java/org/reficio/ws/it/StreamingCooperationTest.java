@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.SoapContext;
+import org.reficio.ws.builder.SoapBuilder;
+import org.reficio.ws.builder.SoapOperation;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.client.SoapFaultException;
+import org.reficio.ws.client.core.EnvelopeWriter;
+import org.reficio.ws.client.core.ResponseReader;
+import org.reficio.ws.client.core.ResponseValues;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.client.core.SoapRequest;
+import org.reficio.ws.client.core.SoapVersion;
+import org.reficio.ws.common.XmlUtils;
+import org.reficio.ws.it.util.TestUtils;
+import org.reficio.ws.server.core.SoapServer;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test SoapServer<->SoapClient communication streaming the request and the response.
+ * A client with a single connection is used, so every test fails if a response does not release its connection.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class StreamingCooperationTest extends AbstractCooperationTest {
+
+    private final static int TEST_SERVICE_ID = 2;
+    private final static int REQUESTS = 3;
+    private final static String FAULTY_REQUEST = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body><unknown/></soapenv:Body></soapenv:Envelope>";
+
+    private SoapClient client;
+    private String request;
+    private String expectedResponse;
+
+    @Before
+    public void initializeServer() throws Exception {
+        server = SoapServer.builder()
+                .httpPort(HOST_PORT)
+                .build();
+        server.start();
+
+        Wsdl parser = TestUtils.createParserForService(TEST_SERVICE_ID);
+        TestUtils.registerService(server, TEST_SERVICE_ID, parser);
+        SoapBuilder builder = parser.binding().name(parser.getBindings().get(0)).find();
+        SoapOperation operation = builder.getOperations().get(0);
+        request = builder.buildInputMessage(operation);
+        expectedResponse = builder.buildOutputMessage(operation, SoapContext.builder().exampleContent(true).build());
+
+        String contextPath = TestUtils.formatContextPath(TEST_SERVICE_ID, builder.getBindingName());
+        client = SoapClient.builder()
+                .endpointUri("http://" + HOST_URL + ":" + HOST_PORT + contextPath)
+                .build();
+    }
+
+    @After
+    public void destroyServer() {
+        client.disconnect();
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void post_streamedRequest() throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            String response = client.post(null, new ByteArrayInputStream(request.getBytes("UTF-8")));
+            assertTrue(XmlUtils.isIdenticalNormalizedWithoutValues(expectedResponse, response));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void post_writtenRequest() throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            String response = client.post(null, SoapVersion.SOAP_1_1, new EnvelopeWriter() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    out.write(request.getBytes("UTF-8"));
+                }
+            });
+            assertTrue(XmlUtils.isIdenticalNormalizedWithoutValues(expectedResponse, response));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void postForStream_readToTheEnd() throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            InputStream response = client.postForStream(SoapRequest.builder().envelope(request).build());
+            String content = IOUtils.toString(response, "UTF-8");
+            assertTrue(XmlUtils.isIdenticalNormalizedWithoutValues(expectedResponse, content));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void postForStream_closedBeforeTheEnd() throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            InputStream response = client.postForStream(SoapRequest.builder().envelope(request).build());
+            response.read();
+            response.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void postForReader_readToTheEnd() throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            XMLStreamReader reader = client.postForReader(SoapRequest.builder().envelope(request).build());
+            int elements = 0;
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    elements++;
+                }
+            }
+            assertTrue(elements > 0);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void postForReader_closedBeforeTheEnd() throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            XMLStreamReader reader = client.postForReader(SoapRequest.builder().envelope(request).build());
+            reader.nextTag();
+            reader.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void postForValues_valuesExtracted() throws Exception {
+        ResponseReader reader = ResponseReader.builder().select("*").select("/Envelope/Body").build();
+        for (int i = 0; i < REQUESTS; i++) {
+            ResponseValues values = client.postForValues(SoapRequest.builder().envelope(request).build(), reader);
+            assertEquals(1, values.getValues("*").size());
+            assertEquals(values.getValue("/Envelope/Body").trim(), values.getValue("*").trim());
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void postForValues_faultRaised() throws Exception {
+        ResponseReader reader = ResponseReader.builder().select("*").build();
+        for (int i = 0; i < REQUESTS; i++) {
+            try {
+                client.postForValues(SoapRequest.builder().envelope(FAULTY_REQUEST).build(), reader);
+                fail("SoapFaultException expected");
+            } catch (SoapFaultException ex) {
+                assertEquals(Integer.valueOf(500), ex.getErrorCode());
+                assertNotNull(ex.getFaultCode());
+                assertNotNull(ex.getFaultString());
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void postForSource_transformed() throws Exception {
+        for (int i = 0; i < REQUESTS; i++) {
+            Source source = client.postForSource(SoapRequest.builder().envelope(request).build());
+            StringWriter response = new StringWriter();
+            TransformerFactory.newInstance().newTransformer().transform(source, new StreamResult(response));
+            assertTrue(XmlUtils.isIdenticalNormalizedWithoutValues(expectedResponse, response.toString()));
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.client.ThrottledException;
+import org.reficio.ws.client.TransmissionException;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.client.core.Throttle;
+import org.reficio.ws.client.core.ThrottlingPolicy;
+import org.reficio.ws.it.util.StubServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * Test the rate and concurrency limiting of the requests of the SoapClient.
+ * The endpoint is served by a server which counts the requests and may delay them or refuse them as overloaded.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class ThrottlingTest {
+
+    private final static String ACTION = "urn:lookup";
+    private final static String REQUEST = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+            + "<soapenv:Body/></soapenv:Envelope>";
+
+    private StubServer server;
+    private OverloadedHandler handler;
+    private String endpoint;
+
+    @Before
+    public void initializeServer() throws IOException {
+        handler = new OverloadedHandler();
+        server = StubServer.start("/throttled", handler);
+        endpoint = server.getEndpoint();
+    }
+
+    @After
+    public void destroyServer() {
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void rateExceeded_failsFast() {
+        SoapClient client = client(ThrottlingPolicy.builder().ratePerSecond(1).rateBurst(2));
+        assertEquals(REQUEST, client.post(ACTION, REQUEST));
+        assertEquals(REQUEST, client.post(ACTION, REQUEST));
+        try {
+            client.post(ACTION, REQUEST);
+            fail("ThrottledException expected");
+        } catch (ThrottledException ex) {
+            // expected
+        }
+        assertEquals(2, handler.requests.get());
+        assertEquals(1, client.getThrottle().getRejectedCount());
+        client.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void rateExceeded_requestsWait() {
+        SoapClient client = client(ThrottlingPolicy.builder().ratePerSecond(10).rateBurst(1).maxWaitInMillis(1000));
+        long started = System.currentTimeMillis();
+        for (int i = 0; i < 6; i++) {
+            assertEquals(REQUEST, client.post(ACTION, REQUEST));
+        }
+        // the first request is sent at once, the other five are spread over half a second
+        assertTrue(System.currentTimeMillis() - started >= 450);
+        assertEquals(0, client.getThrottle().getRejectedCount());
+        client.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void concurrencyLimitReached_failsFast() throws Exception {
+        SoapClient client = client(ThrottlingPolicy.builder().concurrencyLimit(2).adaptiveConcurrency(false));
+        handler.delayInMillis = 500;
+        int throttled = 0;
+        for (Future<String> response : postConcurrently(client, 3)) {
+            try {
+                assertEquals(REQUEST, response.get());
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof ThrottledException);
+                throttled++;
+            }
+        }
+        assertEquals(1, throttled);
+        assertEquals(2, handler.maxInFlight.get());
+        assertEquals(0, client.getThrottle().getInFlight());
+        client.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void concurrencyLimitReached_requestsWait() throws Exception {
+        SoapClient client = client(ThrottlingPolicy.builder().concurrencyLimit(2).adaptiveConcurrency(false)
+                .maxWaitInMillis(5000));
+        handler.delayInMillis = 200;
+        for (Future<String> response : postConcurrently(client, 6)) {
+            assertEquals(REQUEST, response.get());
+        }
+        assertEquals(2, handler.maxInFlight.get());
+        client.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void concurrencyLimitReached_asyncPostRejectedWithoutWaiting() throws Exception {
+        SoapClient client = client(ThrottlingPolicy.builder().concurrencyLimit(1).adaptiveConcurrency(false)
+                .maxWaitInMillis(5000));
+        handler.delayInMillis = 500;
+        Future<String> first = client.postAsync(ACTION, REQUEST);
+        long started = System.currentTimeMillis();
+        Future<String> second = client.postAsync(ACTION, REQUEST);
+        assertTrue(System.currentTimeMillis() - started < 400);
+        try {
+            second.get();
+            fail("ThrottledException expected");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ThrottledException);
+        }
+        assertEquals(REQUEST, first.get());
+        assertEquals(0, client.getThrottle().getInFlight());
+        assertEquals(1, handler.requests.get());
+        client.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void overload_shrinksConcurrencyLimit() {
+        SoapClient client = client(ThrottlingPolicy.builder().concurrencyLimit(10));
+        handler.statusCode = 503;
+        for (int i = 0; i < 5; i++) {
+            try {
+                client.post(ACTION, REQUEST);
+                fail("TransmissionException expected");
+            } catch (TransmissionException ex) {
+                assertEquals(Integer.valueOf(503), ex.getErrorCode());
+            }
+        }
+        Throttle throttle = client.getThrottle();
+        assertEquals(5, throttle.getOverloadCount());
+        // 10 * 0.9^5
+        assertEquals(5, throttle.getConcurrencyLimit());
+        client.disconnect();
+    }
+
+    @Test(timeout = 30000)
+    public void limitsAdjustedAtRuntime() {
+        SoapClient client = client(ThrottlingPolicy.builder().ratePerSecond(0.1).rateBurst(1));
+        client.post(ACTION, REQUEST);
+        try {
+            client.post(ACTION, REQUEST);
+            fail("ThrottledException expected");
+        } catch (ThrottledException ex) {
+            // expected
+        }
+        Throttle throttle = client.getThrottle();
+        throttle.setRatePerSecond(0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(REQUEST, client.post(ACTION, REQUEST));
+        }
+        throttle.setConcurrencyLimit(3);
+        assertEquals(3, throttle.getConcurrencyLimit());
+        assertEquals(REQUEST, client.post(ACTION, REQUEST));
+        client.disconnect();
+    }
+
+    private SoapClient client(ThrottlingPolicy.Builder policy) {
+        return SoapClient.builder()
+                .endpointUri(endpoint)
+                .connectionPooling(true)
+                .maxConnectionsPerRoute(10)
+                .throttling(policy.build())
+                .build();
+    }
+
+    private static List<Future<String>> postConcurrently(final SoapClient client, int requests) {
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<String>> responses = new ArrayList<Future<String>>();
+            for (int i = 0; i < requests; i++) {
+                responses.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return client.post(ACTION, REQUEST);
+                    }
+                }));
+            }
+            return responses;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Counts the requests and the maximum of the requests in flight, and echoes the requests after the given delay
+     * or responds with the given status code
+     */
+    private static class OverloadedHandler implements HttpHandler {
+
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private volatile long delayInMillis;
+        private volatile int statusCode = 200;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            int max = maxInFlight.get();
+            while (current > max && !maxInFlight.compareAndSet(max, current)) {
+                max = maxInFlight.get();
+            }
+            byte[] request = IOUtils.toByteArray(exchange.getRequestBody());
+            if (delayInMillis > 0) {
+                try {
+                    Thread.sleep(delayInMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            // the request leaves the flight before it is responded, so that the client cannot overtake the count
+            inFlight.decrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            if (statusCode != 200) {
+                exchange.sendResponseHeaders(statusCode, -1);
+            } else {
+                exchange.sendResponseHeaders(200, request.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(request);
+                out.close();
+            }
+            exchange.close();
+        }
+    }
+
+}
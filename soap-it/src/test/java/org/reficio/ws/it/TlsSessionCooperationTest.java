@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reficio.ws.builder.SoapBuilder;
+import org.reficio.ws.builder.SoapOperation;
+import org.reficio.ws.builder.core.Wsdl;
+import org.reficio.ws.client.core.CallTiming;
+import org.reficio.ws.client.core.Security;
+import org.reficio.ws.client.core.SoapClient;
+import org.reficio.ws.client.core.SoapRequest;
+import org.reficio.ws.client.ssl.SSLContextCache;
+import org.reficio.ws.client.ssl.TlsMetrics;
+import org.reficio.ws.it.util.TestUtils;
+import org.reficio.ws.server.core.SoapServer;
+
+import java.net.URL;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Test the sharing of the SSL contexts and the resumption of the TLS sessions in SoapServer<->SoapClient
+ * communication using HTTPS
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class TlsSessionCooperationTest extends AbstractCooperationTest {
+
+    private final static int TEST_SERVICE_ID = 2;
+
+    private SSLContextCache cache;
+    private String endpointUrl;
+    private String soapAction;
+    private String request;
+
+    @Before
+    public void initializeServer() throws Exception {
+        server = SoapServer.builder()
+                .keyStoreUrl(getKeyStoreUrlOne())
+                .keyStorePassword(getKeyStorePassword())
+                .httpsPort(HOST_PORT)
+                .build();
+        server.start();
+
+        Wsdl parser = TestUtils.createParserForService(TEST_SERVICE_ID);
+        TestUtils.registerService(server, TEST_SERVICE_ID, parser);
+        SoapBuilder builder = parser.binding().name(parser.getBindings().get(0)).find();
+        SoapOperation operation = builder.getOperations().get(0);
+        soapAction = operation.getSoapAction();
+        request = builder.buildInputMessage(operation);
+        endpointUrl = "https://" + HOST_URL + ":" + HOST_PORT + TestUtils.formatContextPath(TEST_SERVICE_ID, builder.getBindingName());
+        cache = SSLContextCache.builder().build();
+    }
+
+    @After
+    public void destroyServer() {
+        server.stop();
+    }
+
+    @Test(timeout = 30000)
+    public void equalSecurity_contextShared() throws Exception {
+        Security securityOne = security(getKeyStoreUrlOne());
+        Security securityTwo = security(getKeyStoreUrlOne());
+        assertSame(cache.getContext(securityOne), cache.getContext(securityTwo));
+        assertSame(cache.getFactory(securityOne), cache.getFactory(securityTwo));
+        assertEquals(1, cache.getMetrics().getContextCount());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test(timeout = 30000)
+    public void differentSecurity_contextNotShared() throws Exception {
+        Security securityOne = security(getKeyStoreUrlOne());
+        Security securityTwo = security(getKeyStoreUrlTwo());
+        assertNotSame(cache.getContext(securityOne), cache.getContext(securityTwo));
+        assertNotSame(cache.getContext(securityOne), cache.getMergedContext(securityOne, securityTwo));
+        assertEquals(3, cache.getMetrics().getContextCount());
+    }
+
+    @Test(timeout = 30000)
+    public void post_sessionResumedByAnotherClient() {
+        SoapClient clientOne = client();
+        SoapClient clientTwo = client();
+        try {
+            assertNotNull(clientOne.post(soapAction, request));
+            assertNotNull(clientTwo.post(soapAction, request));
+        } finally {
+            clientOne.disconnect();
+            clientTwo.disconnect();
+        }
+        TlsMetrics metrics = cache.getMetrics();
+        assertEquals(1, metrics.getContextCount());
+        assertEquals(2, metrics.getHandshakeCount());
+        assertEquals(1, metrics.getFullHandshakeCount());
+        assertEquals(1, metrics.getResumedHandshakeCount());
+        assertEquals(0.5, metrics.getResumptionRate(), 0.0001);
+    }
+
+    @Test(timeout = 30000)
+    public void post_sessionResumedByEveryLaterConnection() {
+        for (int i = 0; i < 3; i++) {
+            SoapClient client = client();
+            try {
+                assertNotNull(client.post(soapAction, request));
+            } finally {
+                client.disconnect();
+            }
+        }
+        TlsMetrics metrics = cache.getMetrics();
+        assertEquals(3, metrics.getHandshakeCount());
+        assertEquals(1, metrics.getFullHandshakeCount());
+        assertEquals(2, metrics.getResumedHandshakeCount());
+    }
+
+    @Test(timeout = 30000)
+    public void post_sessionNotResumedThroughAnotherContext() {
+        SoapClient clientOne = client();
+        SoapClient clientTwo = SoapClient.builder()
+                .endpointUri(endpointUrl)
+                .endpointSecurity(Security.builder()
+                        .trustStoreUrl(getKeyStoreUrlOne())
+                        .trustStorePassword(getKeyStorePassword())
+                        .sslContextProtocol("TLSv1.2")
+                        .build())
+                .tlsContextCache(cache)
+                .build();
+        try {
+            assertNotNull(clientOne.post(soapAction, request));
+            assertNotNull(clientTwo.post(soapAction, request));
+        } finally {
+            clientOne.disconnect();
+            clientTwo.disconnect();
+        }
+        TlsMetrics metrics = cache.getMetrics();
+        assertEquals(2, metrics.getContextCount());
+        assertEquals(2, metrics.getHandshakeCount());
+        assertEquals(2, metrics.getFullHandshakeCount());
+    }
+
+    @Test(timeout = 30000)
+    public void post_tlsHandshakeTimed() {
+        SoapClient client = SoapClient.builder()
+                .endpointUri(endpointUrl)
+                .endpointSecurity(security(getKeyStoreUrlOne()))
+                .tlsContextCache(cache)
+                .connectionPooling(true)
+                .build();
+        CallTiming timing = new CallTiming();
+        try {
+            assertNotNull(client.post(SoapRequest.builder().soapAction(soapAction).envelope(request).timing(timing).build()));
+            assertTrue(timing.getConnectInMillis() > 0);
+            assertTrue(timing.getTlsHandshakeInMillis() > 0);
+            assertNotNull(client.post(SoapRequest.builder().soapAction(soapAction).envelope(request).timing(timing).build()));
+            assertTrue(timing.isConnectionReused());
+            assertEquals(0.0, timing.getTlsHandshakeInMillis());
+        } finally {
+            client.disconnect();
+        }
+        // the handshake of a timed connection is recorded as any other
+        assertEquals(1, cache.getMetrics().getHandshakeCount());
+    }
+
+    @Test(timeout = 30000)
+    public void invalidateAll_contextRecreated() throws Exception {
+        Security security = security(getKeyStoreUrlOne());
+        cache.getContext(security);
+        cache.invalidateAll();
+        assertEquals(0, cache.getSize());
+        cache.getContext(security);
+        assertEquals(2, cache.getMetrics().getContextCount());
+    }
+
+    private SoapClient client() {
+        return SoapClient.builder()
+                .endpointUri(endpointUrl)
+                .endpointSecurity(security(getKeyStoreUrlOne()))
+                .tlsContextCache(cache)
+                .build();
+    }
+
+    private Security security(URL trustStoreUrl) {
+        return Security.builder()
+                .trustStoreUrl(trustStoreUrl)
+                .trustStorePassword(getKeyStorePassword())
+                .build();
+    }
+
+}
@@ -167,6 +167,8 @@ public class SslTunnel {
                 final OutputStream to = target.getOutputStream();
                 target.setSoTimeout(100);
 
+                // a read timeout during the handshake is fatal, so the short polling timeout is set after it completes
+                ((SSLSocket) client).startHandshake();
                 final InputStream ci = client.getInputStream();
                 final OutputStream co = client.getOutputStream();
                 client.setSoTimeout(100);
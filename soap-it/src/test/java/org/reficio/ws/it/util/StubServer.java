@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.reficio.ws.it.util;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Plain HTTP server serving a single handler, used to test the SoapClient against endpoints that misbehave on demand
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class StubServer {
+
+    public final static String HOST_URL = "localhost";
+    public final static int HOST_PORT = 9696;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String endpoint;
+
+    private StubServer(HttpServer server, ExecutorService executor, String endpoint) {
+        this.server = server;
+        this.executor = executor;
+        this.endpoint = endpoint;
+    }
+
+    public static StubServer start(String contextPath, HttpHandler handler) throws IOException {
+        return start(HOST_PORT, contextPath, handler);
+    }
+
+    public static StubServer start(int port, String contextPath, HttpHandler handler) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(HOST_URL, port), 0);
+        server.createContext(contextPath, handler);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        return new StubServer(server, executor, "http://" + HOST_URL + ":" + port + contextPath);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.reficio.ws.legacy;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+import org.reficio.ws.SoapBuilderException;
+import org.apache.xmlbeans.SimpleValue;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.XmlOptions;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loader that fetches all the documents reachable through the wsdl:import, xsd:import and xsd:include
+ * statements of a WSDL in parallel, before SchemaUtils walks them. The walk itself stays sequential, so the
+ * schemas it collects are exactly the same as without prefetching - only the round-trips overlap.
+ * <p/>
+ * Every URL is fetched once. A prefetched document is handed out once, as the walk may modify it - any further
+ * load of the URL, as well as the load of a document that failed to be prefetched, is delegated to the
+ * underlying loader. The documents are fetched by a pool of at most FETCH_THREADS daemon threads shared by all
+ * the loaders.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+class ParallelSchemaLoader implements SchemaLoader {
+
+    private final static Logger log = Logger.getLogger(ParallelSchemaLoader.class);
+
+    private final static int FETCH_THREADS = 8;
+    private final static long FETCH_THREADS_KEEP_ALIVE_IN_SECONDS = 30;
+
+    private final static ThreadPoolExecutor fetchExecutor = createFetchExecutor();
+
+    private final SchemaLoader loader;
+    private final Map<String, XmlObject> prefetched = new HashMap<String, XmlObject>();
+    private Throwable rootFailure;
+
+    private ParallelSchemaLoader(SchemaLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * @return loader serving the documents of the import graph of the given WSDL, fetched in parallel
+     */
+    public static ParallelSchemaLoader prefetch(String wsdlUrl, SchemaLoader loader) {
+        ParallelSchemaLoader parallelLoader = new ParallelSchemaLoader(loader);
+        parallelLoader.fetchAll(wsdlUrl);
+        return parallelLoader;
+    }
+
+    public XmlObject loadXmlObject(String wsdlUrl, XmlOptions options) throws Exception {
+        XmlObject xmlObject = prefetched.remove(wsdlUrl);
+        return xmlObject != null ? xmlObject : loader.loadXmlObject(wsdlUrl, options);
+    }
+
+    public String getBaseURI() {
+        return loader.getBaseURI();
+    }
+
+    /**
+     * @return hash of the content of all the prefetched documents; has to be called before any of them is loaded
+     */
+    String hash(String wsdlUrl) {
+        if (!prefetched.containsKey(wsdlUrl)) {
+            throw new SoapBuilderException(String.format("Reading of the WSDL [%s] failed", wsdlUrl), rootFailure);
+        }
+        Hasher hasher = Hashing.sha1().newHasher();
+        // sorted, so that the hash does not depend on the order in which the documents were fetched
+        for (Map.Entry<String, XmlObject> document : new TreeMap<String, XmlObject>(prefetched).entrySet()) {
+            hasher.putString(document.getKey()).putByte((byte) 0);
+            hasher.putString(document.getValue().xmlText()).putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+
+    private void fetchAll(String wsdlUrl) {
+        CompletionService<Fetch> fetches = new ExecutorCompletionService<Fetch>(fetchExecutor);
+        // accessed only by the calling thread - the fetching threads just load and parse the documents
+        Set<String> requested = new HashSet<String>();
+        List<Future<Fetch>> pending = new ArrayList<Future<Fetch>>();
+        requested.add(wsdlUrl);
+        pending.add(fetches.submit(new Fetch(wsdlUrl)));
+        try {
+            while (!pending.isEmpty()) {
+                Future<Fetch> completed = fetches.take();
+                pending.remove(completed);
+                Fetch fetch;
+                try {
+                    fetch = completed.get();
+                } catch (ExecutionException ex) {
+                    // loaded again by the walk, which reports the failure
+                    log.debug("Prefetching of a schema failed", ex.getCause());
+                    // the WSDL itself is the only document pending until it has been fetched
+                    if (prefetched.isEmpty() && pending.isEmpty()) {
+                        rootFailure = ex.getCause();
+                    }
+                    continue;
+                }
+                prefetched.put(fetch.url, fetch.xmlObject);
+                for (String location : fetch.locations) {
+                    if (requested.add(location)) {
+                        pending.add(fetches.submit(new Fetch(location)));
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            for (Future<Fetch> fetch : pending) {
+                fetch.cancel(true);
+            }
+        }
+    }
+
+    private final class Fetch implements Callable<Fetch> {
+        private final String url;
+        private XmlObject xmlObject;
+        private Set<String> locations;
+
+        private Fetch(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Fetch call() throws Exception {
+            xmlObject = loader.loadXmlObject(url, SchemaUtils.createSchemaLoadOptions(new ArrayList<Object>()));
+            if (xmlObject == null) {
+                throw new IllegalStateException("Failed to load schema from [" + url + "]");
+            }
+            locations = getReferencedLocations(url, xmlObject);
+            return this;
+        }
+    }
+
+    // mirrors the statements followed by SchemaUtils.getSchemas - a location missed here is simply not prefetched
+    private static Set<String> getReferencedLocations(String url, XmlObject xmlObject) {
+        Set<String> locations = new LinkedHashSet<String>();
+        Node root = ((Document) xmlObject.getDomNode()).getDocumentElement();
+        boolean schema = root.getLocalName().equals("schema") && Constants.XSD_NS.equals(root.getNamespaceURI());
+        if (!schema) {
+            addLocations(url, xmlObject, "declare namespace s='" + Constants.WSDL11_NS
+                    + "' .//s:import/@location", false, locations);
+            addLocations(url, xmlObject, "declare namespace s='" + Constants.WADL10_NS
+                    + "' .//s:grammars/s:include/@href", false, locations);
+            addLocations(url, xmlObject, "declare namespace s='" + Constants.WADL11_NS
+                    + "' .//s:grammars/s:include/@href", false, locations);
+        }
+        // the imports of the default schemas are not followed
+        addLocations(url, xmlObject, "declare namespace s='" + Constants.XSD_NS
+                + "' .//s:import/@schemaLocation", true, locations);
+        addLocations(url, xmlObject, "declare namespace s='" + Constants.XSD_NS
+                + "' .//s:include/@schemaLocation", false, locations);
+        return locations;
+    }
+
+    private static void addLocations(String url, XmlObject xmlObject, String path, boolean skipDefaultSchemas,
+                                     Set<String> locations) {
+        for (XmlObject attribute : xmlObject.selectPath(path)) {
+            String location = ((SimpleValue) attribute).getStringValue();
+            if (location == null) {
+                continue;
+            }
+            Element element = ((Attr) attribute.getDomNode()).getOwnerElement();
+            if (skipDefaultSchemas && SchemaUtils.isDefaultSchema(element.getAttribute("namespace"))) {
+                continue;
+            }
+            if (!location.startsWith("file:") && location.indexOf("://") == -1) {
+                location = SchemaUtils.joinRelativeUrl(url, location);
+            }
+            locations.add(location);
+        }
+    }
+
+    private static ThreadPoolExecutor createFetchExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(FETCH_THREADS, FETCH_THREADS,
+                FETCH_THREADS_KEEP_ALIVE_IN_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setNameFormat("soap-schema-fetcher-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+}
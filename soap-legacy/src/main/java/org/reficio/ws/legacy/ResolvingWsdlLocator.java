@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.reficio.ws.legacy;
+
+import com.google.common.io.Closeables;
+import org.apache.log4j.Logger;
+import org.reficio.ws.SoapBuilderException;
+import org.xml.sax.InputSource;
+
+import javax.wsdl.xml.WSDLLocator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WSDL4J locator reading the WSDL and the documents it imports through the ResourceResolver. The system ids of
+ * the documents are their original locations, so that WSDL4J resolves the relative imports against them.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+class ResolvingWsdlLocator implements WSDLLocator {
+
+    private final static Logger log = Logger.getLogger(ResolvingWsdlLocator.class);
+
+    private final String baseUri;
+    private final ResourceResolver resolver;
+    private final List<InputStream> streams = new ArrayList<InputStream>();
+    private String latestImportUri;
+
+    public ResolvingWsdlLocator(String baseUri, ResourceResolver resolver) {
+        this.baseUri = baseUri;
+        this.resolver = resolver;
+    }
+
+    public InputSource getBaseInputSource() {
+        try {
+            return open(baseUri);
+        } catch (IOException ex) {
+            throw new SoapBuilderException(String.format("Reading of the WSDL [%s] failed", baseUri), ex);
+        }
+    }
+
+    public InputSource getImportInputSource(String parentLocation, String importLocation) {
+        try {
+            latestImportUri = parentLocation != null ? new URL(new URL(parentLocation), importLocation).toString()
+                    : importLocation;
+        } catch (MalformedURLException ex) {
+            latestImportUri = importLocation;
+        }
+        try {
+            return open(latestImportUri);
+        } catch (IOException ex) {
+            // WSDL4J reports the documents that cannot be located
+            log.warn("Reading of the document [" + latestImportUri + "] failed", ex);
+            return null;
+        }
+    }
+
+    public String getBaseURI() {
+        return baseUri;
+    }
+
+    public String getLatestImportURI() {
+        return latestImportUri;
+    }
+
+    public void close() {
+        for (InputStream stream : streams) {
+            Closeables.closeQuietly(stream);
+        }
+        streams.clear();
+    }
+
+    private InputSource open(String location) throws IOException {
+        InputStream stream = resolver.open(location);
+        streams.add(stream);
+        InputSource source = new InputSource(stream);
+        source.setSystemId(location);
+        return source;
+    }
+
+}
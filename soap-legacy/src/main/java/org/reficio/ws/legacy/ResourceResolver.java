@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.reficio.ws.legacy;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.apache.log4j.Logger;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Resolves the locations of the WSDL and XSD documents before they are read, so that remote documents may be
+ * read from local files or classpath resources instead. It is used both by the schema loader and by the WSDL4J
+ * reader; the documents keep their original locations, so relative imports are resolved as if they were remote.
+ * <p/>
+ * A location is looked up in the XML catalogs first, in the order in which they have been added. The location
+ * it is mapped to, or the original location, is then looked up in the mirror directory if it is remote. A remote
+ * document is stored in the mirror as [scheme]/[host]_[port]/[path], the query string is replaced by its hash.
+ * If the mirror is populated, remote documents missing in it are downloaded into it, so that later parses do not
+ * access the network at all. Otherwise documents missing in the mirror are read from the network.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public final class ResourceResolver {
+
+    private final static Logger log = Logger.getLogger(ResourceResolver.class);
+
+    private final static List<String> MIRRORED_SCHEMES = Arrays.asList("http", "https", "ftp");
+
+    private List<XmlCatalog> catalogs;
+    private File mirrorDirectory;
+    private boolean populateMirror;
+
+    // ----------------------------------------------------------------
+    // PUBLIC API
+    // ----------------------------------------------------------------
+
+    /**
+     * @param location location of a WSDL or XSD document
+     * @return stream of the document the location resolves to
+     * @throws IOException thrown if the document cannot be read
+     */
+    public InputStream open(String location) throws IOException {
+        String resolved = resolve(location);
+        File mirrored = getMirrorFile(resolved);
+        if (mirrored != null) {
+            if (!mirrored.isFile() && populateMirror) {
+                download(resolved, mirrored);
+            }
+            if (mirrored.isFile()) {
+                log.debug("Reading [" + location + "] from the mirror [" + mirrored + "]");
+                return new FileInputStream(mirrored);
+            }
+        }
+        if (!resolved.equals(location)) {
+            log.debug("Reading [" + location + "] from [" + resolved + "]");
+        }
+        return openLocation(resolved);
+    }
+
+    // ----------------------------------------------------------------
+    // INTERNALS
+    // ----------------------------------------------------------------
+    String resolve(String location) {
+        for (XmlCatalog catalog : catalogs) {
+            String resolved = catalog.resolve(location);
+            if (resolved != null) {
+                return resolved;
+            }
+        }
+        return location;
+    }
+
+    private File getMirrorFile(String location) {
+        if (mirrorDirectory == null) {
+            return null;
+        }
+        URI uri;
+        try {
+            uri = new URI(location).normalize();
+        } catch (URISyntaxException ex) {
+            return null;
+        }
+        if (uri.getScheme() == null || !MIRRORED_SCHEMES.contains(uri.getScheme().toLowerCase())
+                || uri.getHost() == null) {
+            return null;
+        }
+        StringBuilder path = new StringBuilder(uri.getScheme().toLowerCase()).append('/').append(uri.getHost().toLowerCase());
+        if (uri.getPort() != -1) {
+            path.append('_').append(uri.getPort());
+        }
+        String uriPath = uri.getPath() == null || uri.getPath().length() == 0 ? "/" : uri.getPath();
+        for (String segment : uriPath.split("/")) {
+            if (segment.equals("..")) {
+                // leading parent segments remain after normalization, they would escape the mirror
+                return null;
+            }
+            if (segment.length() > 0) {
+                path.append('/').append(segment);
+            }
+        }
+        if (uriPath.endsWith("/")) {
+            path.append("/index");
+        }
+        if (uri.getRawQuery() != null) {
+            path.append('_').append(Hashing.sha1().hashString(uri.getRawQuery()).toString());
+        }
+        return new File(mirrorDirectory, path.toString());
+    }
+
+    private void download(String location, File mirrored) throws IOException {
+        Files.createParentDirs(mirrored);
+        // written to a temporary file first, so that concurrent readers never see a partial document
+        File temp = new File(mirrored.getParentFile(), mirrored.getName() + "-" + UUID.randomUUID() + ".tmp");
+        InputStream in = openLocation(location);
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                ByteStreams.copy(in, out);
+            } finally {
+                Closeables.closeQuietly(out);
+            }
+            if (!temp.renameTo(mirrored) && !mirrored.isFile()) {
+                throw new IOException("Renaming of [" + temp + "] to [" + mirrored + "] failed");
+            }
+            log.debug("Downloaded [" + location + "] to the mirror [" + mirrored + "]");
+        } finally {
+            Closeables.closeQuietly(in);
+            if (temp.exists() && !temp.delete()) {
+                log.warn("Temporary file [" + temp + "] cannot be deleted");
+            }
+        }
+    }
+
+    private static InputStream openLocation(String location) throws IOException {
+        if (location.startsWith(XmlCatalog.CLASSPATH_PREFIX)) {
+            String resource = location.substring(XmlCatalog.CLASSPATH_PREFIX.length()).replaceFirst("^/+", "");
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            URL url = classLoader != null ? classLoader.getResource(resource) : null;
+            if (url == null) {
+                url = ResourceResolver.class.getClassLoader().getResource(resource);
+            }
+            if (url == null) {
+                throw new IOException("Resource [" + resource + "] not found in the classpath");
+            }
+            return url.openStream();
+        }
+        return new URL(location).openStream();
+    }
+
+    // ----------------------------------------------------------------
+    // BUILDER API
+    // ----------------------------------------------------------------
+    private ResourceResolver() {
+    }
+
+    /**
+     * Builder to construct a properly populated ResourceResolver
+     */
+    public static class Builder {
+
+        private final List<URL> catalogs = new ArrayList<URL>();
+        private File mirrorDirectory;
+        private boolean populateMirror;
+
+        /**
+         * @param value Specifies the URL of an OASIS XML catalog mapping the locations of the documents. May be
+         *              specified multiple times, the catalogs are consulted in the order in which they have been added.
+         * @return builder
+         */
+        public Builder catalog(URL value) {
+            catalogs.add(checkNotNull(value));
+            return this;
+        }
+
+        /**
+         * @param value Specifies the directory mirroring the remote documents
+         * @return builder
+         */
+        public Builder mirrorDirectory(File value) {
+            mirrorDirectory = checkNotNull(value);
+            return this;
+        }
+
+        /**
+         * @param value Specifies whether the remote documents missing in the mirror are downloaded into it.
+         *              Requires the mirror directory. Disabled by default.
+         * @return builder
+         */
+        public Builder populateMirror(boolean value) {
+            populateMirror = value;
+            return this;
+        }
+
+        /**
+         * Constructs properly populated resource resolver
+         *
+         * @return properly populated resource resolver
+         */
+        public ResourceResolver build() {
+            checkState(!populateMirror || mirrorDirectory != null, "Populating the mirror requires the mirror directory");
+            ResourceResolver resolver = new ResourceResolver();
+            resolver.catalogs = new ArrayList<XmlCatalog>();
+            for (URL catalog : catalogs) {
+                resolver.catalogs.add(XmlCatalog.parse(catalog));
+            }
+            resolver.mirrorDirectory = mirrorDirectory;
+            resolver.populateMirror = populateMirror;
+            return resolver;
+        }
+    }
+
+    /**
+     * @return a new instance of a ResourceResolver Builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+}
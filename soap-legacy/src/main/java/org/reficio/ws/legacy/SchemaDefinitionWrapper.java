@@ -22,12 +22,17 @@ import org.apache.xmlbeans.SchemaType;
 import org.apache.xmlbeans.SchemaTypeLoader;
 import org.apache.xmlbeans.SchemaTypeSystem;
 import org.apache.xmlbeans.XmlBeans;
+import org.reficio.ws.SoapBuilderException;
 
 import javax.wsdl.Definition;
 import javax.xml.namespace.QName;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * This class was extracted from the soapUI code base by centeractive ag in October 2011.
@@ -48,27 +53,64 @@ import java.util.Set;
  * - changing location in the package structure
  * - removal of dependencies and code parts that are out of scope of SOAP message generation
  * - minor fixes to make the class compile out of soapUI's code base
+ * - optional lazy and background compilation of the schema types
  */
 class SchemaDefinitionWrapper {
-    private SchemaTypeSystem schemaTypes;
-    private SchemaTypeLoader schemaTypeLoader;
+    private volatile SchemaTypeSystem schemaTypes;
+    private volatile SchemaTypeLoader schemaTypeLoader;
 
     private Definition definition;
+    private SchemaTypeSystemCache typesCache;
+
+    private final Callable<Void> compiler;
+
+    // compiles the schema types once - run by the first caller that needs them or by a background executor;
+    // replaced after a failure, so that the next caller compiles them again
+    private volatile FutureTask<Void> compilation;
 
     public SchemaDefinitionWrapper(Definition definition, String schemaURL) {
+        this(definition, schemaURL, null, false, null);
+    }
+
+    public SchemaDefinitionWrapper(Definition definition, final String schemaURL, SchemaTypeSystemCache typesCache,
+                                   boolean lazy, final ResourceResolver resolver) {
         this.definition = definition;
-        loadSchemaTypes(new UrlSchemaLoader(schemaURL));
+        this.typesCache = typesCache;
+        this.compiler = new Callable<Void>() {
+            @Override
+            public Void call() {
+                loadSchemaTypes(new UrlSchemaLoader(schemaURL, resolver));
+                return null;
+            }
+        };
+        this.compilation = new FutureTask<Void>(compiler);
+        if (!lazy) {
+            compile();
+        }
+    }
+
+    /**
+     * Starts the compilation of the schema types using the given executor, unless they have already been compiled
+     */
+    public void compileInBackground(Executor executor) {
+        FutureTask<Void> task = compilation;
+        if (!task.isDone()) {
+            executor.execute(task);
+        }
     }
 
     public SchemaTypeLoader getSchemaTypeLoader() {
+        compile();
         return schemaTypeLoader;
     }
 
     public SchemaTypeSystem getSchemaTypeSystem() {
+        compile();
         return schemaTypes;
     }
 
     public boolean hasSchemaTypes() {
+        compile();
         return schemaTypes != null;
     }
 
@@ -94,9 +136,36 @@ class SchemaDefinitionWrapper {
     }
 
     public void loadSchemaTypes(DefinitionLoader loader) {
-        schemaTypes = SchemaUtils.loadSchemaTypes(loader.getBaseURI(), loader);
+        schemaTypes = SchemaUtils.loadSchemaTypes(loader.getBaseURI(), loader, typesCache);
         schemaTypeLoader = XmlBeans.typeLoaderUnion(new SchemaTypeLoader[]{schemaTypes,
                 XmlBeans.getBuiltinTypeSystem()});
     }
 
+    private void compile() {
+        // no-op if the compilation has already been run, get() waits for a compilation running in another thread
+        FutureTask<Void> task = compilation;
+        task.run();
+        try {
+            task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SoapBuilderException("Interrupted while waiting for the compilation of the schema types", ex);
+        } catch (ExecutionException ex) {
+            retryAfter(task);
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            } else if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new SoapBuilderException(ex.getCause());
+        }
+    }
+
+    private synchronized void retryAfter(FutureTask<Void> failed) {
+        // the failure is reported to the callers that waited for the failed task only
+        if (compilation == failed) {
+            compilation = new FutureTask<Void>(compiler);
+        }
+    }
+
 }
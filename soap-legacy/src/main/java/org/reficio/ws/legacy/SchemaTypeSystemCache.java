@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.reficio.ws.legacy;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.apache.xmlbeans.SchemaTypeSystem;
+import org.apache.xmlbeans.XmlBeans;
+import org.apache.xmlbeans.XmlObject;
+import org.apache.xmlbeans.impl.schema.SchemaTypeSystemImpl;
+import org.reficio.ws.annotation.ThreadSafe;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Persistent cache of the schema type systems compiled by XmlBeans. Compilation of the XSDs dominates the
+ * parsing of a WSDL, so the compiled type systems are stored in a directory and loaded on later runs instead.
+ * <p/>
+ * Every type system is stored in a sub-directory named after the hash of all the schema documents it was compiled
+ * from, so a change of any of them results in a new entry. Entries are written to a temporary directory first and
+ * renamed afterwards, so the cache may be shared by concurrent processes. An entry that cannot be loaded is
+ * deleted and the schemas are compiled again.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+@ThreadSafe
+public class SchemaTypeSystemCache {
+
+    private final static Logger log = Logger.getLogger(SchemaTypeSystemCache.class);
+
+    // bumped whenever the layout of the entries or the compilation options change
+    private final static String FORMAT_VERSION = "1";
+    private final static String NAME_FILE = "type-system.name";
+    private final static String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param directory directory in which the compiled type systems are stored, created if it does not exist
+     */
+    public SchemaTypeSystemCache(File directory) {
+        this.directory = checkNotNull(directory, "directory cannot be null");
+    }
+
+    /**
+     * @return number of the type systems loaded from the directory
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of the type systems that could not be loaded, thus had to be compiled
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    static String hash(Map<String, XmlObject> schemas) {
+        Hasher hasher = Hashing.sha1().newHasher()
+                .putString(FORMAT_VERSION)
+                .putString(XmlBeans.getVersion())
+                .putBoolean(SchemaUtils.STRICT_SCHEMA_TYPES);
+        // sorted, so that the hash does not depend on the order in which the schemas were loaded
+        for (Map.Entry<String, XmlObject> schema : new TreeMap<String, XmlObject>(schemas).entrySet()) {
+            hasher.putString(schema.getKey()).putByte((byte) 0);
+            if (schema.getValue() != null) {
+                hasher.putString(schema.getValue().xmlText());
+            }
+            hasher.putByte((byte) 0);
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @return type system stored under the given key or null if there is no such entry or it cannot be loaded
+     */
+    SchemaTypeSystem load(String key) {
+        File entry = new File(directory, key);
+        File nameFile = new File(entry, NAME_FILE);
+        if (!nameFile.isFile()) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        try {
+            String name = Files.toString(nameFile, Charsets.UTF_8).trim();
+            SchemaTypeSystemImpl typeSystem = new SchemaTypeSystemImpl(
+                    XmlBeans.resourceLoaderForPath(new File[]{entry}), name, XmlBeans.getBuiltinTypeSystem());
+            // components are read lazily by default - a corrupt entry has to fail here, not while building messages
+            typeSystem.resolve();
+            log.debug("Loaded schema types [" + name + "] from [" + entry + "]");
+            hitCount.incrementAndGet();
+            return typeSystem;
+        } catch (Exception ex) {
+            discard(entry, ex);
+        } catch (LinkageError ex) {
+            discard(entry, ex);
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the type system under the given key, failures are logged and ignored
+     */
+    void store(String key, SchemaTypeSystem typeSystem) {
+        File entry = new File(directory, key);
+        if (entry.exists()) {
+            return;
+        }
+        File temp = new File(directory, key + "-" + UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            FileUtils.forceMkdir(temp);
+            typeSystem.saveToDirectory(temp);
+            Files.write(typeSystem.getName(), new File(temp, NAME_FILE), Charsets.UTF_8);
+            // the entry may have been stored by a concurrent compilation meanwhile - it is equivalent then
+            if (!temp.renameTo(entry) && !entry.exists()) {
+                throw new IOException("Renaming of [" + temp + "] to [" + entry + "] failed");
+            }
+            log.debug("Stored schema types [" + typeSystem.getName() + "] in [" + entry + "]");
+        } catch (Exception ex) {
+            log.warn("Storing of the schema types in [" + entry + "] failed", ex);
+        } finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    private void discard(File entry, Throwable cause) {
+        log.warn("Schema types cached in [" + entry + "] cannot be loaded and will be compiled again", cause);
+        FileUtils.deleteQuietly(entry);
+    }
+
+}
@@ -107,10 +107,24 @@ class SchemaUtils {
     }
 
     public static SchemaTypeSystem loadSchemaTypes(String wsdlUrl, SchemaLoader loader) {
+        return loadSchemaTypes(wsdlUrl, loader, null);
+    }
+
+    public static SchemaTypeSystem loadSchemaTypes(String wsdlUrl, SchemaLoader loader, SchemaTypeSystemCache typesCache) {
         try {
             log.debug("Loading schema types from [" + wsdlUrl + "]");
-            ArrayList<XmlObject> schemas = new ArrayList<XmlObject>(getSchemas(wsdlUrl, loader).values());
-            return buildSchemaTypes(schemas);
+            Map<String, XmlObject> schemas = getSchemas(wsdlUrl, loader);
+            if (typesCache == null) {
+                return buildSchemaTypes(new ArrayList<XmlObject>(schemas.values()));
+            }
+            // hashed before compiling, as the compilation removes the imports from the schemas
+            String key = SchemaTypeSystemCache.hash(schemas);
+            SchemaTypeSystem sts = typesCache.load(key);
+            if (sts == null) {
+                sts = buildSchemaTypes(new ArrayList<XmlObject>(schemas.values()));
+                typesCache.store(key, sts);
+            }
+            return sts;
         } catch (Exception e) {
             throw new SoapBuilderException(e);
         }
@@ -214,8 +228,9 @@ class SchemaUtils {
     }
 
     public static Map<String, XmlObject> getSchemas(String wsdlUrl, SchemaLoader loader) {
-        Map<String, XmlObject> result = new HashMap<String, XmlObject>();
-        getSchemas(wsdlUrl, result, loader, null /* , false */);
+        // in the order of the walk, which does not depend on the order in which the documents were prefetched
+        Map<String, XmlObject> result = new LinkedHashMap<String, XmlObject>();
+        getSchemas(wsdlUrl, result, ParallelSchemaLoader.prefetch(wsdlUrl, loader), null /* , false */);
         return result;
     }
 
@@ -237,11 +252,7 @@ class SchemaUtils {
         boolean common = false;
 
         try {
-            XmlOptions options = new XmlOptions();
-            options.setCompileNoValidation();
-            options.setSaveUseOpenFrag();
-            options.setErrorListener(errorList);
-            options.setSaveSyntheticDocumentElement(new QName(Constants.XSD_NS, "schema"));
+            XmlOptions options = createSchemaLoadOptions(errorList);
 
             XmlObject xmlObject = loader.loadXmlObject(wsdlUrl, options);
             if (xmlObject == null)
@@ -347,7 +358,7 @@ class SchemaUtils {
                     String location = ((SimpleValue) schemaImports[i]).getStringValue();
                     Element elm = ((Attr) schemaImports[i].getDomNode()).getOwnerElement();
 
-                    if (location != null && !defaultSchemas.containsKey(elm.getAttribute("namespace"))) {
+                    if (location != null && !isDefaultSchema(elm.getAttribute("namespace"))) {
                         if (!location.startsWith("file:") && location.indexOf("://") == -1)
                             location = joinRelativeUrl(wsdlUrl, location);
 
@@ -374,6 +385,19 @@ class SchemaUtils {
         }
     }
 
+    static XmlOptions createSchemaLoadOptions(List<?> errorList) {
+        XmlOptions options = new XmlOptions();
+        options.setCompileNoValidation();
+        options.setSaveUseOpenFrag();
+        options.setErrorListener(errorList);
+        options.setSaveSyntheticDocumentElement(new QName(Constants.XSD_NS, "schema"));
+        return options;
+    }
+
+    static boolean isDefaultSchema(String namespace) {
+        return defaultSchemas.containsKey(namespace);
+    }
+
     public static void getDefinitionParts(String origWsdlUrl, Map<String, XmlObject> existing, SchemaLoader loader)
             throws Exception {
         String wsdlUrl = origWsdlUrl;
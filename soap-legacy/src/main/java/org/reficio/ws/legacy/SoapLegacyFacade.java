@@ -30,6 +30,7 @@ import java.io.File;
 import java.net.URL;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * @author Tom Bujok
@@ -44,7 +45,16 @@ public class SoapLegacyFacade {
     private SoapMessageBuilder messageBuilder;
 
     public SoapLegacyFacade(URL wsdlUrl) throws WSDLException {
-        this.messageBuilder = new SoapMessageBuilder(wsdlUrl);
+        this(wsdlUrl, null, false, null);
+    }
+
+    public SoapLegacyFacade(URL wsdlUrl, SchemaTypeSystemCache typesCache, boolean lazy, ResourceResolver resolver)
+            throws WSDLException {
+        this.messageBuilder = new SoapMessageBuilder(wsdlUrl, typesCache, lazy, resolver);
+    }
+
+    public void compileSchemaTypesInBackground(Executor executor) {
+        messageBuilder.getSchemaDefinitionWrapper().compileInBackground(executor);
     }
 
     public String buildSoapMessageFromInput(Binding binding, BindingOperation bindingOperation, SoapContext context) {
@@ -103,6 +113,14 @@ public class SoapLegacyFacade {
         }
     }
 
+    /**
+     * @return hash of the content of the WSDL and of all the documents it imports or includes, directly or not
+     */
+    public static String hashDocuments(URL wsdlUrl, ResourceResolver resolver) {
+        String url = wsdlUrl.toString();
+        return ParallelSchemaLoader.prefetch(url, new UrlSchemaLoader(url, resolver)).hash(url);
+    }
+
     public Binding getBindingByName(QName bindingName) {
         return messageBuilder.getBindingByName(bindingName);
     }
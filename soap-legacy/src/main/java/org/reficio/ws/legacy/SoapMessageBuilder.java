@@ -93,10 +93,31 @@ class SoapMessageBuilder {
      * @throws WSDLException thrown in case of import errors
      */
     public SoapMessageBuilder(URL wsdlUrl) throws WSDLException {
+        this(wsdlUrl, null, false, null);
+    }
+
+    /**
+     * @param wsdlUrl    url of the wsdl to import
+     * @param typesCache cache of the compiled schema types, may be null
+     * @param lazy       if true the schema types are compiled when they are needed for the first time
+     * @param resolver   resolver of the locations of the documents, may be null
+     * @throws WSDLException thrown in case of import errors
+     */
+    public SoapMessageBuilder(URL wsdlUrl, SchemaTypeSystemCache typesCache, boolean lazy, ResourceResolver resolver)
+            throws WSDLException {
         WSDLReader reader = new WSDLReaderImpl();
         reader.setFeature("javax.wsdl.verbose", false);
-        this.definition = reader.readWSDL(wsdlUrl.toString());
-        this.definitionWrapper = new SchemaDefinitionWrapper(definition, wsdlUrl.toString());
+        if (resolver == null) {
+            this.definition = reader.readWSDL(wsdlUrl.toString());
+        } else {
+            ResolvingWsdlLocator locator = new ResolvingWsdlLocator(wsdlUrl.toString(), resolver);
+            try {
+                this.definition = reader.readWSDL(locator);
+            } finally {
+                locator.close();
+            }
+        }
+        this.definitionWrapper = new SchemaDefinitionWrapper(definition, wsdlUrl.toString(), typesCache, lazy, resolver);
     }
 
     /**
@@ -18,10 +18,12 @@
  */
 package org.reficio.ws.legacy;
 
+import com.google.common.io.Closeables;
 import org.apache.xmlbeans.XmlObject;
 import org.apache.xmlbeans.XmlOptions;
 import org.reficio.ws.SoapBuilderException;
 
+import java.io.InputStream;
 import java.net.URL;
 
 /**
@@ -43,16 +45,34 @@ import java.net.URL;
  * - changing location in the package structure
  * - removal of dependencies and code parts that are out of scope of SOAP message generation
  * - minor fixes to make the class compile out of soapUI's code base
+ * - optional resolution of the locations through the ResourceResolver
  */
 class UrlSchemaLoader implements SchemaLoader, DefinitionLoader {
     private String baseURI;
+    private ResourceResolver resolver;
 
     public UrlSchemaLoader(String baseURI) {
+        this(baseURI, null);
+    }
+
+    public UrlSchemaLoader(String baseURI, ResourceResolver resolver) {
         this.baseURI = baseURI;
+        this.resolver = resolver;
     }
 
     public XmlObject loadXmlObject(String wsdlUrl, XmlOptions options) throws Exception {
-        return XmlUtils.createXmlObject(new URL(wsdlUrl), options);
+        if (resolver == null) {
+            return XmlUtils.createXmlObject(new URL(wsdlUrl), options);
+        }
+        // the document keeps its original location, whatever it has been read from
+        XmlOptions resolvedOptions = options != null ? new XmlOptions(options) : new XmlOptions();
+        resolvedOptions.setDocumentSourceName(wsdlUrl);
+        InputStream input = resolver.open(wsdlUrl);
+        try {
+            return XmlUtils.createXmlObject(input, resolvedOptions);
+        } finally {
+            Closeables.closeQuietly(input);
+        }
     }
 
     public String getBaseURI() {
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.reficio.ws.legacy;
+
+import org.reficio.ws.SoapBuilderException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * OASIS XML catalog (http://www.oasis-open.org/committees/entity/spec.html) mapping the locations of WSDL and XSD
+ * documents to other locations. The uri and system entries map a single location, the rewriteURI and rewriteSystem
+ * entries map the locations starting with a prefix and the uriSuffix and systemSuffix entries the locations ending
+ * with a suffix. A location is first looked up among the single locations, then the longest matching prefix is
+ * rewritten, then the longest matching suffix is mapped. The system and uri entries are not distinguished, as both
+ * kinds of identifiers are resolved the same way here.
+ * <p/>
+ * Relative targets are resolved against the location of the catalog, targets prefixed with "classpath:" are
+ * resources of the classpath. The nextCatalog and delegate entries are not supported.
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+class XmlCatalog {
+
+    final static String CLASSPATH_PREFIX = "classpath:";
+
+    private final static String CATALOG_NS = "urn:oasis:names:tc:entity:xmlns:xml:catalog";
+
+    private final Map<String, String> locations = new HashMap<String, String>();
+    private final Map<String, String> prefixes = new HashMap<String, String>();
+    private final Map<String, String> suffixes = new HashMap<String, String>();
+
+    private XmlCatalog() {
+    }
+
+    public static XmlCatalog parse(URL catalogUrl) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            // catalogs usually declare the OASIS DTD - it must not be fetched
+            builder.setEntityResolver(new EntityResolver() {
+                public InputSource resolveEntity(String publicId, String systemId) {
+                    return new InputSource(new StringReader(""));
+                }
+            });
+            Document document = builder.parse(catalogUrl.toString());
+            XmlCatalog catalog = new XmlCatalog();
+            catalog.addEntries(document, catalogUrl, "uri", "name", "uri", catalog.locations);
+            catalog.addEntries(document, catalogUrl, "system", "systemId", "uri", catalog.locations);
+            catalog.addEntries(document, catalogUrl, "rewriteURI", "uriStartString", "rewritePrefix", catalog.prefixes);
+            catalog.addEntries(document, catalogUrl, "rewriteSystem", "systemIdStartString", "rewritePrefix", catalog.prefixes);
+            catalog.addEntries(document, catalogUrl, "uriSuffix", "uriSuffix", "uri", catalog.suffixes);
+            catalog.addEntries(document, catalogUrl, "systemSuffix", "systemIdSuffix", "uri", catalog.suffixes);
+            return catalog;
+        } catch (Exception ex) {
+            throw new SoapBuilderException(String.format("Reading of the catalog [%s] failed", catalogUrl), ex);
+        }
+    }
+
+    /**
+     * @return location the given location is mapped to or null if the catalog does not map it
+     */
+    public String resolve(String location) {
+        String target = locations.get(location);
+        if (target != null) {
+            return target;
+        }
+        String prefix = null;
+        for (String candidate : prefixes.keySet()) {
+            if (location.startsWith(candidate) && (prefix == null || candidate.length() > prefix.length())) {
+                prefix = candidate;
+            }
+        }
+        if (prefix != null) {
+            return prefixes.get(prefix) + location.substring(prefix.length());
+        }
+        String suffix = null;
+        for (String candidate : suffixes.keySet()) {
+            if (location.endsWith(candidate) && (suffix == null || candidate.length() > suffix.length())) {
+                suffix = candidate;
+            }
+        }
+        return suffix != null ? suffixes.get(suffix) : null;
+    }
+
+    private void addEntries(Document document, URL catalogUrl, String element, String keyAttribute,
+                            String targetAttribute, Map<String, String> entries) throws MalformedURLException {
+        NodeList nodes = document.getElementsByTagNameNS(CATALOG_NS, element);
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element entry = (Element) nodes.item(i);
+            String key = entry.getAttribute(keyAttribute);
+            String target = entry.getAttribute(targetAttribute);
+            if (key.length() == 0 || target.length() == 0) {
+                throw new SoapBuilderException(String.format("Catalog entry [%s] requires the [%s] and [%s] attributes",
+                        element, keyAttribute, targetAttribute));
+            }
+            if (!entries.containsKey(key)) {
+                // the first entry matching a location is used
+                entries.put(key, target.startsWith(CLASSPATH_PREFIX) ? target : new URL(catalogUrl, target).toString());
+            }
+        }
+    }
+
+}
@@ -299,6 +299,14 @@ final class XmlUtils {
     }
 
 
+    public static XmlObject createXmlObject(InputStream input, XmlOptions xmlOptions) throws XmlException {
+        try {
+            return XmlObject.Factory.parse(input, xmlOptions);
+        } catch (Exception e) {
+            throw new XmlException(e.toString());
+        }
+    }
+
     public static XmlObject createXmlObject(String input) throws XmlException {
         return XmlObject.Factory.parse(input);
     }
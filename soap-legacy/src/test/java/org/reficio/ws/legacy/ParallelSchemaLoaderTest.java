@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2012-2013 Reficio (TM) - Reestablish your software!. All Rights Reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ */
+package org.reficio.ws.legacy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.xmlbeans.XmlObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Tests the prefetching of the documents imported by a WSDL against the sequential walk of SchemaUtils
+ *
+ * @author Tom Bujok
+ * @since 1.0.0
+ */
+public class ParallelSchemaLoaderTest {
+
+    private final static int TYPES = 12;
+    private final static int LATENCY_IN_MILLIS = 50;
+
+    private HttpServer server;
+    private CountingHandler handler;
+    private String wsdlUrl;
+
+    @Before
+    public void initializeServer() throws IOException {
+        handler = new CountingHandler();
+        handler.documents.put("/service.wsdl", createWsdl());
+        for (int i = 0; i < TYPES; i++) {
+            handler.documents.put("/types/types" + i + ".xsd", createTypesSchema(i));
+        }
+        handler.documents.put("/common.xsd", createCommonSchema());
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", handler);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        wsdlUrl = "http://localhost:" + server.getAddress().getPort() + "/service.wsdl";
+    }
+
+    @After
+    public void destroyServer() {
+        server.stop(0);
+    }
+
+    @Test(timeout = 30000)
+    public void getSchemas_everyDocumentFetchedOnce() {
+        SchemaUtils.getSchemas(wsdlUrl, new UrlSchemaLoader(wsdlUrl));
+
+        // the common schema is imported by every types schema
+        assertEquals(handler.documents.keySet(), handler.hits.keySet());
+        for (Map.Entry<String, AtomicInteger> hits : handler.hits.entrySet()) {
+            assertEquals(hits.getKey(), 1, hits.getValue().get());
+        }
+        assertTrue(handler.maxConcurrentRequests.get() > 1);
+    }
+
+    @Test(timeout = 30000)
+    public void getSchemas_sameSchemasAsSequentialWalk() {
+        Map<String, XmlObject> sequential = new LinkedHashMap<String, XmlObject>();
+        SchemaUtils.getSchemas(wsdlUrl, sequential, new UrlSchemaLoader(wsdlUrl), null);
+        for (int run = 0; run < 2; run++) {
+            Map<String, XmlObject> parallel = SchemaUtils.getSchemas(wsdlUrl, new UrlSchemaLoader(wsdlUrl));
+            assertEquals(new ArrayList<String>(sequential.keySet()), new ArrayList<String>(parallel.keySet()));
+            for (Map.Entry<String, XmlObject> schema : sequential.entrySet()) {
+                assertEquals(xmlText(schema.getValue()), xmlText(parallel.get(schema.getKey())));
+            }
+        }
+    }
+
+    // the WSDL itself is mapped to null
+    private static String xmlText(XmlObject xmlObject) {
+        return xmlObject != null ? xmlObject.xmlText() : null;
+    }
+
+    private static String createWsdl() {
+        StringBuilder imports = new StringBuilder();
+        for (int i = 0; i < TYPES; i++) {
+            imports.append("<xsd:import namespace=\"urn:types").append(i)
+                    .append("\" schemaLocation=\"types/types").append(i).append(".xsd\"/>");
+        }
+        return "<wsdl:definitions targetNamespace=\"urn:service\" xmlns:wsdl=\"http://schemas.xmlsoap.org/wsdl/\""
+                + " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">"
+                + "<wsdl:types><xsd:schema targetNamespace=\"urn:service\">" + imports
+                + "<xsd:element name=\"request\" type=\"xsd:string\"/></xsd:schema></wsdl:types>"
+                + "</wsdl:definitions>";
+    }
+
+    private static String createTypesSchema(int index) {
+        return "<xsd:schema targetNamespace=\"urn:types" + index + "\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\""
+                + " xmlns:c=\"urn:common\">"
+                + "<xsd:import namespace=\"urn:common\" schemaLocation=\"../common.xsd\"/>"
+                + "<xsd:element name=\"item" + index + "\" type=\"c:commonType\"/>"
+                + "</xsd:schema>";
+    }
+
+    private static String createCommonSchema() {
+        return "<xsd:schema targetNamespace=\"urn:common\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">"
+                + "<xsd:complexType name=\"commonType\"><xsd:sequence>"
+                + "<xsd:element name=\"common\" type=\"xsd:string\"/>"
+                + "</xsd:sequence></xsd:complexType></xsd:schema>";
+    }
+
+    private static class CountingHandler implements HttpHandler {
+        private final Map<String, String> documents = new ConcurrentHashMap<String, String>();
+        private final ConcurrentMap<String, AtomicInteger> hits = new ConcurrentHashMap<String, AtomicInteger>();
+        private final AtomicInteger concurrentRequests = new AtomicInteger();
+        private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            hits.putIfAbsent(path, new AtomicInteger());
+            hits.get(path).incrementAndGet();
+            int concurrent = concurrentRequests.incrementAndGet();
+            try {
+                int max = maxConcurrentRequests.get();
+                while (concurrent > max && !maxConcurrentRequests.compareAndSet(max, concurrent)) {
+                    max = maxConcurrentRequests.get();
+                }
+                Thread.sleep(LATENCY_IN_MILLIS);
+                String document = documents.get(path);
+                if (document == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                byte[] body = document.getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrentRequests.decrementAndGet();
+                exchange.close();
+            }
+        }
+    }
+
+}